@@ -0,0 +1,128 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+/**
+ * A small harness for micro benchmarks, following the same procedure as
+ * JMH: a number of warm-up iterations to let the JIT compile the code,
+ * followed by measured iterations. Each iteration calls {@link #run()}
+ * repeatedly for a fixed amount of time and the score is the average time
+ * per operation.
+ * <p>
+ * Results of the benchmarked code must be added into {@link #sink_}, so
+ * the JIT can not eliminate the work as dead code.
+ *
+ * @invariant $none
+ */
+abstract class MicroBenchmark
+{
+    private static final long ITERATION_TIME = 500L * 1000 * 1000;  // in ns
+
+    private final String name_;     // benchmark name
+    protected long sink_;           // consumes the results of run()
+
+    /**
+     * Creates a new benchmark
+     * @param name  the benchmark name to be printed
+     * @pre name != null
+     * @post $none
+     */
+    MicroBenchmark(String name)
+    {
+        name_ = name;
+        sink_ = 0;
+    }
+
+    /**
+     * Prepares the state used by {@link #run()}. This method is called once
+     * before the warm-up iterations and is not measured.
+     * @throws Exception  if the state can not be prepared
+     * @pre $none
+     * @post $none
+     */
+    protected void setUp() throws Exception {
+        // nothing to prepare by default
+    }
+
+    /**
+     * Runs the benchmarked code once
+     * @return the number of operations done, e.g. lines parsed
+     * @throws Exception  if the benchmarked code fails
+     * @pre $none
+     * @post $result > 0
+     */
+    protected abstract long run() throws Exception;
+
+    /**
+     * Measures this benchmark and prints its score
+     * @param warmups     number of warm-up iterations
+     * @param iterations  number of measured iterations
+     * @return the average time per operation in nanoseconds
+     * @throws Exception  if the benchmarked code fails
+     * @pre warmups >= 0
+     * @pre iterations > 0
+     * @post $none
+     */
+    double measure(int warmups, int iterations) throws Exception
+    {
+        setUp();
+        for (int i = 0; i < warmups; i++) {
+            iterate();
+        }
+
+        double[] score = new double[iterations];
+        double sum = 0;
+        for (int i = 0; i < iterations; i++)
+        {
+            score[i] = iterate();
+            sum += score[i];
+        }
+
+        double mean = sum / iterations;
+        double var = 0;
+        for (int i = 0; i < iterations; i++) {
+            var += (score[i] - mean) * (score[i] - mean);
+        }
+        double error = (iterations > 1) ? Math.sqrt(var / (iterations - 1)) : 0;
+
+        System.out.println(String.format("%-48s %6d %14.3f %12.3f  ns/op  %14.0f ops/s",
+                name_, iterations, mean, error, 1e9 / mean));
+        System.out.flush();
+        return mean;
+    }
+
+    /**
+     * Prints the header of the table of scores
+     * @pre $none
+     * @post $none
+     */
+    static void printHeader()
+    {
+        System.out.println(String.format("%-48s %6s %14s %12s",
+                "Benchmark", "Cnt", "Score", "Error"));
+    }
+
+    /**
+     * Runs one iteration
+     * @return the average time per operation in nanoseconds
+     * @throws Exception  if the benchmarked code fails
+     */
+    private double iterate() throws Exception
+    {
+        long ops = 0;
+        long start = System.nanoTime();
+        long elapsed = 0;
+        do
+        {
+            ops += run();
+            elapsed = System.nanoTime() - start;
+        }
+        while (elapsed < ITERATION_TIME);
+
+        return (double) elapsed / ops;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.Random;
+
+/**
+ * Measures the throughput, in Gridlets per second, of dumping the results
+ * of a simulation and loading them back. It compares the CSV export of
+ * {@link GridletResults}, parsed back line by line, with its binary
+ * columnar file. The results are synthetic, with the sizes of the Cenapad
+ * traces: 1 to 4 machines per Gridlet out of 48.
+ * <p>
+ * Usage: <tt>java ResultIOBenchmark [number of Gridlets]</tt>
+ *
+ * @invariant $none
+ */
+public class ResultIOBenchmark
+{
+    private static final int WARMUPS = 3;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        System.out.println("Dumping and loading " + count
+                + " Gridlets (ops/s = Gridlets/sec)");
+
+        final GridletResults results = new GridletResults();
+        Random random = new Random(42);
+        double time = 0.0;
+        for (int i = 0; i < count; i++)
+        {
+            time += random.nextInt(600);
+            int numMachines = 1 + random.nextInt(4);
+            results.add(i, time, random.nextInt(36000),
+                    1 + random.nextInt(86400), numMachines * 12,
+                    random.nextInt(2), numMachines);
+            for (int j = 0; j < numMachines; j++) {
+                results.addMachine(random.nextInt(48));
+            }
+        }
+
+        final File file = File.createTempFile("results", ".tmp");
+        file.deleteOnExit();
+
+        MicroBenchmark.printHeader();
+        new MicroBenchmark("ResultIOBenchmark.csv")
+        {
+            protected long run() throws Exception
+            {
+                results.writeCsv(file.getPath());
+
+                long rows = 0;
+                BufferedReader reader = new BufferedReader(
+                        new FileReader(file), 1 << 20);
+                try
+                {
+                    String line = reader.readLine();    // the header
+                    while ((line = reader.readLine()) != null)
+                    {
+                        String[] field = line.split(",");
+                        sink_ += Integer.parseInt(field[0])
+                                + Double.parseDouble(field[1])
+                                + Double.parseDouble(field[2])
+                                + Double.parseDouble(field[3])
+                                + Integer.parseInt(field[4])
+                                + Integer.parseInt(field[5])
+                                + field[6].split(" ").length;
+                        rows++;
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+                return rows;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        new MicroBenchmark("ResultIOBenchmark.binary")
+        {
+            protected long run() throws Exception
+            {
+                results.write(file.getPath());
+
+                GridletResults loaded = GridletResults.read(file.getPath());
+                int size = loaded.size();
+                for (int i = 0; i < size; i++)
+                {
+                    sink_ += loaded.getGridletID(i) + loaded.getSubmissionTime(i)
+                            + loaded.getWaitingTime(i) + loaded.getWallClockTime(i)
+                            + loaded.getNumPE(i) + loaded.getClassType(i)
+                            + loaded.getNumMachines(i);
+                }
+                return size;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+    }
+}
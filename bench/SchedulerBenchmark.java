@@ -0,0 +1,342 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.GridResource;
+import gridsim.GridSim;
+import gridsim.GridSimTags;
+import gridsim.Gridlet;
+import gridsim.Machine;
+import gridsim.MachineList;
+import gridsim.ResGridlet;
+import gridsim.ResourceCalendar;
+import gridsim.ResourceCharacteristics;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Measures the hot paths of {@link CenapadAllocPolicy} and its backfilling
+ * subclasses on synthetic clusters, in time per call:
+ * <ul>
+ *      <li> <tt>allocatePEtoGridlet</tt>: gives a whole machine to each of
+ *           as many Gridlets as there are machines, then cancels them, so
+ *           an operation is one allocation and one cancel.
+ *      <li> <tt>updateGridletProcessing</tt> and
+ *           <tt>checkGridletCompletion</tt> with every machine running a
+ *           Gridlet. The clock must move for an update to do any work, so
+ *           each update includes a <tt>sim_pause</tt>, whose own cost is
+ *           given by the <tt>simPause</tt> line.
+ *      <li> <tt>allocateQueueGridlet</tt> with a given number of Gridlets
+ *           waiting, half of them in each queue. An operation cancels a
+ *           running Gridlet, which walks the queues once, walks them again
+ *           and then gives the freed machine back to a new Gridlet. The
+ *           queue heads wait for two machines and the other Gridlets are
+ *           too long to be backfilled, so the backfilling policies walk
+ *           their queues but none of them starts, while FCFS only looks at
+ *           the heads.
+ * </ul>
+ * The policies run in a real simulation, but the events they send are
+ * dropped (see {@link CenapadAllocPolicy#setDropEvents(boolean)}), so the
+ * clock only moves when the benchmark pauses. Trace parsing
+ * is measured by {@link TraceParseBenchmark} and {@link TraceReadBenchmark}.
+ * <p>
+ * Usage: <tt>java SchedulerBenchmark [nodes] [queue depths] [policies]</tt>,
+ * e.g. <tt>48,1000,10000 10,1000,10000 fcfs,easy,conservative</tt>, which
+ * are the defaults. Every node has 12 PEs.
+ *
+ * @invariant $none
+ */
+public class SchedulerBenchmark
+{
+    private static final int WARMUPS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int NUM_PE = 12;         // PEs per node
+    private static final int RATING = 100;        // MIPS of each PE
+    private static final double LENGTH = 1e9;     // never finishes
+
+    public static void main(String[] args) throws Exception
+    {
+        int[] nodes = parseList((args.length > 0) ? args[0] : "48,1000,10000");
+        int[] depths = parseList((args.length > 1) ? args[1] : "10,1000,10000");
+        String[] kinds = ((args.length > 2) ? args[2]
+                                            : "fcfs,easy,conservative").split(",");
+
+        GridSim.init(1, Calendar.getInstance(), false);
+        List<CenapadAllocPolicy> policies = new ArrayList<CenapadAllocPolicy>();
+        List<String> names = new ArrayList<String>();
+        for (String kind : kinds)
+        {
+            for (int n : nodes)
+            {
+                String name = kind + "_" + n;
+                CenapadAllocPolicy policy = createPolicy(kind, name);
+                policy.setTraceFile(null);
+                createResource(name, n, policy);
+                policies.add(policy);
+                names.add(name);
+            }
+        }
+
+        new Driver("SchedulerBenchmark", policies, names, depths);
+        GridSim.startGridSimulation();
+    }
+
+    /**
+     * Creates a policy that drops the events it sends
+     * @param kind   <tt>fcfs</tt>, <tt>easy</tt> or <tt>conservative</tt>
+     * @param name   the resource name
+     * @return the policy
+     * @throws Exception  if the policy can't be created
+     */
+    private static CenapadAllocPolicy createPolicy(String kind, String name)
+            throws Exception
+    {
+        String entity = name + "_policy";
+        CenapadAllocPolicy policy;
+        if (kind.equals("easy")) {
+            policy = new EasyBackfillAllocPolicy(name, entity);
+        }
+        else if (kind.equals("conservative")) {
+            policy = new ConservativeBackfillAllocPolicy(name, entity);
+        }
+        else {
+            policy = new CenapadAllocPolicy(name, entity);
+        }
+
+        policy.setDropEvents(true);
+        return policy;
+    }
+
+    /**
+     * Creates a resource with the same machines as in ExampleWorkload
+     * @param name     the resource name
+     * @param nodes    number of machines
+     * @param policy   the allocation policy
+     * @throws Exception  if the resource can't be created
+     */
+    private static void createResource(String name, int nodes,
+                                       CenapadAllocPolicy policy) throws Exception
+    {
+        MachineList list = new MachineList();
+        for (int i = 0; i < nodes; i++) {
+            list.add(new Machine(i, NUM_PE, RATING));
+        }
+
+        ResourceCharacteristics config = new ResourceCharacteristics("Sun Ultra",
+                "Solaris", list, ResourceCharacteristics.SPACE_SHARED, 0.0, 3.0);
+        ResourceCalendar calendar = new ResourceCalendar(0.0, 0.0, 0.0, 0.0,
+                new LinkedList<Integer>(), new LinkedList<Integer>(), 1L);
+        new GridResource(name, 10000.0, config, calendar, policy);
+    }
+
+    /**
+     * Parses a list of numbers separated by commas
+     * @param list   the list
+     * @return the numbers
+     */
+    private static int[] parseList(String list)
+    {
+        String[] items = list.split(",");
+        int[] numbers = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            numbers[i] = Integer.parseInt(items[i]);
+        }
+        return numbers;
+    }
+
+    /**
+     * The user entity that calls the policies once the simulation runs, so
+     * their machines are set up and the clock can be moved.
+     */
+    private static final class Driver extends GridSim
+    {
+        private final List<CenapadAllocPolicy> policies_;
+        private final List<String> names_;
+        private final int[] depths_;
+        private int nextId_;
+
+        Driver(String name, List<CenapadAllocPolicy> policies,
+               List<String> names, int[] depths) throws Exception
+        {
+            super(name, GridSimTags.DEFAULT_BAUD_RATE);
+            policies_ = policies;
+            names_ = names;
+            depths_ = depths;
+            nextId_ = 1;
+        }
+
+        public void body()
+        {
+            // lets the policies set up their machines first
+            super.sim_pause(1.0);
+            try
+            {
+                MicroBenchmark.printHeader();
+                new MicroBenchmark("SchedulerBenchmark.simPause")
+                {
+                    protected long run()
+                    {
+                        sim_pause(1.0);
+                        return 1;
+                    }
+                }.measure(WARMUPS, ITERATIONS);
+
+                for (int i = 0; i < policies_.size(); i++) {
+                    measure(names_.get(i), policies_.get(i));
+                }
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            shutdownGridStatisticsEntity();
+            shutdownUserEntity();
+            terminateIOEntities();
+        }
+
+        /**
+         * Measures one policy, from an idle cluster to a full one with
+         * longer and longer queues
+         * @param name     the resource name
+         * @param policy   the policy
+         * @throws Exception  if the policy fails
+         */
+        private void measure(String name, final CenapadAllocPolicy policy)
+                throws Exception
+        {
+            final int nodes = policy.getNumMachines();
+            final int resId = GridSim.getEntityId(name);
+            new MicroBenchmark(name + ".allocatePEtoGridlet")
+            {
+                private final ResGridlet[] list_ = new ResGridlet[nodes];
+
+                protected long run()
+                {
+                    for (int i = 0; i < nodes; i++)
+                    {
+                        list_[i] = new ResGridlet(
+                                newGridlet(resId, CenapadAllocPolicy.PartitionLong));
+                        policy.allocatePEtoGridlet(list_[i],
+                                CenapadAllocPolicy.PartitionLong);
+                    }
+                    for (int i = 0; i < nodes; i++)
+                    {
+                        policy.gridletCancel(list_[i].getGridletID(),
+                                             list_[i].getUserID());
+                    }
+                    return nodes;
+                }
+            }.measure(WARMUPS, ITERATIONS);
+
+            // every machine runs a Gridlet from now on, and they finish one
+            // at a time in allocation order
+            final ResGridlet[] running = new ResGridlet[nodes];
+            for (int i = 0; i < nodes; i++)
+            {
+                running[i] = new ResGridlet(newGridlet(resId,
+                        CenapadAllocPolicy.PartitionLong, NUM_PE,
+                        LENGTH * (1.0 + (double) i / nodes)));
+                policy.allocatePEtoGridlet(running[i],
+                        CenapadAllocPolicy.PartitionLong);
+            }
+
+            new MicroBenchmark(name + ".updateGridletProcessing")
+            {
+                protected long run()
+                {
+                    sim_pause(1.0);
+                    policy.updateGridletProcessing();
+                    return 1;
+                }
+            }.measure(WARMUPS, ITERATIONS);
+
+            new MicroBenchmark(name + ".checkGridletCompletion")
+            {
+                protected long run()
+                {
+                    policy.checkGridletCompletion();
+                    return 1;
+                }
+            }.measure(WARMUPS, ITERATIONS);
+
+            // the head of each queue takes two machines, so it waits for a
+            // running Gridlet to finish even when one machine is freed. The
+            // others take one, but run for too long to be backfilled.
+            int queued = 0;
+            for (int depth : depths_)
+            {
+                for (; queued < depth; queued++)
+                {
+                    boolean head = (queued < 2);
+                    policy.gridletSubmit(newGridlet(resId, queued % 2,
+                            head ? 2 * NUM_PE : NUM_PE,
+                            head ? LENGTH : 4 * LENGTH), false);
+                }
+
+                new MicroBenchmark(name + ".allocateQueueGridlet." + depth)
+                {
+                    protected long run()
+                    {
+                        // frees the machine that is released first, which
+                        // already walks the queues
+                        policy.gridletCancel(running[0].getGridletID(),
+                                             running[0].getUserID());
+                        policy.allocateQueueGridlet();
+
+                        // gives it back to a Gridlet that finishes as late
+                        double length = running[0].getRemainingGridletLength();
+                        running[0] = new ResGridlet(newGridlet(resId,
+                                CenapadAllocPolicy.PartitionLong, NUM_PE,
+                                length));
+                        policy.allocatePEtoGridlet(running[0],
+                                CenapadAllocPolicy.PartitionLong);
+                        return 1;
+                    }
+                }.measure(WARMUPS, ITERATIONS);
+
+                int left = policy.gridletLongQueueList_.size()
+                         + policy.gridletMediumQueueList_.size();
+                if (left != depth)
+                {
+                    throw new IllegalStateException(name + ": " + (depth - left)
+                            + " queued Gridlets started on the freed machine");
+                }
+            }
+        }
+
+        /**
+         * Creates a Gridlet that takes a whole machine and never finishes
+         * @param resId       the resource ID
+         * @param classType   the class type, i.e. the partition
+         * @return the Gridlet
+         */
+        private Gridlet newGridlet(int resId, int classType)
+        {
+            return newGridlet(resId, classType, NUM_PE, LENGTH);
+        }
+
+        /**
+         * Creates a Gridlet
+         * @param resId       the resource ID
+         * @param classType   the class type, i.e. the partition
+         * @param numPE       the number of PEs it takes
+         * @param length      its length in MI
+         * @return the Gridlet
+         */
+        private Gridlet newGridlet(int resId, int classType, int numPE,
+                                   double length)
+        {
+            Gridlet gl = new Gridlet(nextId_++, length, 0, 0, false);
+            gl.setUserID( super.get_id() );
+            gl.setNumPE(numPE);
+            gl.setClassType(classType);
+            gl.setResourceParameter(resId, 3.0);
+            return gl;
+        }
+    }
+}
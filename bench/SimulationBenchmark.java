@@ -0,0 +1,435 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import eduni.simjava.Sim_system;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the whole {@link ExampleWorkload} simulation on reference traces and
+ * reports how fast it runs, so changes in the run time of the simulator can
+ * be seen from one commit to the next, and policies can be compared on the
+ * same traces and JVM options.
+ * <p>
+ * Every run is a new JVM, started one after the other so they do not
+ * compete for the processors. Inside that JVM the simulation is timed and
+ * then measured with the management beans:
+ * <ul>
+ *      <li> wallMs: time of the simulation, without the JVM start.
+ *      <li> processMs: time of the whole JVM, as seen from outside.
+ *      <li> events: events received by the workload and the allocation
+ *           policy entities, and eventsPerSec over wallMs.
+ *      <li> peakHeapMB: the sum of the peak usage of each heap pool.
+ *      <li> gcMs, gcCount: time and number of garbage collections.
+ * </ul>
+ * Usage:
+ * <pre>
+ *  java SimulationBenchmark [-out dir] [-repeat n] [-jvm option]... [trace]... [name=value[,value]...]
+ * </pre>
+ * The traces are <tt>workload_mini.jobs</tt>,
+ * <tt>workload_reduced_all.jobs</tt> and <tt>workload_all.jobs</tt> by
+ * default. A trace with 4 fields per line is run with <tt>fields=4</tt>.
+ * Each <tt>name=value</tt> is an argument of ExampleWorkload, and a comma
+ * separated list of values gives a variant for each value, e.g.
+ * <tt>policy=fcfs,easy completion=event</tt>. GridSim events are not
+ * traced unless <tt>simtrace=true</tt> is given. Each trace and variant is
+ * run 3 times by default.
+ * <p>
+ * The rows of all runs are written into <tt>report.csv</tt> in the output
+ * directory (<tt>bench_sim</tt> by default), and the median of each trace
+ * and variant is printed.
+ *
+ * @see ParameterSweep
+ * @invariant $none
+ */
+public class SimulationBenchmark
+{
+    private static final String[] TRACES = { "workload_mini.jobs",
+            "workload_reduced_all.jobs", "workload_all.jobs" };
+
+    private static final String HEADER = "trace,variant,repeat,status,jobs,"
+            + "wallMs,processMs,events,eventsPerSec,peakHeapMB,gcMs,gcCount";
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 1 && args[0].equals("-child"))
+        {
+            runChild(args[1], Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+
+        File outDir = new File("bench_sim");
+        int repeat = 3;
+        List<String> jvmOptions = new ArrayList<String>();
+        List<String> traces = new ArrayList<String>();
+        Map<String, String[]> variants = new LinkedHashMap<String, String[]>();
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-out") && i + 1 < args.length) {
+                outDir = new File(args[++i]);
+            }
+            else if (args[i].equals("-repeat") && i + 1 < args.length) {
+                repeat = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("-jvm") && i + 1 < args.length) {
+                jvmOptions.add(args[++i]);
+            }
+            else if (args[i].indexOf('=') > 0)
+            {
+                int index = args[i].indexOf('=');
+                variants.put(args[i].substring(0, index),
+                             args[i].substring(index + 1).split(","));
+            }
+            else {
+                traces.add(args[i]);
+            }
+        }
+
+        if (traces.isEmpty() == true) {
+            traces.addAll( Arrays.asList(TRACES) );
+        }
+        if (jvmOptions.isEmpty() == true) {
+            jvmOptions.add("-Xmx2g");
+        }
+        if (variants.containsKey("simtrace") == false) {
+            variants.put("simtrace", new String[] { "false" });
+        }
+        if (outDir.isDirectory() == false && outDir.mkdirs() == false) {
+            throw new IOException("Cannot create " + outDir);
+        }
+
+        new SimulationBenchmark(outDir, repeat, jvmOptions).run(traces,
+                combinations(variants));
+    }
+
+    private final File outDir_;
+    private final int repeat_;
+    private final List<String> jvmOptions_;
+    private int run_;
+
+    /**
+     * Creates a new benchmark
+     * @param outDir      the directory for the report and the runs
+     * @param repeat      number of runs of each trace and variant
+     * @param jvmOptions  options of the JVM of each run
+     */
+    private SimulationBenchmark(File outDir, int repeat, List<String> jvmOptions)
+    {
+        outDir_ = outDir;
+        repeat_ = repeat;
+        jvmOptions_ = jvmOptions;
+        run_ = 0;
+    }
+
+    /**
+     * Runs every trace with every variant, writes the report and prints
+     * the medians
+     * @param traces     the traces
+     * @param variants   the ExampleWorkload arguments of each variant
+     * @throws Exception  if a run can't be started or the report written
+     */
+    private void run(List<String> traces, List<List<String>> variants)
+            throws Exception
+    {
+        BufferedWriter report = new BufferedWriter(
+                new FileWriter(new File(outDir_, "report.csv")) );
+        List<String> summary = new ArrayList<String>();
+        try
+        {
+            report.write(HEADER);
+            report.newLine();
+            for (String trace : traces)
+            {
+                for (List<String> variant : variants)
+                {
+                    String label = join(variant, " ");
+                    long[][] rows = new long[repeat_][];
+                    for (int i = 0; i < repeat_; i++)
+                    {
+                        rows[i] = runOne(trace, variant);
+                        report.write(trace + "," + label + "," + (i + 1));
+                        for (long value : rows[i]) {
+                            report.write("," + value);
+                        }
+                        report.newLine();
+                        report.flush();
+                    }
+                    summary.add(String.format("%-28s %-36s %8d %10d %12d %10d",
+                            new File(trace).getName(), label,
+                            median(rows, 1), median(rows, 2),
+                            median(rows, 5), median(rows, 6)));
+                }
+            }
+        }
+        finally {
+            report.close();
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-28s %-36s %8s %10s %12s %10s",
+                "Trace", "Variant", "Jobs", "WallMs", "Events/s", "HeapMB"));
+        for (String line : summary) {
+            System.out.println(line);
+        }
+        System.out.println("Report in " + new File(outDir_, "report.csv"));
+    }
+
+    /**
+     * Runs one simulation in its own JVM and directory
+     * @param trace     the trace
+     * @param variant   the ExampleWorkload arguments
+     * @return status, jobs, wallMs, processMs, events, eventsPerSec,
+     *         peakHeapMB, gcMs and gcCount
+     * @throws Exception  if the JVM can't be started or is interrupted
+     */
+    private long[] runOne(String trace, List<String> variant) throws Exception
+    {
+        run_++;
+        File dir = new File(outDir_, "run_" + run_);
+        if (dir.isDirectory() == false && dir.mkdirs() == false) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        File metrics = new File(dir, "metrics.txt");
+        metrics.delete();
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        command.addAll(jvmOptions_);
+        command.add("-cp");
+        command.add( getClassPath() );
+        command.add("SimulationBenchmark");
+        command.add("-child");
+        command.add( metrics.getAbsolutePath() );
+        command.add( new File(trace).getAbsolutePath() );
+        command.addAll(variant);
+        if (join(variant, " ").contains("fields=") == false
+                && countFields(trace) == 4) {
+            command.add("fields=4");
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(dir);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(dir, "output.txt"));
+
+        long start = System.nanoTime();
+        int status = builder.start().waitFor();
+        long processMs = (System.nanoTime() - start) / 1000000;
+
+        // jobs, wallMs, events, peak heap in bytes, gcMs and gcCount
+        long[] child = new long[6];
+        if (metrics.isFile() == true)
+        {
+            BufferedReader reader = new BufferedReader(new FileReader(metrics));
+            try
+            {
+                String[] fields = reader.readLine().split(",");
+                for (int i = 0; i < child.length; i++) {
+                    child[i] = Long.parseLong(fields[i]);
+                }
+            }
+            finally {
+                reader.close();
+            }
+        }
+        else if (status == 0) {
+            status = -1;    // the child did not get to the end
+        }
+
+        long eventsPerSec = (child[1] > 0) ? child[2] * 1000 / child[1] : 0;
+        long[] row = { status, child[0], child[1], processMs, child[2],
+                eventsPerSec, child[3] / (1024 * 1024), child[4], child[5] };
+        System.out.println("SimulationBenchmark: run " + run_ + " "
+                + new File(trace).getName() + " " + join(variant, " ")
+                + ": status " + status + ", " + child[1] + " ms, "
+                + eventsPerSec + " events/s");
+        return row;
+    }
+
+    /**
+     * Runs ExampleWorkload in this JVM and writes its metrics
+     * @param metrics   the file for the metrics
+     * @param args      the ExampleWorkload arguments
+     * @throws IOException  if the metrics can't be written
+     */
+    private static void runChild(String metrics, String[] args)
+            throws IOException
+    {
+        long start = System.nanoTime();
+        ExampleWorkload.main(args);
+        long wallMs = (System.nanoTime() - start) / 1000000;
+
+        long jobs = 0;
+        long events = 0;
+        Object workload = Sim_system.get_entity("Load_0");
+        Object policy = Sim_system.get_entity("Res_0_allocPolicy");
+        if (workload instanceof MyWorkload)
+        {
+            MyWorkload load = (MyWorkload) workload;
+            events += load.getNumEvents();
+            if (load.getGridletList() != null) {
+                jobs = load.getGridletList().size();
+            }
+        }
+        if (policy instanceof CenapadAllocPolicy) {
+            events += ((CenapadAllocPolicy) policy).getNumEvents();
+        }
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long gcMs = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc :
+                ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            gcMs += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+
+        BufferedWriter writer = new BufferedWriter(new FileWriter(metrics));
+        try {
+            writer.write(jobs + "," + wallMs + "," + events + "," + peakHeap
+                    + "," + gcMs + "," + gcCount);
+        }
+        finally {
+            writer.close();
+        }
+
+        // GridSim may leave threads behind
+        System.exit(0);
+    }
+
+    /**
+     * Gets the class path of this JVM with absolute paths, since the runs
+     * start in their own directory
+     * @return the class path
+     */
+    private static String getClassPath()
+    {
+        StringBuilder path = new StringBuilder();
+        for (String entry :
+                System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            if (path.length() > 0) {
+                path.append(File.pathSeparator);
+            }
+            path.append( new File(entry).getAbsolutePath() );
+        }
+        return path.toString();
+    }
+
+    /**
+     * Counts the fields of the first job of an uncompressed trace
+     * @param trace   the trace
+     * @return the number of fields, or 0 if it is not known
+     * @throws IOException  if the trace can't be read
+     */
+    private static int countFields(String trace) throws IOException
+    {
+        if (trace.endsWith(".gz") || trace.endsWith(".zip")) {
+            return 0;
+        }
+
+        BufferedReader reader = new BufferedReader(new FileReader(trace));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() > 0 && line.startsWith("#") == false
+                        && line.startsWith(";") == false) {
+                    return line.split("\\s+").length;
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return 0;
+    }
+
+    /**
+     * Builds every combination of the argument values
+     * @param variants   the values of each argument
+     * @return the arguments of each variant, as <tt>name=value</tt>
+     */
+    private static List<List<String>> combinations(Map<String, String[]> variants)
+    {
+        List<List<String>> all = new ArrayList<List<String>>();
+        all.add(new ArrayList<String>());
+        for (Map.Entry<String, String[]> entry : variants.entrySet())
+        {
+            List<List<String>> next = new ArrayList<List<String>>();
+            for (List<String> variant : all)
+            {
+                for (String value : entry.getValue())
+                {
+                    List<String> combination = new ArrayList<String>(variant);
+                    combination.add(entry.getKey() + "=" + value);
+                    next.add(combination);
+                }
+            }
+            all = next;
+        }
+        return all;
+    }
+
+    /**
+     * Gets the median of a column of the rows
+     * @param rows     the rows
+     * @param column   the column
+     * @return the median, the lower one for an even number of rows
+     */
+    private static long median(long[][] rows, int column)
+    {
+        long[] values = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            values[i] = rows[i][column];
+        }
+        Arrays.sort(values);
+        return values[(values.length - 1) / 2];
+    }
+
+    /**
+     * Joins strings
+     * @param list        the strings
+     * @param separator   the separator
+     * @return the joined string
+     */
+    private static String join(List<String> list, String separator)
+    {
+        StringBuilder joined = new StringBuilder();
+        for (String s : list)
+        {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(s);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Compares the way {@link MyWorkload} used to parse a trace line, i.e.
+ * <tt>String.split("\\s+")</tt> followed by boxing every field through
+ * <tt>new Integer()</tt> and <tt>new Long()</tt>, with
+ * {@link TraceTokenizer}. The lines are read into memory first, so only
+ * the parsing is measured.
+ * <p>
+ * Usage: <tt>java TraceParseBenchmark [trace file] [number of fields]</tt>
+ *
+ * @invariant $none
+ */
+public class TraceParseBenchmark
+{
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception
+    {
+        String fileName = (args.length > 0) ? args[0] : "workload_all.jobs";
+        final int numField = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        final String[] lines = readLines(fileName);
+        System.out.println("Parsing " + lines.length + " lines of "
+                + fileName + " with " + numField + " fields");
+
+        MicroBenchmark.printHeader();
+        new MicroBenchmark("TraceParseBenchmark.splitAndBox")
+        {
+            protected long run()
+            {
+                for (String line : lines)
+                {
+                    String[] sp = line.split("\\s+");
+                    for (int i = 0; i < numField && i < sp.length; i++)
+                    {
+                        Long obj = new Long( sp[i].trim() );
+                        sink_ += obj.longValue();
+                    }
+                }
+                return lines.length;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        new MicroBenchmark("TraceParseBenchmark.tokenizer")
+        {
+            private final TraceTokenizer tokenizer_ = new TraceTokenizer(numField);
+
+            protected long run()
+            {
+                for (String line : lines)
+                {
+                    int count = Math.min(tokenizer_.tokenize(line), numField);
+                    for (int i = 0; i < count; i++) {
+                        sink_ += tokenizer_.getLong(i);
+                    }
+                }
+                return lines.length;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+    }
+
+    /**
+     * Reads all the lines of a file into memory
+     * @param fileName  a file name
+     * @return the lines of the file
+     * @throws IOException  if the file can not be read
+     */
+    static String[] readLines(String fileName) throws IOException
+    {
+        ArrayList<String> list = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new FileReader(fileName));
+        try
+        {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                list.add(line);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        return list.toArray(new String[list.size()]);
+    }
+}
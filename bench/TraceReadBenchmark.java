@@ -0,0 +1,272 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measures the throughput, in lines per second, of reading and tokenizing
+ * an uncompressed trace file. It compares a <tt>BufferedReader</tt> that
+ * decodes every line into a <tt>String</tt> with {@link MappedLineReader},
+ * which parses the mapped bytes directly. The file is expected to be in
+ * the page cache after the warm-up iterations.
+ * <p>
+ * It also compares loading every job through a {@link TextTraceSource}
+ * with loading the same jobs from a binary trace created by
+ * {@link BinaryTraceWriter}, both job by job and a {@link TraceBatch} at
+ * the time. The fields are assumed to be in the order of the <tt>.jobs</tt>
+ * traces.
+ * <p>
+ * Finally, it compares reading a gz copy of the trace in the calling thread
+ * with reading it through a {@link ParallelTraceReader}, with as many
+ * parsing threads as there are processors, and at least 2.
+ * <p>
+ * Usage: <tt>java TraceReadBenchmark [trace file] [number of fields]</tt>
+ *
+ * @invariant $none
+ */
+public class TraceReadBenchmark
+{
+    private static final int WARMUPS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int BATCH_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception
+    {
+        final String fileName = (args.length > 0) ? args[0] : "workload_all.jobs";
+        final int numField = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        System.out.println("Reading " + fileName + " with " + numField
+                + " fields (ops/s = lines/sec)");
+
+        MicroBenchmark.printHeader();
+        new MicroBenchmark("TraceReadBenchmark.bufferedReader")
+        {
+            private final TraceTokenizer tokenizer_ = new TraceTokenizer(numField);
+
+            protected long run() throws Exception
+            {
+                long lines = 0;
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(fileName)));
+                try
+                {
+                    String line = null;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        sink_ += parse(tokenizer_, line, numField);
+                        lines++;
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+                return lines;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        new MicroBenchmark("TraceReadBenchmark.mappedLineReader")
+        {
+            private final TraceTokenizer tokenizer_ = new TraceTokenizer(numField);
+
+            protected long run() throws Exception
+            {
+                long lines = 0;
+                MappedLineReader reader = new MappedLineReader(fileName);
+                try
+                {
+                    CharSequence line = null;
+                    while ((line = reader.nextLine()) != null)
+                    {
+                        sink_ += parse(tokenizer_, line, numField);
+                        lines++;
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+                return lines;
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        // the fields of the .jobs traces; class type is the last field
+        final int[] field = { numField, 1, 2, 3, 4, Math.min(5, numField) };
+        new MicroBenchmark("TraceReadBenchmark.textTraceSource")
+        {
+            protected long run() throws Exception
+            {
+                TextTraceSource source = new TextTraceSource("bench", fileName);
+                source.setField(field[0], field[1], field[2], field[3],
+                        field[4], field[5]);
+                return load(source);
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        final File binary = File.createTempFile("trace", ".bin");
+        binary.deleteOnExit();
+        new MicroBenchmark("TraceReadBenchmark.binaryTraceSource")
+        {
+            protected void setUp() throws Exception
+            {
+                TextTraceSource source = new TextTraceSource("bench", fileName);
+                source.setField(field[0], field[1], field[2], field[3],
+                        field[4], field[5]);
+                BinaryTraceWriter writer = new BinaryTraceWriter(source.getField());
+                source.open();
+                while (source.next() == true) {
+                    writer.add(source);
+                }
+                source.close();
+                writer.write(binary.getPath());
+            }
+
+            protected long run() throws Exception {
+                return load(new BinaryTraceSource(binary.getPath()));
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        new MicroBenchmark("TraceReadBenchmark.textTraceSource.batch")
+        {
+            protected long run() throws Exception
+            {
+                TextTraceSource source = new TextTraceSource("bench", fileName);
+                source.setField(field[0], field[1], field[2], field[3],
+                        field[4], field[5]);
+                return loadBatches(source);
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        new MicroBenchmark("TraceReadBenchmark.binaryTraceSource.batch")
+        {
+            protected long run() throws Exception {
+                return loadBatches(new BinaryTraceSource(binary.getPath()));
+            }
+        }.measure(WARMUPS, ITERATIONS);
+
+        final File gzip = File.createTempFile("trace", ".gz");
+        gzip.deleteOnExit();
+        compress(fileName, gzip);
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (final int threads : new int[] { 1, Math.max(processors, 2) })
+        {
+            new MicroBenchmark("TraceReadBenchmark.gzip.threads" + threads)
+            {
+                protected long run() throws Exception
+                {
+                    TextTraceSource source = new TextTraceSource("bench",
+                            gzip.getPath());
+                    source.setField(field[0], field[1], field[2], field[3],
+                            field[4], field[5]);
+                    source.setThreads(threads);
+                    return load(source);
+                }
+            }.measure(WARMUPS, ITERATIONS);
+        }
+    }
+
+    /**
+     * Reads every job of a trace
+     * @param source  a trace
+     * @return the number of jobs read
+     * @throws Exception  if the trace can not be read
+     */
+    private static long load(TraceSource source) throws Exception
+    {
+        long jobs = 0;
+        long sum = 0;
+        source.open();
+        try
+        {
+            while (source.next() == true)
+            {
+                sum += source.getSubmitTime() + source.getRunTime()
+                        + source.getNumPE() + source.getClassType();
+                jobs++;
+            }
+        }
+        finally {
+            source.close();
+        }
+        return (sum == 42) ? jobs + 1 : jobs;   // keeps sum alive
+    }
+
+    /**
+     * Reads every job of a trace a batch at the time
+     * @param source  a trace
+     * @return the number of jobs read
+     * @throws Exception  if the trace can not be read
+     */
+    private static long loadBatches(TraceSource source) throws Exception
+    {
+        long jobs = 0;
+        long sum = 0;
+        TraceBatch batch = new TraceBatch(BATCH_SIZE);
+        source.open();
+        try
+        {
+            int size = 0;
+            while ((size = source.next(batch, BATCH_SIZE)) > 0)
+            {
+                for (int i = 0; i < size; i++)
+                {
+                    sum += batch.getSubmitTime(i) + batch.getRunTime(i)
+                            + batch.getNumPE(i) + batch.getClassType(i);
+                }
+                jobs += size;
+            }
+        }
+        finally {
+            source.close();
+        }
+        return (sum == 42) ? jobs + 1 : jobs;   // keeps sum alive
+    }
+
+    /**
+     * Writes a gz copy of a file
+     * @param fileName  the file
+     * @param gzip      the gz file
+     * @throws Exception  if a file can not be read or written
+     */
+    private static void compress(String fileName, File gzip) throws Exception
+    {
+        FileInputStream in = new FileInputStream(fileName);
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(gzip));
+        try
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int len = 0;
+            while ((len = in.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Tokenizes a line and adds up its numeric fields
+     * @param tokenizer  a tokenizer
+     * @param line       a line of a trace
+     * @param numField   number of fields to read
+     * @return the sum of the fields
+     */
+    static long parse(TraceTokenizer tokenizer, CharSequence line, int numField)
+    {
+        long sum = 0;
+        int count = Math.min(tokenizer.tokenize(line), numField);
+        for (int i = 0; i < count; i++) {
+            sum += tokenizer.getLong(i);
+        }
+        return sum;
+    }
+}
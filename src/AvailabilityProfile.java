@@ -0,0 +1,305 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The number of free machines over time, split between the machines outside
+ * the medium partition (other machines) and the machines of the medium
+ * partition. It is kept as a sorted map of breakpoints: each breakpoint
+ * holds the free machines from its time until the next breakpoint, and the
+ * last one holds them forever.
+ * <p>
+ * Running Gridlets and reservations are added and removed incrementally as
+ * time windows, so an update only touches the breakpoints in its window.
+ * Breakpoints in the past are dropped with {@link #removeBefore(double)}.
+ *
+ * @see ConservativeBackfillAllocPolicy
+ * @see MetaScheduler
+ * @invariant $none
+ */
+final class AvailabilityProfile
+{
+    /** Index of the machines outside the medium partition */
+    static final int OTHER = 0;
+
+    /** Index of the machines of the medium partition */
+    static final int MEDIUM = 1;
+
+    private final TreeMap<Double, int[]> profile_;
+    private final int[] capacity_;
+    private final int[] split_;     // machines of a new reservation
+
+    /**
+     * Creates a profile where all machines are free from time 0 on
+     * @param numOther   number of machines outside the medium partition
+     * @param numMedium  number of machines of the medium partition
+     * @pre numOther >= 0
+     * @pre numMedium >= 0
+     * @post $none
+     */
+    AvailabilityProfile(int numOther, int numMedium)
+    {
+        capacity_ = new int[] { numOther, numMedium };
+        profile_ = new TreeMap<Double, int[]>();
+        profile_.put(0.0, capacity_.clone());
+        split_ = new int[2];
+    }
+
+    /**
+     * Gets the number of breakpoints
+     * @return the number of breakpoints
+     * @pre $none
+     * @post $result > 0
+     */
+    int size() {
+        return profile_.size();
+    }
+
+    /**
+     * Adds free machines in a time window. A negative number uses them.
+     * @param start   start time of the window
+     * @param end     end time of the window (exclusive)
+     * @param other   free machines outside the medium partition to add
+     * @param medium  free machines of the medium partition to add
+     * @pre start >= 0.0
+     * @post $none
+     */
+    void add(double start, double end, int other, int medium)
+    {
+        if (start >= end || (other == 0 && medium == 0)) {
+            return;
+        }
+
+        split(start);
+        split(end);
+        for (int[] free : profile_.subMap(start, true, end, false).values())
+        {
+            free[OTHER] += other;
+            free[MEDIUM] += medium;
+        }
+
+        // a reservation that is removed leaves breakpoints that are no
+        // longer needed
+        merge(start);
+        merge(end);
+    }
+
+    /**
+     * Finds the earliest time, not before a given time, at which a Gridlet
+     * can have enough free machines for its whole run time. A medium
+     * Gridlet only uses medium machines. A long Gridlet uses the other
+     * machines first, and the medium machines for the rest.
+     *
+     * @param from       the earliest start time
+     * @param duration   the run time of the Gridlet
+     * @param required   the number of machines it needs
+     * @param mediumOnly <tt>true</tt> if it can only use medium machines
+     * @param split      gets the machines it uses, indexed by
+     *                   {@link #OTHER} and {@link #MEDIUM}
+     * @return the start time or <tt>Double.POSITIVE_INFINITY</tt> if this
+     *         profile does not have enough machines
+     * @pre from >= 0.0
+     * @pre duration > 0.0
+     * @pre split != null && split.length == 2
+     * @post $none
+     */
+    double findStart(double from, double duration, int required,
+                     boolean mediumOnly, int[] split)
+    {
+        int capacity = capacity_[MEDIUM];
+        if (mediumOnly == false) {
+            capacity += capacity_[OTHER];
+        }
+        if (required > capacity) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double start = from;
+        while (true)
+        {
+            // looks for the first breakpoint in the window without enough
+            // free machines, and the minimum free machines in the window
+            Double failed = null;
+            int minOther = Integer.MAX_VALUE;
+            int minMedium = Integer.MAX_VALUE;
+            Double key = profile_.floorKey(start);
+            for (Map.Entry<Double, int[]> entry :
+                    profile_.tailMap(key, true).entrySet())
+            {
+                if (entry.getKey() >= start + duration) {
+                    break;
+                }
+
+                int[] free = entry.getValue();
+                int available = free[MEDIUM];
+                if (mediumOnly == false) {
+                    available += free[OTHER];
+                }
+                if (available < required) {
+                    failed = entry.getKey();
+                    break;
+                }
+                minOther = Math.min(minOther, free[OTHER]);
+                minMedium = Math.min(minMedium, free[MEDIUM]);
+            }
+
+            Double next;
+            if (failed == null)
+            {
+                // the same machines must be free for the whole window
+                int other = 0;
+                if (mediumOnly == false) {
+                    other = Math.min(required, minOther);
+                }
+                if (required - other <= minMedium)
+                {
+                    split[OTHER] = other;
+                    split[MEDIUM] = required - other;
+                    return start;
+                }
+                next = profile_.higherKey(start);
+            }
+            else {
+                // no window overlapping this breakpoint can have enough
+                next = profile_.higherKey(failed);
+            }
+
+            if (next == null) {
+                return Double.POSITIVE_INFINITY;
+            }
+            start = next;
+        }
+    }
+
+    /**
+     * Gives a Gridlet the earliest reservation for its whole run time, see
+     * {@link #findStart(double, double, int, boolean, int[])}
+     * @param from       the earliest start time
+     * @param duration   the run time of the Gridlet
+     * @param required   the number of machines it needs
+     * @param mediumOnly <tt>true</tt> if it can only use medium machines
+     * @return the reservation, which starts at
+     *         <tt>Double.POSITIVE_INFINITY</tt> and takes no machine if
+     *         this profile does not have enough machines
+     * @pre from >= 0.0
+     * @pre duration > 0.0
+     * @post $result != null
+     */
+    Reservation reserve(double from, double duration, int required,
+                        boolean mediumOnly)
+    {
+        double start = findStart(from, duration, required, mediumOnly, split_);
+        if (start == Double.POSITIVE_INFINITY) {
+            return new Reservation(start, start, 0, 0);
+        }
+
+        Reservation r = new Reservation(start, start + duration,
+                split_[OTHER], split_[MEDIUM]);
+        reserve(r);
+        return r;
+    }
+
+    /**
+     * Takes the machines of a reservation in its time window, e.g. the
+     * machines a Gridlet really got when it started
+     * @param r   a reservation
+     * @pre r != null
+     * @post $none
+     */
+    void reserve(Reservation r) {
+        add(r.start_, r.end_, -r.other_, -r.medium_);
+    }
+
+    /**
+     * Gives the machines of a reservation back, from its start time or from
+     * a given time if it has already started
+     * @param r      a reservation or <tt>null</tt>
+     * @param time   the current time
+     * @pre time >= 0.0
+     * @post $none
+     */
+    void release(Reservation r, double time)
+    {
+        if (r == null || r.start_ == Double.POSITIVE_INFINITY) {
+            return;     // a Gridlet that can never run reserves nothing
+        }
+
+        add(Math.max(r.start_, time), r.end_, r.other_, r.medium_);
+    }
+
+    /**
+     * Drops the breakpoints before a given time, since they can't change
+     * anymore
+     * @param time   the current time
+     * @pre time >= 0.0
+     * @post $none
+     */
+    void removeBefore(double time)
+    {
+        if (profile_.firstKey() >= time) {
+            return;
+        }
+
+        split(time);
+        profile_.headMap(time, false).clear();
+    }
+
+    /**
+     * Makes sure there is a breakpoint at a given time
+     * @param time   a time not before the first breakpoint
+     */
+    private void split(double time)
+    {
+        Map.Entry<Double, int[]> floor = profile_.floorEntry(time);
+        if (floor.getKey() != time) {
+            profile_.put(time, floor.getValue().clone());
+        }
+    }
+
+    /**
+     * Removes the breakpoint at a given time if it has the same free
+     * machines as the previous one
+     * @param time   the time of a breakpoint
+     */
+    private void merge(double time)
+    {
+        Map.Entry<Double, int[]> lower = profile_.lowerEntry(time);
+        if (lower != null
+                && Arrays.equals(lower.getValue(), profile_.get(time)) == true) {
+            profile_.remove(time);
+        }
+    }
+
+    /**
+     * The machines a Gridlet uses or will use in a time window
+     */
+    static final class Reservation
+    {
+        final double start_;
+        final double end_;
+        final int other_;       // machines outside the medium partition
+        final int medium_;      // machines of the medium partition
+
+        /**
+         * Creates a reservation
+         * @param start    start time of the window
+         * @param end      end time of the window (exclusive)
+         * @param other    machines outside the medium partition
+         * @param medium   machines of the medium partition
+         */
+        Reservation(double start, double end, int other, int medium)
+        {
+            start_ = start;
+            end_ = end;
+            other_ = other;
+            medium_ = medium;
+        }
+    }
+}
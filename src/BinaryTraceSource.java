@@ -0,0 +1,346 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads jobs from a trace that was pre-compiled by {@link TraceConverter}.
+ * Since the jobs are already parsed, a simulation can start reading them
+ * straight away instead of parsing the same text trace again.
+ * <p>
+ * The format is columnar. All numbers are big-endian:
+ * <pre>
+ *  offset  size            content
+ *  0       int             {@link #MAGIC}
+ *  4       int             {@link #VERSION}
+ *  8       long            number of jobs, n
+ *  16      int[6]          field mapping of the original text trace, i.e.
+ *                          maxField, jobNum, submitTime, runTime, numProc
+ *                          and classType
+ *  40      (reserved)      zeros up to {@link #HEADER_SIZE}
+ *  64      long[n]         submit time
+ *          int[n]          job number
+ *          int[n]          run time, in seconds
+ *          int[n]          number of PEs
+ *          int[n]          class type
+ * </pre>
+ * The columns are read in blocks of {@link #BLOCK_SIZE} jobs with one bulk
+ * read per column, straight into primitive arrays. Hence, the memory used
+ * does not depend on the trace length and no text is parsed at all.
+ *
+ * @see TraceConverter
+ * @see BinaryTraceWriter
+ * @invariant $none
+ */
+final class BinaryTraceSource implements TraceSource
+{
+    /** The first 4 bytes of a binary trace, i.e. "GDTR" */
+    static final int MAGIC = 0x47445452;
+
+    /** Version of the format */
+    static final int VERSION = 1;
+
+    /** Size of the header, in bytes */
+    static final int HEADER_SIZE = 64;
+
+    /** Number of fields in the field mapping of the header */
+    static final int NUM_FIELD = 6;
+
+    /** Number of jobs read from each column at the time */
+    static final int BLOCK_SIZE = 8192;
+
+    private final String fileName_; // file name
+    private FileInputStream file_;  // the trace file
+    private FileChannel channel_;   // channel of the trace file
+    private ByteBuffer buffer_;     // buffer for reading a block of a column
+    private long count_;            // number of jobs in the trace
+    private long blockStart_;       // index of the first job in the block
+    private int blockSize_;         // number of jobs in the block
+    private int index_;             // index of the current job in the block
+    private int[] field_;           // field mapping of the original trace
+
+    // a block of each column
+    private long[] submitTime_;
+    private int[] jobNum_;
+    private int[] runTime_;
+    private int[] numPE_;
+    private int[] classType_;
+
+    /**
+     * Creates a new binary trace source
+     * @param fileName  the trace file name
+     * @pre fileName != null
+     * @post $none
+     */
+    BinaryTraceSource(String fileName)
+    {
+        fileName_ = fileName;
+        file_ = null;
+        channel_ = null;
+        buffer_ = null;
+        count_ = 0;
+        blockStart_ = 0;
+        blockSize_ = 0;
+        index_ = 0;
+        field_ = null;
+    }
+
+    /**
+     * Checks whether a file is a binary trace, by looking at its first bytes
+     * @param fileName  a file name
+     * @return <tt>true</tt> if the file is a binary trace, <tt>false</tt>
+     *         otherwise
+     * @throws IOException  if the file can not be read
+     * @pre fileName != null
+     * @post $none
+     */
+    static boolean isBinaryTrace(String fileName) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new FileInputStream(fileName));
+        try {
+            return in.readInt() == MAGIC;
+        }
+        catch (IOException e) {
+            return false;   // shorter than the magic number
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Opens the trace file and reads its header
+     * @throws IOException  if the file can not be opened or is not a binary
+     *                      trace
+     * @pre $none
+     * @post $none
+     */
+    public void open() throws IOException
+    {
+        file_ = new FileInputStream(fileName_);
+        try
+        {
+            channel_ = file_.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            read(header, 0);
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(fileName_ + " is not a binary trace");
+            }
+
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(fileName_ + " has an unknown version "
+                        + version);
+            }
+
+            count_ = header.getLong();
+            field_ = new int[NUM_FIELD];
+            for (int i = 0; i < NUM_FIELD; i++) {
+                field_[i] = header.getInt();
+            }
+
+            long expected = HEADER_SIZE + count_ * (8 + 4 * 4);
+            if (count_ < 0 || channel_.size() < expected) {
+                throw new IOException(fileName_ + " is truncated");
+            }
+
+            buffer_ = ByteBuffer.allocate(BLOCK_SIZE * 8);
+            submitTime_ = new long[BLOCK_SIZE];
+            jobNum_ = new int[BLOCK_SIZE];
+            runTime_ = new int[BLOCK_SIZE];
+            numPE_ = new int[BLOCK_SIZE];
+            classType_ = new int[BLOCK_SIZE];
+            blockStart_ = 0;
+            blockSize_ = 0;
+            index_ = 0;
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the field mapping of the original text trace
+     * @return an array of maxField, jobNum, submitTime, runTime, numProc and
+     *         classType, or <tt>null</tt> if the trace is not opened yet
+     * @pre $none
+     * @post $none
+     */
+    int[] getField() {
+        return field_;
+    }
+
+    /**
+     * Gets the number of jobs in the trace
+     * @return the number of jobs
+     * @pre $none
+     * @post $result >= 0
+     */
+    long getCount() {
+        return count_;
+    }
+
+    public boolean next() throws IOException
+    {
+        index_++;
+        if (index_ < blockSize_) {
+            return true;
+        }
+        return readBlock();
+    }
+
+    /**
+     * Copies the next jobs straight from the blocks of the columns, without
+     * moving job by job
+     * @param batch     the batch to fill
+     * @param maxJobs   max. number of jobs to read
+     * @return the number of jobs read
+     * @throws IOException  if the trace can not be read
+     * @pre batch != null
+     * @pre maxJobs > 0
+     * @post $result >= 0
+     */
+    public int next(TraceBatch batch, int maxJobs) throws IOException
+    {
+        batch.clear();
+        int max = Math.min(maxJobs, batch.getCapacity());
+        while (batch.getSize() < max)
+        {
+            // the jobs after the current one, or the ones of the next block
+            int from = index_ + 1;
+            if (from >= blockSize_)
+            {
+                if (readBlock() == false) {
+                    break;
+                }
+                from = 0;
+            }
+
+            int count = Math.min(blockSize_ - from, max - batch.getSize());
+            batch.add(submitTime_, jobNum_, runTime_, numPE_, classType_,
+                    from, count);
+            index_ = from + count - 1;
+        }
+        return batch.getSize();
+    }
+
+    /**
+     * Reads the next block of every column. The current job is then the
+     * first one of the block.
+     * @return <tt>true</tt> if there is a block, <tt>false</tt> at the end
+     *         of the trace
+     * @throws IOException  if the trace can not be read
+     */
+    private boolean readBlock() throws IOException
+    {
+        // read the next block of every column
+        long start = blockStart_ + blockSize_;
+        if (start >= count_) {
+            return false;
+        }
+
+        int size = (int) Math.min(BLOCK_SIZE, count_ - start);
+        long offset = HEADER_SIZE;
+        readColumn(offset + start * 8, size * 8);
+        buffer_.asLongBuffer().get(submitTime_, 0, size);
+        offset += count_ * 8;
+        readColumn(offset + start * 4, size * 4);
+        buffer_.asIntBuffer().get(jobNum_, 0, size);
+        offset += count_ * 4;
+        readColumn(offset + start * 4, size * 4);
+        buffer_.asIntBuffer().get(runTime_, 0, size);
+        offset += count_ * 4;
+        readColumn(offset + start * 4, size * 4);
+        buffer_.asIntBuffer().get(numPE_, 0, size);
+        offset += count_ * 4;
+        readColumn(offset + start * 4, size * 4);
+        buffer_.asIntBuffer().get(classType_, 0, size);
+
+        blockStart_ = start;
+        blockSize_ = size;
+        index_ = 0;
+        return true;
+    }
+
+    public int getJobNum() {
+        return jobNum_[index_];
+    }
+
+    public long getSubmitTime() {
+        return submitTime_[index_];
+    }
+
+    public int getRunTime() {
+        return runTime_[index_];
+    }
+
+    public int getNumPE() {
+        return numPE_[index_];
+    }
+
+    public int getClassType() {
+        return classType_[index_];
+    }
+
+    /**
+     * Closes the trace file
+     * @throws IOException  if the file can not be closed
+     * @pre $none
+     * @post $none
+     */
+    public void close() throws IOException
+    {
+        channel_ = null;
+        buffer_ = null;
+        if (file_ != null)
+        {
+            file_.close();
+            file_ = null;
+        }
+    }
+
+    /**
+     * Reads a part of a column into the buffer
+     * @param position  file offset of the part
+     * @param size      number of bytes to read
+     * @throws IOException  if the file can not be read
+     */
+    private void readColumn(long position, int size) throws IOException
+    {
+        buffer_.clear();
+        buffer_.limit(size);
+        read(buffer_, position);
+        if (buffer_.remaining() < size) {
+            throw new IOException(fileName_ + " is truncated");
+        }
+    }
+
+    /**
+     * Fills a buffer from a given file offset, then flips it for reading
+     * @param buffer    the buffer
+     * @param position  file offset
+     * @throws IOException  if the file can not be read
+     */
+    private void read(ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            int len = channel_.read(buffer, position);
+            if (len < 0) {
+                break;
+            }
+            position += len;
+        }
+        buffer.flip();
+    }
+}
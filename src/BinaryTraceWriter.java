@@ -0,0 +1,167 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Collects jobs in memory, one primitive array per column, and then writes
+ * them as a binary trace that can be read by {@link BinaryTraceSource}.
+ *
+ * @see BinaryTraceSource
+ * @invariant $none
+ */
+final class BinaryTraceWriter
+{
+    private static final int INITIAL_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final int[] field_;     // field mapping of the original trace
+    private int count_;             // number of jobs collected
+
+    // the columns
+    private long[] submitTime_;
+    private int[] jobNum_;
+    private int[] runTime_;
+    private int[] numPE_;
+    private int[] classType_;
+
+    /**
+     * Creates a new writer
+     * @param field  field mapping of the original text trace, i.e. maxField,
+     *               jobNum, submitTime, runTime, numProc and classType
+     * @pre field != null && field.length == BinaryTraceSource.NUM_FIELD
+     * @post $none
+     */
+    BinaryTraceWriter(int[] field)
+    {
+        field_ = field.clone();
+        count_ = 0;
+        submitTime_ = new long[INITIAL_SIZE];
+        jobNum_ = new int[INITIAL_SIZE];
+        runTime_ = new int[INITIAL_SIZE];
+        numPE_ = new int[INITIAL_SIZE];
+        classType_ = new int[INITIAL_SIZE];
+    }
+
+    /**
+     * Adds the current job of a trace
+     * @param source  a trace positioned at a job
+     * @pre source != null
+     * @post $none
+     */
+    void add(TraceSource source)
+    {
+        if (count_ == jobNum_.length)
+        {
+            int size = count_ * 2;
+            submitTime_ = Arrays.copyOf(submitTime_, size);
+            jobNum_ = Arrays.copyOf(jobNum_, size);
+            runTime_ = Arrays.copyOf(runTime_, size);
+            numPE_ = Arrays.copyOf(numPE_, size);
+            classType_ = Arrays.copyOf(classType_, size);
+        }
+
+        submitTime_[count_] = source.getSubmitTime();
+        jobNum_[count_] = source.getJobNum();
+        runTime_[count_] = source.getRunTime();
+        numPE_[count_] = source.getNumPE();
+        classType_[count_] = source.getClassType();
+        count_++;
+    }
+
+    /**
+     * Gets the number of jobs collected
+     * @return the number of jobs
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getCount() {
+        return count_;
+    }
+
+    /**
+     * Writes the collected jobs into a file
+     * @param fileName  the binary trace file name
+     * @throws IOException  if the file can not be written
+     * @pre fileName != null
+     * @post $none
+     */
+    void write(String fileName) throws IOException
+    {
+        FileOutputStream file = new FileOutputStream(fileName);
+        try
+        {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            buffer.putInt(BinaryTraceSource.MAGIC);
+            buffer.putInt(BinaryTraceSource.VERSION);
+            buffer.putLong(count_);
+            for (int i = 0; i < BinaryTraceSource.NUM_FIELD; i++) {
+                buffer.putInt(field_[i]);
+            }
+            while (buffer.position() < BinaryTraceSource.HEADER_SIZE) {
+                buffer.put((byte) 0);
+            }
+
+            for (int i = 0; i < count_; i++)
+            {
+                if (buffer.remaining() < 8) {
+                    flush(channel, buffer);
+                }
+                buffer.putLong(submitTime_[i]);
+            }
+            writeColumn(channel, buffer, jobNum_);
+            writeColumn(channel, buffer, runTime_);
+            writeColumn(channel, buffer, numPE_);
+            writeColumn(channel, buffer, classType_);
+            flush(channel, buffer);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes an int column
+     * @param channel  the file channel
+     * @param buffer   the buffer to write through
+     * @param column   the column
+     * @throws IOException  if the file can not be written
+     */
+    private void writeColumn(FileChannel channel, ByteBuffer buffer,
+                             int[] column) throws IOException
+    {
+        for (int i = 0; i < count_; i++)
+        {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(column[i]);
+        }
+    }
+
+    /**
+     * Writes the content of a buffer and clears it
+     * @param channel  the file channel
+     * @param buffer   the buffer
+     * @throws IOException  if the file can not be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
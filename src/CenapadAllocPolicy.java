@@ -9,12 +9,14 @@ import java.util.Iterator;
 import eduni.simjava.Sim_event;
 import eduni.simjava.Sim_system;
 import gridsim.*;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,20 +37,63 @@ import java.util.logging.Logger;
  */
 class CenapadAllocPolicy extends AllocPolicy {
 
-    private ResGridletList gridletLongQueueList_;     // Queue list
-    private ResGridletList gridletMediumQueueList_;     // Queue list
-    private ResGridletList gridletInExecList_;    // Execution list
-    private ResGridletList gridletPausedList_;    // Pause list
+    protected IndexedGridletList gridletLongQueueList_;     // Queue list
+    protected IndexedGridletList gridletMediumQueueList_;     // Queue list
+    private IndexedGridletList gridletInExecList_;    // Execution list
+    private IndexedGridletList gridletPausedList_;    // Pause list
     private double lastUpdateTime_;    // the last time Gridlets updated
-    private int[] machineRating_;      // list of machine ratings available
-    private int maxPeSize;
-    private double pePerMachine;
-    private final double minimumSpan = 60 * 60;
+    private int maxPeSize;             // PEs of all machines
+    private double pePerMachine;       // PEs of the smallest machine
+    private int minRating_;            // MIPS rating of the slowest PE
+    private int maxRating_;            // MIPS rating of the fastest PE
+    private double traceInterval_;     // min. time between trace samples
     private double lastPrintedTrace = 0;
-    private PrintStream res_trace = null;
-    private final int PartitionMedium = 0;
-    private final int PartitionLong = 1;
-    private Set<Integer> mediumPartitionIds;
+    private String traceFile_;         // null if the trace is not written
+    private ResourceTraceWriter res_trace = null;
+    private GridletResults results_;   // null if results are not kept
+    private GridletConsumer consumer_; // null if none
+    protected static final int PartitionMedium = 0;
+    protected static final int PartitionLong = 1;
+    protected static final int AllocWholeMachines = 0;
+    protected static final int AllocFirstFit = 1;
+    protected static final int AllocBestFit = 2;
+    protected static final int AllocContiguous = 3;
+
+    /** Tag of an event that submits a list of Gridlets at once */
+    static final int GRIDLET_SUBMIT_BATCH = 90011;
+    private Machine[] machines_;       // machines in MachineList order
+    private int[] machineIndex_;       // machine ID -> index in machines_
+    private int mediumPartitionSize_;  // number of medium machines
+    private ArrayList<MachinePool> pools_;  // by their first machine
+    private MachinePool[] machinePool_;     // machine index -> its pool
+    private int[] freePEs_;                 // machine index -> free PEs
+    private int allocation_;                // how PEs are given to Gridlets
+    private MachineRuns longRuns_;          // null unless contiguous
+    private MachineRuns mediumRuns_;        // same, of the medium partition
+    private int numContiguous_;        // Gridlets given one run of machines
+    private int numScattered_;         // Gridlets given machines apart
+    private double fragmentationArea_;      // fragmentation x time
+    private double lastFragmentationTime_;
+    private MachinePool[] mediumPools_;     // pools of the medium partition
+    private MachinePool[] longPools_;       // all pools, in allocation order
+    private IdentityHashMap<ResGridlet, Integer> ratings_;  // of running Gridlets
+    protected int numIdleMachines_;        // number of idle machines
+    protected int numIdleMediumMachines_;  // same, in the medium partition
+    private boolean otherMachinesFirst_;  // long Gridlets avoid medium ones
+    private boolean eventDriven_;      // wake up only at Gridlet completions
+    private PriorityQueue<Completion> completions_;  // by finish time
+    private TreeSet<Double> wakeups_;  // times of pending internal events
+    private long completionSeq_;       // allocation order of completions
+    private long numEvents_;           // events received by body()
+    private BitSet received_;          // IDs of the Gridlets received
+    private int ownerId_;              // their user, -1 if none yet
+    private boolean severalOwners_;    // received from more than one user
+    private int numBatches_;           // batch events received so far
+    private double checkpointTime_;    // when the snapshot is taken
+    private String checkpointFile_;    // null if no snapshot is taken
+    private SimulationSnapshot resume_;     // null once it is restored
+    private IdentityHashMap<ResGridlet, RestoredTimes> restored_;
+    private boolean dropEvents_;       // events are dropped, not sent
 
     /**
      * Allocates a new SpaceShared object
@@ -75,21 +120,365 @@ class CenapadAllocPolicy extends AllocPolicy {
         super(resourceName, entityName);
 
         // initialises local data structure
-        this.gridletInExecList_ = new ResGridletList();
-        this.gridletPausedList_ = new ResGridletList();
-        this.gridletLongQueueList_ = new ResGridletList();
-        this.gridletMediumQueueList_ = new ResGridletList();
-        this.mediumPartitionIds = new HashSet<>();
+        this.gridletInExecList_ = new IndexedGridletList();
+        this.gridletPausedList_ = new IndexedGridletList();
+        this.gridletLongQueueList_ = new IndexedGridletList();
+        this.gridletMediumQueueList_ = new IndexedGridletList();
+        this.mediumPartitionSize_ = 38;
+        this.pools_ = new ArrayList<MachinePool>();
+        this.ratings_ = new IdentityHashMap<ResGridlet, Integer>();
+        this.allocation_ = AllocWholeMachines;
+        this.longRuns_ = null;
+        this.mediumRuns_ = null;
+        this.numContiguous_ = 0;
+        this.numScattered_ = 0;
+        this.fragmentationArea_ = 0.0;
+        this.lastFragmentationTime_ = 0.0;
+        this.otherMachinesFirst_ = false;
+        this.eventDriven_ = false;
+        this.completions_ = new PriorityQueue<Completion>();
+        this.wakeups_ = new TreeSet<Double>();
+        this.completionSeq_ = 0;
+        this.numEvents_ = 0;
+        this.received_ = new BitSet();
+        this.ownerId_ = -1;
+        this.severalOwners_ = false;
+        this.numBatches_ = 0;
+        this.checkpointTime_ = 0.0;
+        this.checkpointFile_ = null;
+        this.resume_ = null;
+        this.restored_ = new IdentityHashMap<ResGridlet, RestoredTimes>();
         this.lastUpdateTime_ = 0.0;
-        this.machineRating_ = null;
+        this.traceFile_ = "res_trace.csv";
+        this.traceInterval_ = 60 * 60;
+        this.results_ = null;
+        this.consumer_ = null;
+    }
 
-        File fp = new File("res_trace.csv");
-        try {
-            res_trace = new PrintStream(fp);
-            res_trace.println("timestamp,usedPEs,jobsRunning,JobsInLongQueue,JobsInMediumQueue");
-        } catch (FileNotFoundException ex) {
-            Logger.getLogger(CenapadAllocPolicy.class.getName()).log(Level.SEVERE, null, ex);
+    /**
+     * Sets where the results of the finished Gridlets are kept, i.e. their
+     * times, number of PEs, class type and the machines they ran on.
+     *
+     * @param results the results or <tt>null</tt> to not keep them
+     * @pre $none
+     * @post $none
+     */
+    void setResults(GridletResults results) {
+        results_ = results;
+    }
+
+    /**
+     * Sets an object that gets each Gridlet as soon as it has finished or
+     * has been canceled while running, before it is sent back to its
+     * owner, e.g. a {@link MetaScheduler} that keeps track of this resource.
+     *
+     * @param consumer the consumer or <tt>null</tt> for none
+     * @pre $none
+     * @post $none
+     */
+    void setConsumer(GridletConsumer consumer) {
+        consumer_ = consumer;
+    }
+
+    /**
+     * Sets the file where the state of the resource is sampled, i.e. the
+     * number of busy PEs, Gridlets running and in each queue, and busy
+     * machines. It must be set before the simulation starts.
+     *
+     * @param fileName the file name (<tt>res_trace.csv</tt> by default) or
+     * <tt>null</tt> to not write it
+     * @pre $none
+     * @post $none
+     */
+    void setTraceFile(String fileName) {
+        traceFile_ = fileName;
+    }
+
+    /**
+     * Sets whether the events this policy sends, i.e. its internal events
+     * and the Gridlets it sends back, are dropped instead. A policy that
+     * drops them can be called directly, without a user that waits for its
+     * Gridlets, and the clock only moves when the caller pauses.
+     *
+     * @param drop <tt>true</tt> to drop the events, <tt>false</tt> to send
+     * them (the default)
+     * @pre $none
+     * @post $none
+     */
+    void setDropEvents(boolean drop) {
+        dropEvents_ = drop;
+    }
+
+    /**
+     * Sends an internal event to this entity, unless events are dropped.
+     *
+     * @param delay the delay of the event
+     * @return <tt>true</tt> if it is sent or dropped, <tt>false</tt>
+     * otherwise
+     * @pre delay >= 0.0
+     * @post $none
+     */
+    protected boolean sendInternalEvent(double delay) {
+        if (dropEvents_ == true) {
+            return true;
+        }
+        return super.sendInternalEvent(delay);
+    }
+
+    /**
+     * Sends back a cancelled Gridlet, unless events are dropped.
+     *
+     * @param tag the event tag
+     * @param gl a Gridlet object or <tt>null</tt> if it was not found
+     * @param gridletId the Gridlet ID
+     * @param userId the user or owner's ID of this Gridlet
+     * @return <tt>true</tt> if it is sent or dropped, <tt>false</tt>
+     * otherwise
+     * @pre gridletId > 0
+     * @pre userId > 0
+     * @post $none
+     */
+    protected boolean sendCancelGridlet(int tag, Gridlet gl, int gridletId,
+            int userId) {
+        if (dropEvents_ == true) {
+            return true;
+        }
+        return super.sendCancelGridlet(tag, gl, gridletId, userId);
+    }
+
+    /**
+     * Sends back a finished Gridlet, unless events are dropped.
+     *
+     * @param gl a Gridlet object
+     * @return <tt>true</tt> if it is sent or dropped, <tt>false</tt>
+     * otherwise
+     * @pre gl != null
+     * @post $none
+     */
+    protected boolean sendFinishGridlet(Gridlet gl) {
+        if (dropEvents_ == true) {
+            return true;
+        }
+        return super.sendFinishGridlet(gl);
+    }
+
+    /**
+     * Gets the number of events received by this entity, i.e. its internal
+     * events. Gridlets are submitted through method calls instead.
+     *
+     * @return the number of events
+     * @pre $none
+     * @post $result >= 0
+     */
+    long getNumEvents() {
+        return numEvents_;
+    }
+
+    /**
+     * Gets the number of lists of Gridlets received at once.
+     *
+     * @return the number of lists
+     * @pre $none
+     * @post $result >= 0
+     * @see #gridletSubmit(List)
+     */
+    int getNumBatches() {
+        return numBatches_;
+    }
+
+    /**
+     * Sets the minimum time between two samples of the resource state. A
+     * sample is taken when Gridlets are updated and at least this time has
+     * passed since the previous one.
+     *
+     * @param interval the time in seconds (3600 by default)
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre interval >= 0.0
+     * @post $none
+     */
+    boolean setTraceInterval(double interval) {
+        if (interval < 0.0) {
+            return false;
+        }
+
+        traceInterval_ = interval;
+        return true;
+    }
+
+    /**
+     * Sets the number of machines of the medium partition, i.e. the first
+     * machines of the MachineList. The other machines can only be used by
+     * the long partition. It must be set before the simulation starts.
+     *
+     * @param size the number of medium machines (38 by default)
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre size >= 0
+     * @post $none
+     */
+    boolean setMediumPartitionSize(int size) {
+        if (size < 0) {
+            return false;
+        }
+
+        mediumPartitionSize_ = size;
+        return true;
+    }
+
+    /**
+     * Sets how PEs are given to Gridlets. By default, a Gridlet only gets
+     * machines with no busy PE and no other Gridlet can use the PEs it
+     * leaves free on them. With node sharing, a Gridlet takes the free PEs
+     * of any machine:
+     * <ul>
+     * <li> <tt>AllocFirstFit</tt> puts it on the first machine with enough
+     *      free PEs
+     * <li> <tt>AllocBestFit</tt> puts it on a machine with the fewest free
+     *      PEs that are still enough
+     * </ul>
+     * A Gridlet that fits in no single machine is spread over the machines
+     * with the most free PEs.
+     * <p>
+     * With <tt>AllocContiguous</tt>, a Gridlet gets whole machines with
+     * consecutive indices in the MachineList, from the shortest run of idle
+     * machines that is long enough, and only gets machines apart if there
+     * is no such run. It must be set before the simulation starts.
+     *
+     * @param allocation <tt>AllocWholeMachines</tt>, <tt>AllocFirstFit</tt>,
+     * <tt>AllocBestFit</tt> or <tt>AllocContiguous</tt>
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre $none
+     * @post $none
+     */
+    boolean setAllocation(int allocation) {
+        if (allocation != AllocWholeMachines && allocation != AllocFirstFit
+                && allocation != AllocBestFit
+                && allocation != AllocContiguous) {
+            return false;
+        }
+
+        allocation_ = allocation;
+        return true;
+    }
+
+    /**
+     * Gets the number of Gridlets that got one run of consecutive machines
+     * in contiguous mode.
+     *
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     * @see #setAllocation(int)
+     */
+    int getNumContiguous() {
+        return numContiguous_;
+    }
+
+    /**
+     * Gets the number of Gridlets that got machines apart in contiguous
+     * mode, since no run of idle machines was long enough.
+     *
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     * @see #setAllocation(int)
+     */
+    int getNumScattered() {
+        return numScattered_;
+    }
+
+    /**
+     * Gets the mean fragmentation of the idle machines over time in
+     * contiguous mode, i.e. the share of idle machines outside the longest
+     * run of idle machines, weighted by how long it lasts.
+     *
+     * @return the mean fragmentation, between <tt>0.0</tt> and <tt>1.0</tt>
+     * @pre $none
+     * @post $result >= 0.0
+     * @see MachineRuns#getFragmentation()
+     */
+    double getMeanFragmentation() {
+        if (longRuns_ == null || GridSim.clock() <= 0.0) {
+            return 0.0;
+        }
+        double area = fragmentationArea_ + longRuns_.getFragmentation()
+                * (GridSim.clock() - lastFragmentationTime_);
+        return area / GridSim.clock();
+    }
+
+    /**
+     * Sets how finished Gridlets are detected. By default, every Gridlet in
+     * execution is updated on each event and an hourly internal event is
+     * kept while Gridlets are running. In event-driven mode, the finish time
+     * of a Gridlet is computed once when it is allocated and this entity
+     * only wakes up at the next finish time. The progress of a Gridlet is
+     * then only updated when it finishes, is paused or canceled.
+     * <p>
+     * In the default mode, a Gridlet may finish up to one second earlier
+     * than its own finish time if another internal event happens to come
+     * in that second. Hence both modes can give slightly different results.
+     *
+     * @param eventDriven <tt>true</tt> to use event-driven completions
+     * @pre $none
+     * @post $none
+     */
+    void setEventDriven(boolean eventDriven) {
+        eventDriven_ = eventDriven;
+    }
+
+    /**
+     * Sets when a snapshot of this resource is written, so that another
+     * simulation can resume from there. The snapshot is taken just before
+     * the first event or Gridlet that comes at or after this time, and the
+     * simulation then goes on. It needs event-driven completions, since
+     * otherwise the progress of the Gridlets depends on the hourly events.
+     * <p>
+     * A snapshot belongs to one workload, since the workload resumes by
+     * skipping the Gridlets the resource has received. No snapshot is
+     * written if the resource has received Gridlets from several users.
+     *
+     * @param time the simulation time of the snapshot
+     * @param fileName the snapshot file
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre time >= 0.0
+     * @pre fileName != null
+     * @post $none
+     * @see #setEventDriven(boolean)
+     * @see SimulationSnapshot
+     */
+    boolean setCheckpoint(double time, String fileName) {
+        if (time < 0.0 || fileName == null) {
+            return false;
+        }
+
+        checkpointTime_ = time;
+        checkpointFile_ = fileName;
+        return true;
+    }
+
+    /**
+     * Sets the snapshot this resource resumes from. Its queued, running and
+     * paused Gridlets are restored at the time of the snapshot, on the same
+     * PEs and with the same finish times, and are then sent back to the
+     * workload of the snapshot as usual. The workload must resume from the
+     * same snapshot, and both must be set before the simulation starts.
+     * <p>
+     * The machines, the policy and the allocation mode must be the ones
+     * of the simulation that took the snapshot. With conservative
+     * backfilling, the restored Gridlets get new reservations.
+     *
+     * @param snapshot a snapshot
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre snapshot != null
+     * @post $none
+     * @see MyWorkload#resume(SimulationSnapshot)
+     */
+    boolean resume(SimulationSnapshot snapshot) {
+        if (snapshot == null || eventDriven_ == false) {
+            return false;
         }
+
+        resume_ = snapshot;
+        return true;
     }
 
     /**
@@ -100,39 +489,78 @@ class CenapadAllocPolicy extends AllocPolicy {
      */
     @Override
     public void body() {
-        // Gets the PE's rating for each Machine in the list.
-        // Assumed every PE of one Machine has same MIPS rating.
-        pePerMachine = resource_.getMachineList().get(0).getNumPE();
-        maxPeSize = (int) pePerMachine * resource_.getMachineList().size();
+        if (traceFile_ != null) {
+            try {
+                res_trace = new ResourceTraceWriter(traceFile_);
+            } catch (IOException ex) {
+                Logger.getLogger(CenapadAllocPolicy.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
 
+        // keeps the machines in an array, so they can be accessed by index
         MachineList list = super.resource_.getMachineList();
         int size = list.size();
-        machineRating_ = new int[size];
+        machines_ = list.toArray(new Machine[size]);
+        int maxId = 0;
+        for (Machine m : machines_) {
+            maxId = Math.max(maxId, m.getMachineID());
+        }
+        machineIndex_ = new int[maxId + 1];
+
+        // puts each machine in the pool of its kind. Assumed every PE of
+        // one Machine has same MIPS rating.
+        machinePool_ = new MachinePool[size];
+        freePEs_ = new int[size];
+        if (allocation_ == AllocContiguous) {
+            longRuns_ = new MachineRuns();
+            mediumRuns_ = new MachineRuns();
+        }
+        maxPeSize = 0;
+        pePerMachine = Integer.MAX_VALUE;
+        minRating_ = Integer.MAX_VALUE;
+        maxRating_ = 0;
+        int medium_size = mediumPartitionSize_;
         for (int i = 0; i < size; i++) {
-            machineRating_[i] = super.resource_.getMIPSRatingOfOnePE(i, 0);
+            Machine m = machines_[i];
+            int numPE = m.getNumPE();
+            int rating = super.resource_.getMIPSRatingOfOnePE(
+                    m.getMachineID(), 0);
+            machineIndex_[m.getMachineID()] = i;
+            machinePool_[i] = getPool(numPE, rating, i < medium_size);
+            machinePool_[i].add(i, 0);
+
+            maxPeSize += numPE;
+            pePerMachine = Math.min(pePerMachine, numPE);
+            minRating_ = Math.min(minRating_, rating);
+            maxRating_ = Math.max(maxRating_, rating);
+            setFreePEs(i, numPE - m.getNumBusyPE());
         }
+        setPartitionPools();
 
-        int medium_size = 38;
-        for (Machine m : resource_.getMachineList()) {
-            if (mediumPartitionIds.size() >= medium_size) {
-                break;
-            }
-            mediumPartitionIds.add(m.getMachineID());
+        // the Gridlets of a snapshot come back at its time
+        if (resume_ != null) {
+            super.sim_pause( Math.max(resume_.getTime() - GridSim.clock(), 0) );
+            restoreIfDue();
         }
 
         // a loop that is looking for internal events only
         Sim_event ev = new Sim_event();
         while (Sim_system.running()) {
             super.sim_get_next(ev);
+            numEvents_++;
 
             // if the simulation finishes then exit the loop
             if (ev.get_tag() == GridSimTags.END_OF_SIMULATION
                     || super.isEndSimulation()) {
                 break;
             }
+            checkpointIfDue();
 
             // Internal Event if the event source is this entity
-            if (ev.get_src() == super.myId_ && gridletInExecList_.size() > 0) {
+            if (ev.get_src() == super.myId_ && eventDriven_ == true) {
+                updateGridletProcessing();   // update load and trace
+                completeGridlets();          // finish the due Gridlets
+            } else if (ev.get_src() == super.myId_ && gridletInExecList_.size() > 0) {
                 updateGridletProcessing();   // update Gridlets
                 checkGridletCompletion();    // check for finished Gridlets
             }
@@ -159,7 +587,13 @@ class CenapadAllocPolicy extends AllocPolicy {
                     + ".SpaceShared.body(): ignore internal events");
         }
 
-        res_trace.close();
+        if (res_trace != null) {
+            try {
+                res_trace.close();
+            } catch (IOException ex) {
+                Logger.getLogger(CenapadAllocPolicy.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
     }
 
     /**
@@ -175,28 +609,141 @@ class CenapadAllocPolicy extends AllocPolicy {
      */
     @Override
     public synchronized void gridletSubmit(Gridlet gl, boolean ack) {
+        restoreIfDue();
+        checkpointIfDue();
+
         // update the current Gridlets in exec list up to this point in time
         updateGridletProcessing();
+        addSubmittedGridlet(gl);
+
+        // sends back an ack if required
+        if (ack) {
+            super.sendAck(GridSimTags.GRIDLET_SUBMIT_ACK, true,
+                    gl.getGridletID(), gl.getUserID()
+            );
+        }
+    }
+
+    /**
+     * Schedules a list of new Gridlets that have been received at once, e.g.
+     * the jobs of a trace with the same submit time. The Gridlets in
+     * execution are updated once for the whole list, and then each Gridlet
+     * is allocated or queued in list order, as if they had been submitted
+     * one by one. No ack is sent back.
+     *
+     * @param list the Gridlets, which have not been through the GridResource
+     * entity
+     * @pre list != null
+     * @post $none
+     * @see #GRIDLET_SUBMIT_BATCH
+     */
+    synchronized void gridletSubmit(List<Gridlet> list) {
+        restoreIfDue();
+        checkpointIfDue();
+        numBatches_++;
+
+        updateGridletProcessing();
+        double costPerSec = super.resource_.getCostPerSec();
+        for (Gridlet gl : list) {
+            // done by the GridResource entity for a single Gridlet
+            gl.setResourceParameter(super.resId_, costPerSec);
+            addSubmittedGridlet(gl);
+        }
+    }
+
+    /**
+     * Handles the events the GridResource entity does not know, i.e.
+     * {@link #GRIDLET_SUBMIT_BATCH}.
+     *
+     * @param ev a Sim_event object
+     * @pre ev != null
+     * @post $none
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void processOtherEvent(Sim_event ev) {
+        if (ev.get_tag() == GRIDLET_SUBMIT_BATCH) {
+            gridletSubmit((List<Gridlet>) ev.get_data());
+            return;
+        }
+        super.processOtherEvent(ev);
+    }
+
+    /**
+     * Runs a new Gridlet if there are enough PEs, or puts it into the queue
+     * list of its partition otherwise.
+     *
+     * @param gl a Gridlet object that has just been received
+     * @pre gl != null
+     * @post $none
+     */
+    private void addSubmittedGridlet(Gridlet gl) {
+        // the lists are indexed by (userId, gridletId), so a Gridlet that is
+        // already here can not be listed twice
+        if (gridletStatus(gl.getGridletID(), gl.getUserID()) != -1) {
+            rejectGridlet(gl);
+            return;
+        }
 
+        received_.set( gl.getGridletID() );
+        if (ownerId_ == -1) {
+            ownerId_ = gl.getUserID();
+        } else if (ownerId_ != gl.getUserID()) {
+            severalOwners_ = true;
+        }
         ResGridlet rgl = new ResGridlet(gl);
         int partition = gl.getClassType();
 
-        boolean success = allocatePEtoGridlet(rgl, partition);
+        boolean success = allocateSubmittedGridlet(rgl, partition);
         // if no available PE then put the ResGridlet into a Queue list
         if (!success) {
             rgl.setGridletStatus(Gridlet.QUEUED);
             if (partition == PartitionMedium) {
-                gridletMediumQueueList_.add(rgl);
+                addToList(gridletMediumQueueList_, rgl);
             } else {
-                gridletLongQueueList_.add(rgl);
+                addToList(gridletLongQueueList_, rgl);
             }
         }
+    }
 
-        // sends back an ack if required
-        if (ack) {
-            super.sendAck(GridSimTags.GRIDLET_SUBMIT_ACK, true,
-                    gl.getGridletID(), gl.getUserID()
-            );
+    /**
+     * Sends back a Gridlet with the same IDs as one that is already in
+     * this resource, as FAILED.
+     *
+     * @param gl a Gridlet object that has just been received
+     * @pre gl != null
+     * @post $none
+     */
+    private void rejectGridlet(Gridlet gl) {
+        System.out.println(super.resName_
+                + ".CenapadAllocPolicy.gridletSubmit(): Error - Gridlet #"
+                + gl.getGridletID() + " for User #" + gl.getUserID()
+                + " has already been submitted.");
+
+        ResGridlet rgl = new ResGridlet(gl);
+        rgl.setGridletStatus(Gridlet.FAILED);
+        rgl.finalizeGridlet();
+        sendFinishGridlet(gl);
+    }
+
+    /**
+     * Adds a Gridlet to one of the lists of this resource. Submitted
+     * Gridlets with the IDs of a listed one are rejected beforehand, so a
+     * Gridlet can only be listed twice by a bug of this class.
+     *
+     * @param list the exec, paused or a queue list
+     * @param rgl a ResGridlet object
+     * @throws IllegalStateException if a Gridlet with the same IDs is
+     * already in the list
+     * @pre list != null
+     * @pre rgl != null
+     * @post $none
+     */
+    private void addToList(IndexedGridletList list, ResGridlet rgl) {
+        if (list.add(rgl) == false) {
+            throw new IllegalStateException(super.resName_ + ": Gridlet #"
+                    + rgl.getGridletID() + " for User #" + rgl.getUserID()
+                    + " is already listed.");
         }
     }
 
@@ -213,32 +760,25 @@ class CenapadAllocPolicy extends AllocPolicy {
      */
     @Override
     public synchronized int gridletStatus(int gridletId, int userId) {
-        ResGridlet rgl;
-
         // Find in EXEC List first
-        int found = gridletInExecList_.indexOf(gridletId, userId);
-        if (found >= 0) {
-            // Get the Gridlet from the execution list
-            rgl = (ResGridlet) gridletInExecList_.get(found);
+        ResGridlet rgl = gridletInExecList_.get(gridletId, userId);
+        if (rgl != null) {
             return rgl.getGridletStatus();
         }
 
         // Find in Paused List
-        found = gridletPausedList_.indexOf(gridletId, userId);
-        if (found >= 0) {
-            // Get the Gridlet from the execution list
-            rgl = (ResGridlet) gridletPausedList_.get(found);
+        rgl = gridletPausedList_.get(gridletId, userId);
+        if (rgl != null) {
+            return rgl.getGridletStatus();
+        }
+
+        // Find in Queue Lists
+        rgl = findQueuedGridlet(gridletId, userId);
+        if (rgl != null) {
             return rgl.getGridletStatus();
         }
 
-        // Find in Queue List
-        //found = gridletQueueList_.indexOf(gridletId, userId);
-//        if (found >= 0) {
-//            // Get the Gridlet from the execution list
-//            rgl = (ResGridlet) gridletQueueList_.get(found);
-//            return rgl.getGridletStatus();
-//        }
-        // if not found in all 3 lists then no found
+        // if not found in all 4 lists then no found
         return -1;
     }
 
@@ -294,7 +834,7 @@ class CenapadAllocPolicy extends AllocPolicy {
 
         // sends the Gridlet back to sender
         rgl.finalizeGridlet();
-        super.sendCancelGridlet(GridSimTags.GRIDLET_CANCEL, rgl.getGridlet(),
+        sendCancelGridlet(GridSimTags.GRIDLET_CANCEL, rgl.getGridlet(),
                 gridletId, userId);
     }
 
@@ -317,13 +857,14 @@ class CenapadAllocPolicy extends AllocPolicy {
         boolean status = false;
 
         // Find in EXEC List first
-        int found = gridletInExecList_.indexOf(gridletId, userId);
-        if (found >= 0) {
+        ResGridlet rgl = gridletInExecList_.get(gridletId, userId);
+        if (rgl != null) {
             // updates all the Gridlets first before pausing
             updateGridletProcessing();
+            updateGridletProgress(rgl);
 
             // Removes the Gridlet from the execution list
-            ResGridlet rgl = (ResGridlet) gridletInExecList_.remove(found);
+            gridletInExecList_.remove(rgl);
 
             // if a Gridlet is finished upon cancelling, then set it to success
             // instead.
@@ -337,39 +878,35 @@ class CenapadAllocPolicy extends AllocPolicy {
             } else {
                 status = true;
                 rgl.setGridletStatus(Gridlet.PAUSED);  // change the status
-                gridletPausedList_.add(rgl);   // add into the paused list
+                addToList(gridletPausedList_, rgl);   // add into the paused list
 
-                // Set the PE on which Gridlet finished to FREE
-                super.resource_.setStatusPE(PE.FREE, rgl.getMachineID(),
-                        rgl.getPEID());
+                // Set the PEs on which Gridlet was running to FREE
+                freePEs(rgl);
 
                 // empty slot is available, hence process a new Gridlet
                 allocateQueueGridlet();
             }
-        } else {      // Find in QUEUE list
-            //found = gridletQueueList_.indexOf(gridletId, userId);
-        }
-
-        // if found in the Queue List
-//        if (status == false && found >= 0) {
-//            status = true;
-//
-//            // removes the Gridlet from the Queue list
-//            ResGridlet rgl = (ResGridlet) gridletQueueList_.remove(found);
-//            rgl.setGridletStatus(Gridlet.PAUSED);   // change the status
-//            gridletPausedList_.add(rgl);            // add into the paused list
-//        } // if not found anywhere in both exec and paused lists
-//        else if (found == -1) {
-//            System.out.println(super.resName_
-//                    + ".SpaceShared.gridletPause(): Error - cannot "
-//                    + "find Gridlet #" + gridletId + " for User #" + userId);
-//        }
-//
-//        // sends back an ack if required
-//        if (ack) {
-//            super.sendAck(GridSimTags.GRIDLET_PAUSE_ACK, status,
-//                    gridletId, userId);
-//        }
+        } else {      // Find in QUEUE lists
+            rgl = removeQueuedGridlet(gridletId, userId);
+
+            // if found in one of the Queue lists
+            if (rgl != null) {
+                status = true;
+                rgl.setGridletStatus(Gridlet.PAUSED);   // change the status
+                addToList(gridletPausedList_, rgl);     // add into the paused list
+            } // if not found anywhere in both exec and queue lists
+            else {
+                System.out.println(super.resName_
+                        + ".SpaceShared.gridletPause(): Error - cannot "
+                        + "find Gridlet #" + gridletId + " for User #" + userId);
+            }
+        }
+
+        // sends back an ack if required
+        if (ack) {
+            super.sendAck(GridSimTags.GRIDLET_PAUSE_ACK, status,
+                    gridletId, userId);
+        }
     }
 
     /**
@@ -425,15 +962,13 @@ class CenapadAllocPolicy extends AllocPolicy {
                         gridletId, userId);
             }
 
-            gridletFinish(rgl, Gridlet.SUCCESS);
+            // cancel() has already set its PEs to FREE
+            returnGridlet(rgl);
         } else // otherwise moves this Gridlet to a different GridResource
         {
+            // cancel() has already set its PEs to FREE
             rgl.finalizeGridlet();
 
-            // Set PE on which Gridlet finished to FREE
-            super.resource_.setStatusPE(PE.FREE, rgl.getMachineID(),
-                    rgl.getPEID());
-
             super.gridletMigrate(rgl.getGridlet(), destId, ack);
             allocateQueueGridlet();
         }
@@ -457,10 +992,8 @@ class CenapadAllocPolicy extends AllocPolicy {
         boolean status = false;
 
         // finds the Gridlet in the execution list first
-        int found = gridletPausedList_.indexOf(gridletId, userId);
-        if (found >= 0) {
-            // removes the Gridlet
-            ResGridlet rgl = (ResGridlet) gridletPausedList_.remove(found);
+        ResGridlet rgl = gridletPausedList_.remove(gridletId, userId);
+        if (rgl != null) {
             rgl.setGridletStatus(Gridlet.RESUMED);
 
             // update the Gridlets up to this point in time
@@ -495,34 +1028,274 @@ class CenapadAllocPolicy extends AllocPolicy {
         }
     }
 
-    ///////////////////////////// PRIVATE METHODS /////////////////////
+    //////////////////////////// PROTECTED METHODS ////////////////////
     /**
-     * Allocates the first Gridlet in the Queue list (if any) to execution list
+     * Allocates a newly submitted Gridlet. By default, the Gridlet runs
+     * straight away if there are enough idle machines, even if other Gridlets
+     * are waiting in the queues.
      *
-     * @pre $none
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @return <tt>true</tt> if the Gridlet is running, <tt>false</tt> if it
+     * has to be queued
+     * @pre rgl != null
      * @post $none
      */
-    private void allocateQueueGridlet() {
-        // if there are many Gridlets in the QUEUE, then allocate a
-        // PE to the first Gridlet in the list since it follows FCFS
-        // (First Come First Serve) approach. Then removes the Gridlet from
-        // the Queue list
-        boolean allocatedFromQueue;
-        ResGridlet obj;
-        do {
-            allocatedFromQueue = false;
-            if (!gridletLongQueueList_.isEmpty()) {
-                obj = (ResGridlet) gridletLongQueueList_.get(0);
-                if (allocatePEtoGridlet(obj, PartitionLong)) {
-                    allocatedFromQueue = true;
-                    gridletLongQueueList_.remove(obj);
-                    continue; // try to allocated another long
-                }
-            }
+    protected boolean allocateSubmittedGridlet(ResGridlet rgl, int partition) {
+        return allocatePEtoGridlet(rgl, partition);
+    }
 
-            if (!gridletMediumQueueList_.isEmpty()) {
-                obj = (ResGridlet) gridletMediumQueueList_.get(0);
-                if (allocatePEtoGridlet(obj, PartitionMedium)) {
+    /**
+     * Called when a Gridlet is taken out of a queue list without running,
+     * i.e. it has been paused, canceled or moved while waiting.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    protected void gridletDequeued(ResGridlet rgl) {
+        // does nothing by default
+    }
+
+    /**
+     * Called when a Gridlet starts running, after its PEs are set to BUSY.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    protected void gridletStarted(ResGridlet rgl) {
+        // does nothing by default
+    }
+
+    /**
+     * Called when a Gridlet stops running, i.e. it has finished, has been
+     * paused, canceled or moved, after its PEs are set to FREE.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    protected void gridletStopped(ResGridlet rgl) {
+        // does nothing by default
+    }
+
+    /**
+     * Called when a queued Gridlet is restored from a snapshot, after it is
+     * added to its queue.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @pre rgl != null
+     * @post $none
+     * @see #resume(SimulationSnapshot)
+     */
+    protected void gridletRestored(ResGridlet rgl, int partition) {
+        // does nothing by default
+    }
+
+    /**
+     * Gets the number of whole machines a Gridlet needs. If the machines
+     * have different numbers of PEs, this is the number of the smallest
+     * machines it needs, i.e. it never takes more machines than that.
+     *
+     * @param rgl a ResGridlet object
+     * @return the number of machines
+     * @pre rgl != null
+     * @post $result >= 0
+     */
+    protected int getRequiredMachines(ResGridlet rgl) {
+        return getRequiredMachines(rgl.getNumPE());
+    }
+
+    /**
+     * Gets the number of whole machines a number of PEs needs.
+     *
+     * @param numPE the number of PEs
+     * @return the number of machines
+     * @pre numPE >= 0
+     * @post $result >= 0
+     * @see #getRequiredMachines(ResGridlet)
+     */
+    protected int getRequiredMachines(int numPE) {
+        return getRequiredMachines(numPE, pePerMachine);
+    }
+
+    /**
+     * Gets the number of whole machines a number of PEs needs on machines
+     * with a given number of PEs.
+     *
+     * @param numPE the number of PEs
+     * @param pePerMachine the PEs of the smallest machine
+     * @return the number of machines
+     * @pre numPE >= 0
+     * @pre pePerMachine > 0
+     * @post $result >= 0
+     */
+    static int getRequiredMachines(int numPE, double pePerMachine) {
+        return (int) Math.ceil(numPE / pePerMachine);
+    }
+
+    /**
+     * Gets the time a Gridlet needs to finish its remaining length, rounded
+     * up as done when it is allocated. A Gridlet runs at the rating of the
+     * slowest PE it has, or of the slowest PE of this resource if it is not
+     * running yet.
+     *
+     * @param rgl a ResGridlet object
+     * @return the run time in seconds
+     * @pre rgl != null
+     * @post $result >= 1
+     */
+    protected int getEstimatedRunTime(ResGridlet rgl) {
+        return getEstimatedRunTime(rgl.getRemainingGridletLength(),
+                getRating(rgl));
+    }
+
+    /**
+     * Gets the time a length takes on PEs of a given rating, rounded up as
+     * done when a Gridlet is allocated.
+     *
+     * @param length the remaining Gridlet length
+     * @param rating the MIPS rating of the slowest PE
+     * @return the run time in seconds
+     * @pre length >= 0.0
+     * @pre rating > 0
+     * @post $result >= 1
+     */
+    static int getEstimatedRunTime(double length, int rating) {
+        double time = forecastFinishTime(rating, length);
+        return (int) (time + 1);   // rounding up
+    }
+
+    /**
+     * Gets the time a Gridlet that starts running now finishes. It is only
+     * valid in {@link #gridletStarted(ResGridlet)}.
+     *
+     * @param rgl a ResGridlet object that has just been allocated
+     * @return the finish time
+     * @pre rgl != null
+     * @post $none
+     */
+    protected static double getStartedFinishTime(ResGridlet rgl) {
+        // the finish time of a ResGridlet is set to its rounded up run time
+        return GridSim.clock() + rgl.getGridletFinishTime();
+    }
+
+    /**
+     * Gets the machines a Gridlet has PEs on, each one once.
+     *
+     * @param rgl a ResGridlet object that has been allocated
+     * @return the machine IDs, in the order its PEs were allocated
+     * @pre rgl != null
+     * @post $result != null
+     */
+    static int[] getMachineIds(ResGridlet rgl) {
+        if (rgl.getNumPE() <= 1) {
+            return new int[] { rgl.getMachineID() };
+        }
+
+        // the PEs of one machine are next to each other in this list
+        int[] ids = rgl.getListMachineID();
+        int num = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                num++;
+            }
+        }
+
+        int[] machineIds = new int[num];
+        num = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                machineIds[num++] = ids[i];
+            }
+        }
+        return machineIds;
+    }
+
+    /**
+     * Sets whether Gridlets of the long partition take the idle machines
+     * outside the medium partition first. By default, idle machines are
+     * taken in MachineList order.
+     *
+     * @param otherMachinesFirst <tt>true</tt> to keep the medium machines for
+     * the medium partition as long as possible
+     * @pre $none
+     * @post $none
+     */
+    protected void setOtherMachinesFirst(boolean otherMachinesFirst) {
+        otherMachinesFirst_ = otherMachinesFirst;
+        if (machinePool_ != null) {
+            setPartitionPools();
+        }
+    }
+
+    /**
+     * Gets the number of machines of this resource.
+     *
+     * @return the number of machines
+     * @pre $none
+     * @post $result >= 0
+     */
+    protected int getNumMachines() {
+        return machines_.length;
+    }
+
+    /**
+     * Gets the number of machines of the medium partition.
+     *
+     * @return the number of machines
+     * @pre $none
+     * @post $result >= 0
+     */
+    protected int getNumMediumMachines() {
+        int count = 0;
+        for (MachinePool pool : mediumPools_) {
+            count += pool.getNumMachines();
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a machine belongs to the medium partition.
+     *
+     * @param machineId a machine ID
+     * @return <tt>true</tt> if it is a medium partition machine
+     * @pre machineId >= 0
+     * @post $none
+     */
+    protected boolean isMediumMachine(int machineId) {
+        return machinePool_[ machineIndex_[machineId] ].isMedium();
+    }
+
+    /**
+     * Allocates the first Gridlet in the Queue list (if any) to execution list
+     *
+     * @pre $none
+     * @post $none
+     */
+    protected void allocateQueueGridlet() {
+        // if there are many Gridlets in the QUEUE, then allocate a
+        // PE to the first Gridlet in the list since it follows FCFS
+        // (First Come First Serve) approach. Then removes the Gridlet from
+        // the Queue list
+        boolean allocatedFromQueue;
+        ResGridlet obj;
+        do {
+            allocatedFromQueue = false;
+            if (!gridletLongQueueList_.isEmpty()) {
+                obj = gridletLongQueueList_.getFirst();
+                if (allocatePEtoGridlet(obj, PartitionLong)) {
+                    allocatedFromQueue = true;
+                    gridletLongQueueList_.remove(obj);
+                    continue; // try to allocated another long
+                }
+            }
+
+            if (!gridletMediumQueueList_.isEmpty()) {
+                obj = gridletMediumQueueList_.getFirst();
+                if (allocatePEtoGridlet(obj, PartitionMedium)) {
                     allocatedFromQueue = true;
                     gridletMediumQueueList_.remove(obj);
                 }
@@ -530,6 +1303,7 @@ class CenapadAllocPolicy extends AllocPolicy {
         } while (allocatedFromQueue);
     }
 
+    ///////////////////////////// PRIVATE METHODS /////////////////////
     /**
      * Updates the execution of all Gridlets for a period of time. The time
      * period is determined from the last update time up to the current time.
@@ -539,7 +1313,7 @@ class CenapadAllocPolicy extends AllocPolicy {
      * @pre $none
      * @post $none
      */
-    private synchronized void updateGridletProcessing() {
+    synchronized void updateGridletProcessing() {
         // Identify MI share for the duration (from last event time)
         double time = GridSim.clock();
         double timeSpan = time - lastUpdateTime_;
@@ -563,32 +1337,28 @@ class CenapadAllocPolicy extends AllocPolicy {
             return;
         }
 
-        ResGridlet obj;
+        // in event-driven mode, Gridlets are updated when they stop running
+        if (eventDriven_ == false) {
+            ResGridlet obj;
 
-        // a loop that allocates MI share for each Gridlet accordingly
-        Iterator iter = gridletInExecList_.iterator();
-        while (iter.hasNext()) {
-            obj = (ResGridlet) iter.next();
+            // a loop that allocates MI share for each Gridlet accordingly
+            Iterator<ResGridlet> iter = gridletInExecList_.iterator();
+            while (iter.hasNext()) {
+                obj = iter.next();
 
-            // Updates the Gridlet length that is currently being executed
-            load = getMIShare(timeSpan);
-            obj.updateGridletFinishedSoFar(load);
-        }
-        int machineCount = 0;
-        for (Machine m : resource_.getMachineList()) {
-            if (m.getNumBusyPE() > 0)
-                machineCount++;
+                // Updates the Gridlet length that is currently being executed
+                load = getMIShare(timeSpan, getRating(obj));
+                obj.updateGridletFinishedSoFar(load);
+            }
         }
+        int machineCount = machines_.length - numIdleMachines_;
 
         //Print status to trace file
         double span = time - lastPrintedTrace;
-        if (span > minimumSpan) {
-            res_trace.print(time + ",");
-            res_trace.print(resource_.getNumBusyPE() + ",");
-            res_trace.print(gridletInExecList_.size() + ",");
-            res_trace.print(gridletMediumQueueList_.size() + ",");
-            res_trace.println(gridletLongQueueList_.size() + ",");
-            res_trace.println(machineCount);
+        if (res_trace != null && span > traceInterval_) {
+            res_trace.sample(time, resource_.getNumBusyPE(),
+                    gridletInExecList_.size(), gridletLongQueueList_.size(),
+                    gridletMediumQueueList_.size(), machineCount);
             lastPrintedTrace = time;
         }
     }
@@ -597,102 +1367,282 @@ class CenapadAllocPolicy extends AllocPolicy {
      * Identifies MI share (max and min) each Gridlet gets for a given timeSpan
      *
      * @param timeSpan duration
-     * @param machineId machine ID that executes this Gridlet
+     * @param rating the MIPS rating the Gridlet runs at
      * @return the total MI share that a Gridlet gets for a given
      * <tt>timeSpan</tt>
      * @pre timeSpan >= 0.0
-     * @pre machineId > 0
+     * @pre rating > 0
      * @post $result >= 0.0
      */
-    private double getMIShare(double timeSpan) {
+    private double getMIShare(double timeSpan, int rating) {
         // 1 - localLoad_ = available MI share percentage
         double localLoad = super.resCalendar_.getCurrentLoad();
 
-        // each Machine might have different PE Rating compare to another
-        // so much look at which Machine this PE belongs to
-        // 100.0 is for the MIPs rating for the PEs     ~RenatoCJN
-        double totalMI = 100.0 * timeSpan * (1 - localLoad);
+        // each Machine might have different PE Rating compare to another,
+        // so the rating is the one of the slowest PE of this Gridlet
+        double totalMI = rating * timeSpan * (1 - localLoad);
         return totalMI;
     }
 
+    /**
+     * Gets the MIPS rating a Gridlet runs at, i.e. the rating of the
+     * slowest PE it has. A Gridlet that is not running is given the rating
+     * of the slowest PE of this resource.
+     *
+     * @param rgl a ResGridlet object
+     * @return the rating
+     * @pre rgl != null
+     * @post $result > 0
+     */
+    private int getRating(ResGridlet rgl) {
+        if (minRating_ == maxRating_) {
+            return minRating_;
+        }
+
+        Integer rating = ratings_.get(rgl);
+        return (rating != null) ? rating : minRating_;
+    }
+
     /**
      * Allocates a Gridlet into a free PE and sets the Gridlet status into
      * INEXEC and PE status into busy afterwards
      *
      * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
      * @return <tt>true</tt> if there is an empty PE to process this Gridlet,
      * <tt>false</tt> otherwise
      * @pre rgl != null
      * @post $none
      */
-    private synchronized boolean allocatePEtoGridlet(ResGridlet rgl, int partition) {
+    protected synchronized boolean allocatePEtoGridlet(ResGridlet rgl, int partition) {
         // IDENTIFY MACHINE whi ch has a free PE and add this Gridlet to it.
         if (rgl.getNumPE() > maxPeSize) {
             return false;
         }
 
-        int countFreeMachine = 0;
-        double requiredMachines = Math.ceil(rgl.getNumPE() / pePerMachine);
-        //System.out.println(rgl.getNumPE() + " PEs => " + requiredMachines + " machines");
-        
-        ArrayList<Machine> machines = new ArrayList<>();
-        for (Machine m : resource_.getMachineList()) {
-            if (m.getNumBusyPE() == 0) {
-                countFreeMachine++;
-                if (partition == PartitionLong ||
-                        mediumPartitionIds.contains(m.getMachineID())) {
-                    machines.add(m);
-                }
-            }
+        // only machines with no busy PE are given to a Gridlet, unless nodes
+        // are shared. Medium Gridlets can only use the machines of the
+        // medium partition.
+        MachinePool[] pools = longPools_;
+        if (partition != PartitionLong) {
+            pools = mediumPools_;
+        }
+
+        // with node sharing, the free PEs of busy machines count too
+        boolean sharing = (allocation_ == AllocFirstFit
+                || allocation_ == AllocBestFit);
+        int freePEs = 0;
+        for (MachinePool pool : pools) {
+            freePEs += sharing ? pool.getNumFreePE() : pool.getNumIdlePE();
         }
-        if (machines.size() < requiredMachines) {
+        if (freePEs < rgl.getNumPE()) {
             return false;
         }
 
-        //System.out.print(GridSim.clock() + " " + resource_.getNumFreePE()+ " - " + rgl.getNumPE() + " = ");
-        int allocatedPEs = 0;
-        //System.out.print("machines: ");
-        for (Machine m : machines) {
-            for (PE freePE : m.getPEList()) {
+        // add this Gridlet into execution list before it gets any PE
+        addToList(gridletInExecList_, rgl);
+
+        // takes the idle machines pool by pool, and runs the Gridlet at the
+        // rating of the slowest pool it gets machines from
+        int rating = -1;
+        if (sharing == true) {
+            rating = allocateSharedPEs(rgl, pools);
+        } else if (allocation_ == AllocContiguous) {
+            rating = allocateContiguousMachines(rgl, partition);
+        }
+        if (rating < 0) {
+            rating = Integer.MAX_VALUE;
+            int allocatedPEs = 0;
+            for (MachinePool pool : pools) {
                 if (allocatedPEs == rgl.getNumPE()) {
                     break;
                 }
-                // Register PE and machine to gridlet
-                rgl.setMachineAndPEID(m.getMachineID(), freePE.getID());
-
-                // Set allocated PE to BUSY status
-                resource_.setStatusPE(PE.BUSY, m.getMachineID(),
-                        freePE.getID());
-
-                allocatedPEs++;
-            }
-            //System.out.print(m.getMachineID() + " ");
-            if (allocatedPEs == rgl.getNumPE()) {
-                break;
+                if (pool.getNumIdle() > 0) {
+                    allocatedPEs = allocateMachines(rgl, pool, allocatedPEs);
+                    rating = Math.min(rating, pool.getRating());
+                }
             }
         }
+        if (minRating_ != maxRating_) {
+            ratings_.put(rgl, rating);
+        }
 
-        //System.out.println(resource_.getNumFreePE()+" / "+countFreeMachine);
-        //System.out.println("| Required machines: "+requiredMachines);
-        //System.out.printf("allocatedPEs: %d | requiredPes: %d\n\n", allocatedPEs, rgl.getNumPE());
         // change Gridlet status
         rgl.setGridletStatus(Gridlet.INEXEC);
 
-        // add this Gridlet into execution list
-        gridletInExecList_.add(rgl);
-
         // Identify Completion Time and Set Interrupt
-        int rating = 100;
-        double time = forecastFinishTime(rating,
-                rgl.getRemainingGridletLength());
-
-        int roundUpTime = (int) (time + 1);   // rounding up
+        int roundUpTime = getEstimatedRunTime(rgl);
         rgl.setFinishTime(roundUpTime);
+        gridletStarted(rgl);
+
+        if (eventDriven_ == true) {
+            // only wakes up if this Gridlet is the next one to finish
+            completions_.add( new Completion(rgl,
+                    GridSim.clock() + roundUpTime, completionSeq_++) );
+            scheduleWakeup();
+            return true;
+        }
+
         // then send this into itself
-        super.sendInternalEvent(roundUpTime);
+        sendInternalEvent(roundUpTime);
         return true;
     }
 
+    /**
+     * Gives idle machines of a pool to a Gridlet in MachineList order until
+     * all its PEs are allocated, and sets them to BUSY.
+     *
+     * @param rgl a ResGridlet object
+     * @param pool the pool whose idle machines it can use
+     * @param allocatedPEs the number of PEs it already has
+     * @return the number of PEs it has now
+     * @pre rgl != null
+     * @pre pool != null
+     * @post $none
+     */
+    private int allocateMachines(ResGridlet rgl, MachinePool pool,
+            int allocatedPEs) {
+        int i = pool.nextIdle(0);
+        while (i >= 0 && allocatedPEs < rgl.getNumPE()) {
+            allocatedPEs += allocatePEs(rgl, i, rgl.getNumPE() - allocatedPEs);
+            i = pool.nextIdle(i + 1);
+        }
+        return allocatedPEs;
+    }
+
+    /**
+     * Gives a Gridlet the first machines of the shortest run of idle
+     * machines of its partition that is long enough, in contiguous mode.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @return the rating of the slowest machine it gets or <tt>-1</tt> if
+     * no run is long enough
+     * @pre rgl != null
+     * @post $none
+     */
+    private int allocateContiguousMachines(ResGridlet rgl, int partition) {
+        MachineRuns runs = longRuns_;
+        if (partition != PartitionLong) {
+            runs = mediumRuns_;
+        }
+
+        // a run of this many machines has enough PEs even if they are the
+        // smallest ones
+        int first = runs.bestFit( getRequiredMachines(rgl) );
+        if (first < 0) {
+            numScattered_++;
+            return -1;
+        }
+
+        int numPE = rgl.getNumPE();
+        int allocatedPEs = 0;
+        int rating = Integer.MAX_VALUE;
+        for (int i = first; allocatedPEs < numPE; i++) {
+            allocatedPEs += allocatePEs(rgl, i, numPE - allocatedPEs);
+            rating = Math.min(rating, machinePool_[i].getRating());
+        }
+        numContiguous_++;
+        return rating;
+    }
+
+    /**
+     * Gives free PEs to a Gridlet in node sharing mode, on one machine
+     * chosen by first or best fit if it fits in one, or else on the
+     * machines with the most free PEs, pool by pool.
+     *
+     * @param rgl a ResGridlet object
+     * @param pools the pools it can use, which have enough free PEs
+     * @return the rating of the slowest pool it gets PEs from
+     * @pre rgl != null
+     * @pre pools != null
+     * @post $none
+     */
+    private int allocateSharedPEs(ResGridlet rgl, MachinePool[] pools) {
+        int numPE = rgl.getNumPE();
+        MachinePool fit = null;
+        int index = -1;
+        for (MachinePool pool : pools) {
+            int i = (allocation_ == AllocBestFit) ? pool.bestFit(numPE)
+                    : pool.firstFit(numPE);
+            if (i < 0) {
+                continue;
+            }
+
+            // the pools are grouped by kind of machine, not by index, so
+            // the first machine may be in any of them
+            boolean better;
+            if (fit == null) {
+                better = true;
+            } else if (allocation_ == AllocFirstFit
+                    || freePEs_[i] == freePEs_[index]) {
+                better = i < index;
+            } else {
+                better = freePEs_[i] < freePEs_[index];
+            }
+            if (better == true) {
+                fit = pool;
+                index = i;
+            }
+        }
+
+        if (fit != null) {
+            allocatePEs(rgl, index, numPE);
+            return fit.getRating();
+        }
+
+        // takes all free PEs of the emptiest machines first
+        int allocatedPEs = 0;
+        int rating = Integer.MAX_VALUE;
+        for (MachinePool pool : pools) {
+            for (int k = pool.getNumPE(); k > 0 && allocatedPEs < numPE; k--) {
+                int i = pool.nextFree(k, 0);
+                while (i >= 0 && allocatedPEs < numPE) {
+                    allocatedPEs += allocatePEs(rgl, i, numPE - allocatedPEs);
+                    rating = Math.min(rating, pool.getRating());
+                    i = pool.nextFree(k, i + 1);
+                }
+            }
+            if (allocatedPEs == numPE) {
+                break;
+            }
+        }
+        return rating;
+    }
+
+    /**
+     * Gives free PEs of a machine to a Gridlet and sets them to BUSY.
+     *
+     * @param rgl a ResGridlet object
+     * @param index the machine index in machines_
+     * @param numPE the most PEs it takes
+     * @return the number of PEs it takes
+     * @pre rgl != null
+     * @pre index >= 0
+     * @post $none
+     */
+    private int allocatePEs(ResGridlet rgl, int index, int numPE) {
+        Machine m = machines_[index];
+        int count = 0;
+        for (PE freePE : m.getPEList()) {
+            if (count == numPE) {
+                break;
+            }
+            if (freePE.getStatus() != PE.FREE) {
+                continue;
+            }
+            // Register PE and machine to gridlet
+            rgl.setMachineAndPEID(m.getMachineID(), freePE.getID());
+
+            // Set allocated PE to BUSY status
+            freePE.setStatus(PE.BUSY);
+            count++;
+        }
+
+        setFreePEs(index, freePEs_[index] - count);
+        return count;
+    }
+
     /**
      * Forecast finish time of a Gridlet.
      * <tt>Finish time = length / available rating</tt>
@@ -724,23 +1674,22 @@ class CenapadAllocPolicy extends AllocPolicy {
      * @pre $none
      * @post $none
      */
-    private synchronized void checkGridletCompletion() {
-        ResGridlet obj;
-        int i = 0;
-
-        // NOTE: This one should stay as it is since gridletFinish()
-        // will modify the content of this list if a Gridlet has finished.
-        // Can't use iterator since it will cause an exception
-        while (i < gridletInExecList_.size()) {
-            obj = (ResGridlet) gridletInExecList_.get(i);
-
+    synchronized void checkGridletCompletion() {
+        // NOTE: gridletFinish() will add queued Gridlets into the exec list,
+        // so the finished ones are taken out first and then finished in the
+        // same order. Newly allocated Gridlets can't be finished yet.
+        ArrayList<ResGridlet> finished = new ArrayList<ResGridlet>();
+        Iterator<ResGridlet> iter = gridletInExecList_.iterator();
+        while (iter.hasNext()) {
+            ResGridlet obj = iter.next();
             if (obj.getRemainingGridletLength() == 0.0) {
-                gridletInExecList_.remove(obj);
-                gridletFinish(obj, Gridlet.SUCCESS);
-                continue;
+                iter.remove();
+                finished.add(obj);
             }
+        }
 
-            i++;
+        for (ResGridlet obj : finished) {
+            gridletFinish(obj, Gridlet.SUCCESS);
         }
 
         // if there are still Gridlets left in the execution
@@ -749,7 +1698,81 @@ class CenapadAllocPolicy extends AllocPolicy {
         //       simulation more realistic, BUT will take longer time to
         //       run this simulation. Also, size of sim_trace will be HUGE!
         if (gridletInExecList_.size() > 0) {
-            super.sendInternalEvent(60.0 * 60.0);
+            sendInternalEvent(60.0 * 60.0);
+        }
+    }
+
+    /**
+     * Finishes all Gridlets whose finish time has come, in the order of their
+     * finish time, and then wakes up at the next finish time (if any). Only
+     * used in event-driven mode.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private synchronized void completeGridlets() {
+        double now = GridSim.clock();
+        while (wakeups_.isEmpty() == false && wakeups_.first() <= now) {
+            wakeups_.pollFirst();
+        }
+
+        // gridletFinish() may allocate queued Gridlets, but they can't
+        // finish at this time since the finish time is at least 1 sec ahead
+        while (completions_.isEmpty() == false
+                && completions_.peek().time_ <= now) {
+            Completion c = completions_.poll();
+            ResGridlet rgl = c.rgl_;
+
+            // ignores Gridlets that have been paused, canceled or moved
+            if (gridletInExecList_.get(rgl.getGridletID(), rgl.getUserID()) != rgl
+                    || rgl.getExecStartTime() != c.start_) {
+                continue;
+            }
+
+            gridletInExecList_.remove(rgl);
+            updateGridletProgress(rgl);
+            gridletFinish(rgl, Gridlet.SUCCESS);
+        }
+
+        scheduleWakeup();
+    }
+
+    /**
+     * Sends an internal event for the next finish time, unless there is
+     * already an internal event coming at or before that time. Only used in
+     * event-driven mode.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private void scheduleWakeup() {
+        if (completions_.isEmpty() == true) {
+            return;
+        }
+
+        double time = completions_.peek().time_;
+        if (wakeups_.isEmpty() == false && wakeups_.first() <= time) {
+            return;
+        }
+
+        wakeups_.add(time);
+        sendInternalEvent(time - GridSim.clock());
+    }
+
+    /**
+     * Updates the length executed so far of one Gridlet since it started
+     * running. Only used in event-driven mode, where Gridlets are not updated
+     * on every event. It must be called once, when the Gridlet stops running.
+     *
+     * @param rgl a ResGridlet object that is in execution
+     * @pre rgl != null
+     * @post $none
+     */
+    private void updateGridletProgress(ResGridlet rgl) {
+        if (eventDriven_ == true) {
+            double timeSpan = GridSim.clock() - rgl.getExecStartTime();
+            rgl.updateGridletFinishedSoFar( getMIShare(timeSpan,
+                    getRating(rgl)) );
         }
     }
 
@@ -765,27 +1788,503 @@ class CenapadAllocPolicy extends AllocPolicy {
      */
     private void gridletFinish(ResGridlet rgl, int status) {
         // Set PE on which Gridlet finished to FREE
-        //System.out.print(GridSim.clock() + " " + resource_.getNumFreePE() + " + " + rgl.getNumPE() + " = ");
-        if (rgl.getNumPE() > 1) {
-            for (int i=0; i<rgl.getListPEID().length; i++) {
-                int m = rgl.getListMachineID()[i];
-                int pe = rgl.getListPEID()[i];
-                resource_.setStatusPE(PE.FREE, m, pe);
-            }
-        } else {
-            super.resource_.setStatusPE(PE.FREE, rgl.getMachineID(), rgl.getPEID());
-        }
-        //System.out.println(resource_.getNumFreePE());
+        freePEs(rgl);
 
         // the order is important! Set the status first then finalize
         // due to timing issues in ResGridlet class
         rgl.setGridletStatus(status);
-        rgl.finalizeGridlet();
-        super.sendFinishGridlet(rgl.getGridlet());
+        returnGridlet(rgl);
 
         allocateQueueGridlet();   // move Queued Gridlet into exec list
     }
 
+    /**
+     * Finalizes a finished Gridlet whose PEs are already FREE, records it
+     * in the results and sends it back to its user.
+     *
+     * @param rgl a ResGridlet object whose status is already set
+     * @pre rgl != null
+     * @post $none
+     */
+    private void returnGridlet(ResGridlet rgl) {
+        rgl.finalizeGridlet();
+        RestoredTimes times = restored_.remove(rgl);
+        if (times != null) {
+            times.apply(rgl.getGridlet());
+        }
+        if (results_ != null) {
+            results_.add(rgl);
+        }
+        if (consumer_ != null) {
+            consumer_.gridletReturned(rgl.getGridlet());
+        }
+        sendFinishGridlet(rgl.getGridlet());
+    }
+
+    /**
+     * Sets all PEs allocated to a Gridlet to FREE. A machine becomes idle
+     * again, i.e. it can be given to another Gridlet, once none of its PEs
+     * is busy.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    private void freePEs(ResGridlet rgl) {
+        if (rgl.getNumPE() > 1) {
+            int[] machineIds = rgl.getListMachineID();
+            int[] peIds = rgl.getListPEID();
+            for (int i = 0; i < peIds.length; i++) {
+                freePE(machineIds[i], peIds[i]);
+            }
+        } else {
+            freePE(rgl.getMachineID(), rgl.getPEID());
+        }
+        ratings_.remove(rgl);
+        gridletStopped(rgl);
+    }
+
+    /**
+     * Sets a PE to FREE and updates the free PEs of its machine accordingly.
+     *
+     * @param machineId a machine ID
+     * @param peId a PE ID of that machine
+     * @pre machineId >= 0
+     * @pre peId >= 0
+     * @post $none
+     */
+    private void freePE(int machineId, int peId) {
+        int index = machineIndex_[machineId];
+        machines_[index].setStatusPE(PE.FREE, peId);
+        setFreePEs(index, freePEs_[index] + 1);
+    }
+
+    /**
+     * Sets the number of free PEs of a machine in its pool, which also
+     * tells whether it is idle.
+     *
+     * @param index the machine index in machines_
+     * @param numFree the number of PEs that are not busy
+     * @pre index >= 0
+     * @pre numFree >= 0
+     * @post $none
+     */
+    private void setFreePEs(int index, int numFree) {
+        int oldFree = freePEs_[index];
+        if (oldFree == numFree) {
+            return;
+        }
+
+        MachinePool pool = machinePool_[index];
+        pool.setFree(index, oldFree, numFree);
+        freePEs_[index] = numFree;
+
+        // a machine is idle once none of its PEs is busy
+        int numPE = pool.getNumPE();
+        if (oldFree == numPE || numFree == numPE) {
+            int delta = (numFree == numPE) ? 1 : -1;
+            numIdleMachines_ += delta;
+            if (pool.isMedium() == true) {
+                numIdleMediumMachines_ += delta;
+            }
+            if (longRuns_ != null) {
+                setMachineRunIdle(index, numFree == numPE);
+            }
+        }
+    }
+
+    /**
+     * Marks a machine as idle or busy in the runs of idle machines, and
+     * adds up the fragmentation until now. Only used in contiguous mode.
+     *
+     * @param index the machine index in machines_
+     * @param idle <tt>true</tt> if the machine has no busy PE
+     * @pre index >= 0
+     * @post $none
+     */
+    private void setMachineRunIdle(int index, boolean idle) {
+        double time = GridSim.clock();
+        fragmentationArea_ += longRuns_.getFragmentation()
+                * (time - lastFragmentationTime_);
+        lastFragmentationTime_ = time;
+
+        boolean medium = machinePool_[index].isMedium();
+        if (idle == true) {
+            longRuns_.addIdle(index);
+            if (medium == true) {
+                mediumRuns_.addIdle(index);
+            }
+        } else {
+            longRuns_.removeIdle(index);
+            if (medium == true) {
+                mediumRuns_.removeIdle(index);
+            }
+        }
+    }
+
+    /**
+     * Gets the pool of a kind of machine, creating it if needed.
+     *
+     * @param numPE the number of PEs of the machine
+     * @param rating the MIPS rating of its PEs
+     * @param medium <tt>true</tt> if it belongs to the medium partition
+     * @return the pool
+     * @pre numPE > 0
+     * @post $result != null
+     */
+    private MachinePool getPool(int numPE, int rating, boolean medium) {
+        for (MachinePool pool : pools_) {
+            if (pool.accepts(numPE, rating, medium) == true) {
+                return pool;
+            }
+        }
+
+        MachinePool pool = new MachinePool(numPE, rating, medium);
+        pools_.add(pool);
+        return pool;
+    }
+
+    /**
+     * Sets the pools each partition takes idle machines from, in order. The
+     * medium partition only has the medium pools, while the long partition
+     * has all of them, those outside the medium partition first if asked.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private void setPartitionPools() {
+        ArrayList<MachinePool> medium = new ArrayList<MachinePool>();
+        ArrayList<MachinePool> other = new ArrayList<MachinePool>();
+        for (MachinePool pool : pools_) {
+            if (pool.isMedium() == true) {
+                medium.add(pool);
+            } else {
+                other.add(pool);
+            }
+        }
+
+        ArrayList<MachinePool> all = new ArrayList<MachinePool>(pools_);
+        if (otherMachinesFirst_ == true) {
+            all = new ArrayList<MachinePool>(other);
+            all.addAll(medium);
+        }
+        mediumPools_ = medium.toArray(new MachinePool[medium.size()]);
+        longPools_ = all.toArray(new MachinePool[all.size()]);
+    }
+
+    /**
+     * Writes the snapshot if its time has come. Only the first call after
+     * that time writes it.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private void checkpointIfDue() {
+        if (checkpointFile_ == null || GridSim.clock() < checkpointTime_) {
+            return;
+        }
+
+        String fileName = checkpointFile_;
+        checkpointFile_ = null;
+        if (eventDriven_ == false) {
+            System.out.println(super.get_name() + ": Error - a snapshot "
+                    + "needs event-driven completions.");
+            return;
+        }
+        if (severalOwners_ == true) {
+            System.out.println(super.get_name() + ": Error - a snapshot "
+                    + "needs the Gridlets of one user.");
+            return;
+        }
+
+        try {
+            takeSnapshot(checkpointTime_).write(fileName);
+        } catch (IOException ex) {
+            Logger.getLogger(CenapadAllocPolicy.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the Gridlets of this resource. Nothing has
+     * happened to them since the given time.
+     *
+     * @param time the time of the snapshot
+     * @return the snapshot
+     * @pre time <= GridSim.clock()
+     * @post $result != null
+     */
+    private SimulationSnapshot takeSnapshot(double time) {
+        // the order of the pending completions, which breaks the ties
+        // between Gridlets that finish at the same time
+        ArrayList<Completion> pending = new ArrayList<Completion>();
+        for (Completion c : completions_) {
+            ResGridlet rgl = c.rgl_;
+            if (gridletInExecList_.get(rgl.getGridletID(), rgl.getUserID()) == rgl
+                    && rgl.getExecStartTime() == c.start_) {
+                pending.add(c);
+            }
+        }
+        Collections.sort(pending);
+        IdentityHashMap<ResGridlet, Completion> completions
+                = new IdentityHashMap<ResGridlet, Completion>();
+        for (Completion c : pending) {
+            completions.put(c.rgl_, c);
+        }
+
+        String userName = "";
+        if (ownerId_ != -1) {
+            userName = GridSim.getEntityName(ownerId_);
+        }
+        SimulationSnapshot snapshot = new SimulationSnapshot(time, userName,
+                getReceived());
+        // running Gridlets come first, so they hold their PEs again before
+        // the queued ones are restored
+        IndexedGridletList[] lists = { gridletInExecList_,
+            gridletMediumQueueList_, gridletLongQueueList_, gridletPausedList_ };
+        int[] states = { SimulationSnapshot.RUNNING,
+            SimulationSnapshot.QUEUED_MEDIUM, SimulationSnapshot.QUEUED_LONG,
+            SimulationSnapshot.PAUSED };
+        for (int i = 0; i < lists.length; i++) {
+            for (ResGridlet rgl : lists[i]) {
+                snapshot.add( getSnapshotEntry(rgl, states[i], time,
+                        completions, pending) );
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the state of one Gridlet for a snapshot.
+     *
+     * @param rgl a ResGridlet object
+     * @param state its state in the snapshot
+     * @param time the time of the snapshot
+     * @param completions the completion of each running Gridlet
+     * @param pending the completions in the order they come
+     * @return the state of the Gridlet
+     * @pre rgl != null
+     * @post $result != null
+     */
+    private SimulationSnapshot.Entry getSnapshotEntry(ResGridlet rgl,
+            int state, double time,
+            IdentityHashMap<ResGridlet, Completion> completions,
+            ArrayList<Completion> pending) {
+        Gridlet gl = rgl.getGridlet();
+        SimulationSnapshot.Entry e = new SimulationSnapshot.Entry();
+        e.state_ = state;
+        e.gridletId_ = gl.getGridletID();
+        e.numPE_ = gl.getNumPE();
+        e.classType_ = gl.getClassType();
+        e.fileSize_ = gl.getGridletFileSize();
+        e.outputSize_ = gl.getGridletOutputSize();
+        e.length_ = gl.getGridletLength();
+        e.finishedSoFar_ = gl.getGridletLength()
+                - rgl.getRemainingGridletLength();
+        e.arrivalTime_ = gl.getSubmissionTime();
+        if (state != SimulationSnapshot.RUNNING) {
+            return e;
+        }
+
+        // the progress of a running Gridlet is only updated when it stops
+        double runTime = time - rgl.getExecStartTime();
+        e.finishedSoFar_ += getMIShare(runTime, getRating(rgl));
+        e.execStartTime_ = gl.getExecStartTime();
+        e.cpuTime_ = runTime;
+        RestoredTimes times = restored_.get(rgl);
+        if (times != null) {
+            e.cpuTime_ += times.cpuTime_;
+        }
+
+        Completion c = completions.get(rgl);
+        e.finishTime_ = c.time_;
+        e.rank_ = pending.indexOf(c);
+        if (rgl.getNumPE() > 1) {
+            e.machineIds_ = rgl.getListMachineID().clone();
+            e.peIds_ = rgl.getListPEID().clone();
+        } else {
+            e.machineIds_ = new int[] { rgl.getMachineID() };
+            e.peIds_ = new int[] { rgl.getPEID() };
+        }
+        return e;
+    }
+
+    /**
+     * Restores the Gridlets of the snapshot to resume from, once its time
+     * has come. Only the first call after that time restores them.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private synchronized void restoreIfDue() {
+        if (resume_ == null || GridSim.clock() < resume_.getTime()) {
+            return;
+        }
+
+        SimulationSnapshot snapshot = resume_;
+        resume_ = null;
+        String error = checkRunning(snapshot);
+        if (error != null) {
+            System.out.println(super.get_name() + ": Error - can not resume "
+                    + "from the snapshot, since " + error + ".");
+            return;
+        }
+
+        for (int id : snapshot.getReceived()) {
+            received_.set(id);
+        }
+        int userId = GridSim.getEntityId( snapshot.getUserName() );
+        if (snapshot.getNumSubmitted() > 0) {
+            ownerId_ = userId;
+        }
+
+        ArrayList<Completion> pending = new ArrayList<Completion>();
+        ArrayList<SimulationSnapshot.Entry> ranks
+                = new ArrayList<SimulationSnapshot.Entry>();
+        for (SimulationSnapshot.Entry e : snapshot.getEntries()) {
+            Gridlet gl = new Gridlet(e.gridletId_, e.length_, e.fileSize_,
+                    e.outputSize_, GridSim.isTraceEnabled());
+            gl.setUserID(userId);
+            gl.setNumPE(e.numPE_);
+            gl.setClassType(e.classType_);
+            gl.setResourceParameter(super.resId_, resource_.getCostPerSec());
+            gl.setGridletFinishedSoFar(e.finishedSoFar_);
+
+            // a ResGridlet arrives now, so its times are set back
+            ResGridlet rgl = new ResGridlet(gl);
+            gl.setSubmissionTime(e.arrivalTime_);
+            RestoredTimes times = new RestoredTimes(e.arrivalTime_);
+            restored_.put(rgl, times);
+
+            if (e.state_ == SimulationSnapshot.RUNNING) {
+                times.execStartTime_ = e.execStartTime_;
+                times.cpuTime_ = e.cpuTime_;
+                restoreRunning(rgl, e);
+                pending.add( new Completion(rgl, e.finishTime_, e.rank_) );
+            } else if (e.state_ == SimulationSnapshot.PAUSED) {
+                rgl.setGridletStatus(Gridlet.PAUSED);
+                addToList(gridletPausedList_, rgl);
+            } else {
+                rgl.setGridletStatus(Gridlet.QUEUED);
+                if (e.state_ == SimulationSnapshot.QUEUED_MEDIUM) {
+                    addToList(gridletMediumQueueList_, rgl);
+                } else {
+                    addToList(gridletLongQueueList_, rgl);
+                }
+                gridletRestored(rgl, e.classType_);
+            }
+        }
+
+        // keeps the order of completions that come at the same time
+        Collections.sort(pending);
+        for (Completion c : pending) {
+            completions_.add( new Completion(c.rgl_, c.time_,
+                    completionSeq_++) );
+        }
+        scheduleWakeup();
+    }
+
+    /**
+     * Gets the IDs of the Gridlets received so far.
+     *
+     * @return the IDs in increasing order
+     * @pre $none
+     * @post $result != null
+     */
+    private int[] getReceived() {
+        int[] ids = new int[ received_.cardinality() ];
+        int n = 0;
+        for (int id = received_.nextSetBit(0); id >= 0;
+                id = received_.nextSetBit(id + 1)) {
+            ids[n++] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Checks that the running Gridlets of a snapshot can get their PEs
+     * back, i.e. that the PEs exist and are free.
+     *
+     * @param snapshot the snapshot to resume from
+     * @return what is wrong or <tt>null</tt> if they can
+     * @pre snapshot != null
+     * @post $none
+     */
+    private String checkRunning(SimulationSnapshot snapshot) {
+        int[] used = new int[machines_.length];
+        for (SimulationSnapshot.Entry e : snapshot.getEntries()) {
+            if (e.state_ != SimulationSnapshot.RUNNING) {
+                continue;
+            }
+
+            for (int i = 0; i < e.machineIds_.length; i++) {
+                int id = e.machineIds_[i];
+                if (id < 0 || id >= machineIndex_.length
+                        || machines_[machineIndex_[id]].getMachineID() != id) {
+                    return "machine #" + id + " of Gridlet #" + e.gridletId_
+                            + " does not exist";
+                }
+
+                int index = machineIndex_[id];
+                used[index]++;
+                if (used[index] > freePEs_[index]
+                        || isFreePE(machines_[index], e.peIds_[i]) == false) {
+                    return "PE #" + e.peIds_[i] + " of machine #" + id
+                            + " of Gridlet #" + e.gridletId_ + " is not free";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a PE of a machine is free.
+     *
+     * @param m a machine
+     * @param peId a PE ID
+     * @return <tt>true</tt> if the machine has this PE and it is free
+     * @pre m != null
+     * @post $none
+     */
+    private static boolean isFreePE(Machine m, int peId) {
+        for (PE pe : m.getPEList()) {
+            if (pe.getID() == peId) {
+                return pe.getStatus() == PE.FREE;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restores a running Gridlet on the PEs it had, and with the finish
+     * time it had. Its PEs have been checked by
+     * {@link #checkRunning(SimulationSnapshot)}.
+     *
+     * @param rgl a ResGridlet object
+     * @param e its state in the snapshot
+     * @pre rgl != null
+     * @pre e != null
+     * @post $none
+     */
+    private void restoreRunning(ResGridlet rgl, SimulationSnapshot.Entry e) {
+        addToList(gridletInExecList_, rgl);
+        int rating = Integer.MAX_VALUE;
+        for (int i = 0; i < e.machineIds_.length; i++) {
+            int index = machineIndex_[e.machineIds_[i]];
+            machines_[index].setStatusPE(PE.BUSY, e.peIds_[i]);
+            rgl.setMachineAndPEID(e.machineIds_[i], e.peIds_[i]);
+            setFreePEs(index, freePEs_[index] - 1);
+            rating = Math.min(rating, machinePool_[index].getRating());
+        }
+        if (minRating_ != maxRating_) {
+            ratings_.put(rgl, rating);
+        }
+
+        rgl.setGridletStatus(Gridlet.INEXEC);
+        rgl.getGridlet().setExecStartTime(e.execStartTime_);
+        rgl.setFinishTime(e.finishTime_ - GridSim.clock());
+        gridletStarted(rgl);
+    }
+
     /**
      * Handles an operation of canceling a Gridlet in either execution list or
      * paused list.
@@ -801,13 +2300,14 @@ class CenapadAllocPolicy extends AllocPolicy {
         ResGridlet rgl = null;
 
         // Find in EXEC List first
-        int found = gridletInExecList_.indexOf(gridletId, userId);
-        if (found >= 0) {
+        rgl = gridletInExecList_.get(gridletId, userId);
+        if (rgl != null) {
             // update the gridlets in execution list up to this point in time
             updateGridletProcessing();
+            updateGridletProgress(rgl);
 
             // Get the Gridlet from the execution list
-            rgl = (ResGridlet) gridletInExecList_.remove(found);
+            gridletInExecList_.remove(rgl);
 
             // if a Gridlet is finished upon cancelling, then set it to success
             // instead.
@@ -817,29 +2317,124 @@ class CenapadAllocPolicy extends AllocPolicy {
                 rgl.setGridletStatus(Gridlet.CANCELED);
             }
 
-            // Set PE on which Gridlet finished to FREE
-            super.resource_.setStatusPE(PE.FREE, rgl.getMachineID(),
-                    rgl.getPEID());
+            // Set PEs on which Gridlet was running to FREE
+            freePEs(rgl);
             allocateQueueGridlet();
             return rgl;
         }
 
-        // Find in QUEUE list
-//        found = gridletQueueList_.indexOf(gridletId, userId);
-//        if (found >= 0) {
-//            rgl = (ResGridlet) gridletQueueList_.remove(found);
-//            rgl.setGridletStatus(Gridlet.CANCELED);
-//        } // if not, then find in the Paused list
-//        else {
-//            found = gridletPausedList_.indexOf(gridletId, userId);
-//
-//            // if found in Paused list
-//            if (found >= 0) {
-//                rgl = (ResGridlet) gridletPausedList_.remove(found);
-//                rgl.setGridletStatus(Gridlet.CANCELED);
-//            }
-//
-//        }
+        // Find in QUEUE lists
+        rgl = removeQueuedGridlet(gridletId, userId);
+        if (rgl == null) {
+            // if not, then find in the Paused list
+            rgl = gridletPausedList_.remove(gridletId, userId);
+        }
+
+        if (rgl != null) {
+            rgl.setGridletStatus(Gridlet.CANCELED);
+        }
         return rgl;
     }
+
+    /**
+     * Finds a Gridlet in either the long or the medium queue list.
+     *
+     * @param gridletId a Gridlet ID
+     * @param userId the user or owner's ID of this Gridlet
+     * @return an ResGridlet object <tt>null</tt> if this Gridlet is not found
+     * @pre gridletId > 0
+     * @pre userId > 0
+     * @post $none
+     */
+    private ResGridlet findQueuedGridlet(int gridletId, int userId) {
+        ResGridlet rgl = gridletLongQueueList_.get(gridletId, userId);
+        if (rgl == null) {
+            rgl = gridletMediumQueueList_.get(gridletId, userId);
+        }
+        return rgl;
+    }
+
+    /**
+     * Removes a Gridlet from either the long or the medium queue list.
+     *
+     * @param gridletId a Gridlet ID
+     * @param userId the user or owner's ID of this Gridlet
+     * @return the removed ResGridlet object <tt>null</tt> if this Gridlet is
+     * not found
+     * @pre gridletId > 0
+     * @pre userId > 0
+     * @post $none
+     */
+    private ResGridlet removeQueuedGridlet(int gridletId, int userId) {
+        ResGridlet rgl = gridletLongQueueList_.remove(gridletId, userId);
+        if (rgl == null) {
+            rgl = gridletMediumQueueList_.remove(gridletId, userId);
+        }
+
+        if (rgl != null) {
+            gridletDequeued(rgl);
+        }
+        return rgl;
+    }
+
+    /**
+     * The times of a Gridlet restored from a snapshot before it arrived
+     * again, which are given back to the Gridlet when it finishes.
+     */
+    private static final class RestoredTimes {
+
+        private final double arrivalTime_;
+        private double execStartTime_;  // NaN if it was not running
+        private double cpuTime_;        // run time before the snapshot
+
+        RestoredTimes(double arrivalTime) {
+            arrivalTime_ = arrivalTime;
+            execStartTime_ = Double.NaN;
+            cpuTime_ = 0.0;
+        }
+
+        /**
+         * Sets the start, wall clock and CPU times of a finished Gridlet as
+         * if it had never left this resource.
+         *
+         * @param gl the Gridlet
+         * @pre gl != null
+         * @post $none
+         */
+        void apply(Gridlet gl) {
+            double cpuTime = gl.getActualCPUTime();
+            if (Double.isNaN(execStartTime_) == false) {
+                gl.setExecStartTime(execStartTime_);
+                cpuTime += cpuTime_;
+            }
+            gl.setExecParam(GridSim.clock() - arrivalTime_, cpuTime);
+        }
+    }
+
+    /**
+     * The finish time of a Gridlet in execution, ordered by time and then by
+     * allocation order.
+     */
+    private static final class Completion implements Comparable<Completion> {
+
+        private final ResGridlet rgl_;
+        private final double time_;     // finish time
+        private final double start_;    // exec start time of this run
+        private final long seq_;
+
+        Completion(ResGridlet rgl, double time, long seq) {
+            rgl_ = rgl;
+            time_ = time;
+            start_ = rgl.getExecStartTime();
+            seq_ = seq;
+        }
+
+        @Override
+        public int compareTo(Completion other) {
+            if (time_ != other.time_) {
+                return time_ < other.time_ ? -1 : 1;
+            }
+            return seq_ < other.seq_ ? -1 : (seq_ == other.seq_ ? 0 : 1);
+        }
+    }
 }
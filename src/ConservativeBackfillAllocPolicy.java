@@ -0,0 +1,333 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.GridSim;
+import gridsim.ResGridlet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * ConservativeBackfillAllocPolicy is a CenapadAllocPolicy that does
+ * conservative backfilling. Every Gridlet gets a reservation when it is
+ * submitted: the earliest time at which enough machines of its partition are
+ * free for its whole run time, given the running Gridlets and the
+ * reservations of the Gridlets submitted before it. It runs at that time,
+ * or earlier if machines are released earlier and it does not delay any
+ * other reservation.
+ * <p>
+ * The free machines over time are kept in an {@link AvailabilityProfile}
+ * that is updated incrementally when a Gridlet is reserved, starts or stops.
+ * The run time of a Gridlet is taken from its length, as the traces have no
+ * separate requested time.
+ * <p>
+ * The profile only counts machines, so Gridlets of the long partition take
+ * the machines outside the medium partition first, leaving the medium
+ * machines to the medium partition. If a reservation can't be kept, e.g.
+ * because a long Gridlet still holds medium machines, then the Gridlet gets
+ * a new reservation.
+ *
+ * @see CenapadAllocPolicy
+ * @see EasyBackfillAllocPolicy
+ * @invariant $none
+ */
+class ConservativeBackfillAllocPolicy extends CenapadAllocPolicy {
+
+    private AvailabilityProfile profile_;     // created on first use
+    // of the queued and the running Gridlets
+    private Map<ResGridlet, AvailabilityProfile.Reservation> reservations_;
+    private Map<ResGridlet, AvailabilityProfile.Reservation> running_;
+    private int numBackfilled_;
+
+    /**
+     * Allocates a new ConservativeBackfillAllocPolicy object
+     *
+     * @param resourceName the GridResource entity name that will contain this
+     * allocation policy
+     * @param entityName this object entity name
+     * @throws Exception This happens when creating this entity before
+     * initializing GridSim package or this entity name is <tt>null</tt> or
+     * empty
+     * @see CenapadAllocPolicy#CenapadAllocPolicy(String, String)
+     * @pre resourceName != null
+     * @pre entityName != null
+     * @post $none
+     */
+    ConservativeBackfillAllocPolicy(String resourceName, String entityName)
+            throws Exception {
+        super(resourceName, entityName);
+        super.setOtherMachinesFirst(true);
+
+        this.profile_ = null;
+        this.reservations_
+                = new IdentityHashMap<ResGridlet, AvailabilityProfile.Reservation>();
+        this.running_
+                = new IdentityHashMap<ResGridlet, AvailabilityProfile.Reservation>();
+        this.numBackfilled_ = 0;
+    }
+
+    /**
+     * Gets the number of Gridlets that ran before their reservation.
+     *
+     * @return the number of backfilled Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumBackfilled() {
+        return numBackfilled_;
+    }
+
+    /**
+     * Sets how PEs are given to Gridlets. Only whole machines in MachineList
+     * order are supported, since the availability profile counts the
+     * machines of each Gridlet and plans which partition they come from.
+     *
+     * @param allocation <tt>AllocWholeMachines</tt>
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre $none
+     * @post $none
+     */
+    @Override
+    boolean setAllocation(int allocation) {
+        if (allocation != AllocWholeMachines) {
+            return false;
+        }
+
+        return super.setAllocation(allocation);
+    }
+
+    /**
+     * Reserves machines for a newly submitted Gridlet, and runs it straight
+     * away if its reservation starts now.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @return <tt>true</tt> if the Gridlet is running, <tt>false</tt> if it
+     * has to be queued
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected boolean allocateSubmittedGridlet(ResGridlet rgl, int partition) {
+        AvailabilityProfile.Reservation r = reserve(rgl, partition);
+        if (r.start_ <= GridSim.clock()) {
+            return allocatePEtoGridlet(rgl, partition);
+        }
+        return false;
+    }
+
+    /**
+     * Runs the waiting Gridlets whose reservation has come, and the ones that
+     * can run earlier without delaying any other reservation. The queues are
+     * checked in arrival order, and the scan stops as soon as no machine is
+     * idle.
+     *
+     * @pre $none
+     * @post $none
+     */
+    @Override
+    protected void allocateQueueGridlet() {
+        Iterator<ResGridlet> longIter = gridletLongQueueList_.iterator();
+        Iterator<ResGridlet> mediumIter = gridletMediumQueueList_.iterator();
+        ResGridlet longRgl = nextGridlet(longIter);
+        ResGridlet mediumRgl = nextGridlet(mediumIter);
+        while (numIdleMachines_ > 0) {
+            if (numIdleMediumMachines_ == 0) {
+                mediumRgl = null;
+            }
+
+            if (longRgl == null && mediumRgl == null) {
+                break;
+            }
+
+            if (mediumRgl == null || (longRgl != null
+                    && longRgl.getGridlet().getSubmissionTime()
+                    <= mediumRgl.getGridlet().getSubmissionTime())) {
+                if (allocateReserved(longRgl, PartitionLong) == true) {
+                    longIter.remove();
+                }
+                longRgl = nextGridlet(longIter);
+            } else {
+                if (allocateReserved(mediumRgl, PartitionMedium) == true) {
+                    mediumIter.remove();
+                }
+                mediumRgl = nextGridlet(mediumIter);
+            }
+        }
+    }
+
+    /**
+     * Replaces the reservation of a Gridlet that starts running by the
+     * machines it really uses.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletStarted(ResGridlet rgl) {
+        release(reservations_.remove(rgl));
+
+        int other = 0;
+        int medium = 0;
+        for (int id : getMachineIds(rgl)) {
+            if (isMediumMachine(id) == true) {
+                medium++;
+            } else {
+                other++;
+            }
+        }
+
+        AvailabilityProfile.Reservation r = new AvailabilityProfile.Reservation(
+                GridSim.clock(), getStartedFinishTime(rgl), other, medium);
+        getProfile().reserve(r);
+        running_.put(rgl, r);
+    }
+
+    /**
+     * Gives back the rest of the run time of a Gridlet that stops running.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletStopped(ResGridlet rgl) {
+        release(running_.remove(rgl));
+    }
+
+    /**
+     * Cancels the reservation of a Gridlet that is taken out of a queue.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletDequeued(ResGridlet rgl) {
+        release(reservations_.remove(rgl));
+    }
+
+    /**
+     * Reserves machines for a Gridlet restored into a queue from a snapshot.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletRestored(ResGridlet rgl, int partition) {
+        reserve(rgl, partition);
+    }
+
+    /**
+     * Runs a waiting Gridlet if its reservation has come or if it can start
+     * now without delaying any other reservation. A Gridlet that can't
+     * run at its reservation gets a new one.
+     *
+     * @param rgl a ResGridlet object that is waiting
+     * @param partition the partition (class type) of this Gridlet
+     * @return <tt>true</tt> if the Gridlet is running, <tt>false</tt>
+     * otherwise
+     * @pre rgl != null
+     * @post $none
+     */
+    private boolean allocateReserved(ResGridlet rgl, int partition) {
+        int idle = numIdleMachines_;
+        if (partition == PartitionMedium) {
+            idle = numIdleMediumMachines_;
+        }
+
+        double now = GridSim.clock();
+        AvailabilityProfile.Reservation old = reservations_.get(rgl);
+        boolean due = (old == null || old.start_ <= now);
+        if (getRequiredMachines(rgl) > idle && due == false) {
+            return false;
+        }
+
+        // looks for a better reservation, which may be now
+        release(reservations_.remove(rgl));
+        AvailabilityProfile.Reservation r = reserve(rgl, partition);
+        if (r.start_ > now) {
+            return false;
+        }
+
+        if (allocatePEtoGridlet(rgl, partition) == false) {
+            return false;
+        }
+
+        if (old != null && old.start_ > now) {
+            numBackfilled_++;
+        }
+        return true;
+    }
+
+    /**
+     * Gives a Gridlet the earliest reservation in the profile.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @return the reservation
+     * @pre rgl != null
+     * @post $result != null
+     */
+    private AvailabilityProfile.Reservation reserve(ResGridlet rgl,
+            int partition) {
+        AvailabilityProfile.Reservation r = getProfile().reserve(GridSim.clock(),
+                getEstimatedRunTime(rgl), getRequiredMachines(rgl),
+                partition == PartitionMedium);
+        reservations_.put(rgl, r);
+        return r;
+    }
+
+    /**
+     * Gives the machines of a reservation back to the profile, from its start
+     * time or from now if it has already started.
+     *
+     * @param r a reservation or <tt>null</tt>
+     * @pre $none
+     * @post $none
+     */
+    private void release(AvailabilityProfile.Reservation r) {
+        getProfile().release(r, GridSim.clock());
+    }
+
+    /**
+     * Gets the profile and drops its past breakpoints. It is created on first
+     * use since the machines are only known once the simulation runs.
+     *
+     * @return the profile
+     * @pre $none
+     * @post $result != null
+     */
+    private AvailabilityProfile getProfile() {
+        if (profile_ == null) {
+            int numMedium = getNumMediumMachines();
+            profile_ = new AvailabilityProfile(getNumMachines() - numMedium,
+                    numMedium);
+        }
+
+        profile_.removeBefore( GridSim.clock() );
+        return profile_;
+    }
+
+    /**
+     * Gets the next Gridlet of an iterator.
+     *
+     * @param iter an iterator over a queue list
+     * @return the next Gridlet or <tt>null</tt> if there is none
+     * @pre iter != null
+     * @post $none
+     */
+    private static ResGridlet nextGridlet(Iterator<ResGridlet> iter) {
+        if (iter.hasNext() == true) {
+            return iter.next();
+        }
+        return null;
+    }
+}
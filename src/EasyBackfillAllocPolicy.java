@@ -0,0 +1,410 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.GridSim;
+import gridsim.ResGridlet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * EasyBackfillAllocPolicy is a CenapadAllocPolicy that does EASY
+ * (aggressive) backfilling. As in CenapadAllocPolicy, the Gridlets at the
+ * head of the long and medium queues run as soon as there are enough idle
+ * machines. When a head can't run, it gets a reservation: the earliest time
+ * (shadow time) at which enough machines of its partition are released by
+ * the running Gridlets, and the number of machines left over at that time
+ * (extra machines). A Gridlet waiting behind the heads may then run straight
+ * away if it fits in the idle machines and does not delay any head, i.e. it
+ * finishes before the shadow time or only uses extra machines.
+ * <p>
+ * The run time of a Gridlet is taken from its length, as the traces have
+ * no separate requested time. The machines released by running Gridlets
+ * are kept in a profile sorted by finish time, so a reservation is found by
+ * walking the profile once and each waiting Gridlet is checked in constant
+ * time. Waiting Gridlets are checked in arrival order, and the scan of a
+ * queue stops as soon as the smallest Gridlet in it needs more machines
+ * than are idle, which the queue keeps track of. Hence, a queue is not
+ * scanned at all while idle machines are left that none of its Gridlets
+ * can use.
+ * <p>
+ * Both heads get a reservation, which are computed independently of each
+ * other. A Gridlet of the long partition takes the idle machines outside
+ * the medium partition first, so a backfilled long Gridlet only takes the
+ * medium machines the medium head does not need when there is no other
+ * machine left.
+ *
+ * @see CenapadAllocPolicy
+ * @invariant $none
+ */
+class EasyBackfillAllocPolicy extends CenapadAllocPolicy {
+
+    // finish time -> {released machines, released medium machines}
+    private TreeMap<Double, int[]> releases_;
+    private Map<ResGridlet, Double> finishTimes_;   // of running Gridlets
+    private double[] shadowTime_;     // reservation of each partition head
+    private int[] extraMachines_;     // machines left over at shadow time
+    private int numBackfilled_;
+
+    /**
+     * Allocates a new EasyBackfillAllocPolicy object
+     *
+     * @param resourceName the GridResource entity name that will contain this
+     * allocation policy
+     * @param entityName this object entity name
+     * @throws Exception This happens when creating this entity before
+     * initializing GridSim package or this entity name is <tt>null</tt> or
+     * empty
+     * @see CenapadAllocPolicy#CenapadAllocPolicy(String, String)
+     * @pre resourceName != null
+     * @pre entityName != null
+     * @post $none
+     */
+    EasyBackfillAllocPolicy(String resourceName, String entityName)
+            throws Exception {
+        super(resourceName, entityName);
+
+        this.releases_ = new TreeMap<Double, int[]>();
+        this.finishTimes_ = new IdentityHashMap<ResGridlet, Double>();
+        this.shadowTime_ = new double[2];
+        this.extraMachines_ = new int[2];
+        this.numBackfilled_ = 0;
+        super.setOtherMachinesFirst(true);
+    }
+
+    /**
+     * Gets the number of Gridlets that have been backfilled, i.e. that ran
+     * before some Gridlets submitted earlier.
+     *
+     * @return the number of backfilled Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumBackfilled() {
+        return numBackfilled_;
+    }
+
+    /**
+     * Sets how PEs are given to Gridlets. Only whole machines in MachineList
+     * order are supported, since a backfilled Gridlet is assumed to take
+     * the machines outside the medium partition first.
+     *
+     * @param allocation <tt>AllocWholeMachines</tt>
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre $none
+     * @post $none
+     */
+    @Override
+    boolean setAllocation(int allocation) {
+        if (allocation != AllocWholeMachines) {
+            return false;
+        }
+
+        return super.setAllocation(allocation);
+    }
+
+    /**
+     * Allocates a newly submitted Gridlet. It runs straight away if it is the
+     * head of its queue and there are enough idle machines, or if it can be
+     * backfilled.
+     *
+     * @param rgl a ResGridlet object
+     * @param partition the partition (class type) of this Gridlet
+     * @return <tt>true</tt> if the Gridlet is running, <tt>false</tt> if it
+     * has to be queued
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected boolean allocateSubmittedGridlet(ResGridlet rgl, int partition) {
+        if (getQueue(partition).isEmpty() == true) {
+            return allocatePEtoGridlet(rgl, partition);
+        }
+
+        computeReservations();
+        return backfill(rgl, partition);
+    }
+
+    /**
+     * Allocates the Gridlets at the head of the queues, and then backfills
+     * the waiting Gridlets behind them.
+     *
+     * @pre $none
+     * @post $none
+     */
+    @Override
+    protected void allocateQueueGridlet() {
+        super.allocateQueueGridlet();
+
+        if (numIdleMachines_ == 0 || (gridletLongQueueList_.size() <= 1
+                && gridletMediumQueueList_.size() <= 1)) {
+            return;
+        }
+        if (fits(gridletLongQueueList_, numIdleMachines_) == false
+                && fits(gridletMediumQueueList_, numIdleMediumMachines_) == false) {
+            return;
+        }
+
+        computeReservations();
+
+        // skips both heads, since they can't run now
+        Iterator<ResGridlet> longIter = gridletLongQueueList_.iterator();
+        Iterator<ResGridlet> mediumIter = gridletMediumQueueList_.iterator();
+        nextGridlet(longIter);
+        nextGridlet(mediumIter);
+
+        // checks the waiting Gridlets of both queues in arrival order
+        ResGridlet longRgl = nextGridlet(longIter);
+        ResGridlet mediumRgl = nextGridlet(mediumIter);
+        while (numIdleMachines_ > 0) {
+            // no Gridlet left in a queue can fit the idle machines
+            if (fits(gridletLongQueueList_, numIdleMachines_) == false) {
+                longRgl = null;
+            }
+            if (fits(gridletMediumQueueList_, numIdleMediumMachines_) == false) {
+                mediumRgl = null;
+            }
+
+            if (longRgl == null && mediumRgl == null) {
+                break;
+            }
+
+            if (mediumRgl == null || (longRgl != null
+                    && longRgl.getGridlet().getSubmissionTime()
+                    <= mediumRgl.getGridlet().getSubmissionTime())) {
+                if (backfill(longRgl, PartitionLong) == true) {
+                    longIter.remove();
+                }
+                longRgl = nextGridlet(longIter);
+            } else {
+                if (backfill(mediumRgl, PartitionMedium) == true) {
+                    mediumIter.remove();
+                }
+                mediumRgl = nextGridlet(mediumIter);
+            }
+        }
+    }
+
+    /**
+     * Adds the machines of a Gridlet that starts running to the profile.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletStarted(ResGridlet rgl) {
+        Double time = getStartedFinishTime(rgl);
+        finishTimes_.put(rgl, time);
+        updateReleases(time, rgl, 1);
+    }
+
+    /**
+     * Removes the machines of a Gridlet that stops running from the profile.
+     *
+     * @param rgl a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    @Override
+    protected void gridletStopped(ResGridlet rgl) {
+        Double time = finishTimes_.remove(rgl);
+        if (time != null) {
+            updateReleases(time, rgl, -1);
+        }
+    }
+
+    /**
+     * Backfills a waiting Gridlet if it fits in the idle machines and does
+     * not delay the reservation of any queue head.
+     *
+     * @param rgl a ResGridlet object that is waiting
+     * @param partition the partition (class type) of this Gridlet
+     * @return <tt>true</tt> if the Gridlet is running, <tt>false</tt>
+     * otherwise
+     * @pre rgl != null
+     * @post $none
+     */
+    private boolean backfill(ResGridlet rgl, int partition) {
+        int required = getRequiredMachines(rgl);
+        int idle = numIdleMachines_;
+        int takenMedium;
+        if (partition == PartitionMedium) {
+            idle = numIdleMediumMachines_;
+            takenMedium = required;
+        } else {
+            // the machines outside the medium partition are taken first
+            int idleOther = numIdleMachines_ - numIdleMediumMachines_;
+            takenMedium = Math.max(required - idleOther, 0);
+        }
+
+        if (required > idle) {
+            return false;
+        }
+
+        double finishTime = GridSim.clock() + getEstimatedRunTime(rgl);
+        boolean delaysLong = finishTime > shadowTime_[PartitionLong];
+        boolean delaysMedium = finishTime > shadowTime_[PartitionMedium];
+        if ((delaysLong == true && required > extraMachines_[PartitionLong])
+                || (delaysMedium == true
+                && takenMedium > extraMachines_[PartitionMedium])) {
+            return false;
+        }
+
+        if (allocatePEtoGridlet(rgl, partition) == false) {
+            return false;
+        }
+
+        // the extra machines it takes are no longer extra
+        if (delaysLong == true) {
+            extraMachines_[PartitionLong] -= required;
+        }
+        if (delaysMedium == true) {
+            extraMachines_[PartitionMedium] -= takenMedium;
+        }
+
+        numBackfilled_++;
+        return true;
+    }
+
+    /**
+     * Computes the reservation of the head of both queues.
+     *
+     * @pre $none
+     * @post $none
+     */
+    private void computeReservations() {
+        computeReservation(PartitionLong, gridletLongQueueList_.getFirst(),
+                numIdleMachines_);
+        computeReservation(PartitionMedium, gridletMediumQueueList_.getFirst(),
+                numIdleMediumMachines_);
+    }
+
+    /**
+     * Computes the reservation of a queue head by walking the profile until
+     * enough machines of its partition are released. If there is no head, or
+     * if the head can never run, then nothing is reserved.
+     *
+     * @param partition the partition of this queue
+     * @param head the Gridlet at the head of this queue or <tt>null</tt>
+     * @param idle the number of idle machines of this partition
+     * @pre partition == PartitionLong || partition == PartitionMedium
+     * @post $none
+     */
+    private void computeReservation(int partition, ResGridlet head, int idle) {
+        shadowTime_[partition] = Double.POSITIVE_INFINITY;
+        extraMachines_[partition] = 0;
+        if (head == null) {
+            return;
+        }
+
+        int required = getRequiredMachines(head);
+        int free = idle;
+        if (free >= required) {
+            shadowTime_[partition] = GridSim.clock();
+            extraMachines_[partition] = free - required;
+            return;
+        }
+
+        int column = (partition == PartitionMedium) ? 1 : 0;
+        for (Map.Entry<Double, int[]> entry : releases_.entrySet()) {
+            free += entry.getValue()[column];
+            if (free >= required) {
+                shadowTime_[partition] = entry.getKey();
+                extraMachines_[partition] = free - required;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds or removes the machines of a Gridlet at a given release time.
+     *
+     * @param time the finish time of this Gridlet
+     * @param rgl a ResGridlet object that has been allocated
+     * @param sign <tt>1</tt> to add or <tt>-1</tt> to remove the machines
+     * @pre rgl != null
+     * @post $none
+     */
+    private void updateReleases(Double time, ResGridlet rgl, int sign) {
+        int[] count = releases_.get(time);
+        if (count == null) {
+            count = new int[2];
+            releases_.put(time, count);
+        }
+
+        for (int id : getMachineIds(rgl)) {
+            addMachine(count, id, sign);
+        }
+
+        if (count[0] == 0) {
+            releases_.remove(time);
+        }
+    }
+
+    /**
+     * Counts one machine in a release time of the profile.
+     *
+     * @param count the released machines at that time
+     * @param machineId a machine ID
+     * @param sign <tt>1</tt> to add or <tt>-1</tt> to remove the machine
+     * @pre count != null
+     * @post $none
+     */
+    private void addMachine(int[] count, int machineId, int sign) {
+        count[0] += sign;
+        if (isMediumMachine(machineId) == true) {
+            count[1] += sign;
+        }
+    }
+
+    /**
+     * Checks whether the smallest Gridlet of a queue fits in a number of
+     * idle machines.
+     *
+     * @param queue a queue list
+     * @param idle the number of idle machines the queue can use
+     * @return <tt>true</tt> if some Gridlet of the queue may fit
+     * @pre queue != null
+     * @post $none
+     */
+    private boolean fits(IndexedGridletList queue, int idle) {
+        return queue.isEmpty() == false
+                && getRequiredMachines(queue.getMinNumPE()) <= idle;
+    }
+
+    /**
+     * Gets the queue of a partition.
+     *
+     * @param partition the partition (class type) of a Gridlet
+     * @return the queue list
+     * @pre $none
+     * @post $result != null
+     */
+    private IndexedGridletList getQueue(int partition) {
+        if (partition == PartitionMedium) {
+            return gridletMediumQueueList_;
+        }
+        return gridletLongQueueList_;
+    }
+
+    /**
+     * Gets the next Gridlet of an iterator.
+     *
+     * @param iter an iterator over a queue list
+     * @return the next Gridlet or <tt>null</tt> if there is none
+     * @pre iter != null
+     * @post $none
+     */
+    private static ResGridlet nextGridlet(Iterator<ResGridlet> iter) {
+        if (iter.hasNext() == true) {
+            return iter.next();
+        }
+        return null;
+    }
+}
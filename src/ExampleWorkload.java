@@ -18,12 +18,91 @@ import gridsim.util.*;
 
 public class ExampleWorkload {
 
+    /** The names of the arguments that can be given as name=value */
+    private static final String[] ARG_NAMES = { "lookahead", "completion",
+        "policy", "fields", "parsethreads", "partitions", "minruntime",
+        "machines", "pes", "nodes", "medium", "sharing", "contiguous",
+        "checkpoint", "resume", "batchsubmit", "simtrace", "restrace",
+        "traceinterval", "results", "resultscsv", "print", "stats", "retain" };
+
+    /**
+     * Runs one simulation. Usage:
+     * <pre>
+     * ExampleWorkload trace [lookahead [completion [policy]]] [name=value]...
+     * </pre>
+     * The optional arguments can also be given as <tt>name=value</tt>, in
+     * any order, together with:
+     * <ul>
+     * <li> fields: number of fields of the trace, <tt>5</tt> or <tt>4</tt>
+     *      for a trace without class type, whose jobs all go to the long
+     *      partition (5)
+     * <li> parsethreads: number of threads that parse a gz or zip trace;
+     *      the entries of a zip trace are then merged by submit time (1)
+     * <li> partitions: the class type of each partition of a Slurm
+     *      accounting log, i.e. the output of <tt>sacct -P</tt>, as
+     *      <tt>name</tt>:<tt>type</tt>,..., e.g. <tt>medium:0,long:1</tt>;
+     *      see {@link SlurmTraceSource} (none)
+     * <li> minruntime: min. run time in seconds of the jobs of a Slurm
+     *      accounting log (360)
+     * <li> machines: total number of machines (48)
+     * <li> pes: number of PEs of each machine (12)
+     * <li> nodes: the machines as groups in MachineList order, each given as
+     *      <tt>count</tt>x<tt>pes</tt> or <tt>count</tt>x<tt>pes</tt>@<tt>rating</tt>,
+     *      e.g. <tt>38x12,8x24@200,2x48</tt>, instead of <tt>machines</tt> and
+     *      <tt>pes</tt>. The run times of the trace are for a rating of 100
+     *      MIPS, so a Gridlet runs twice as fast on 200 MIPS PEs
+     *      (<tt>machines</tt>x<tt>pes</tt>@100)
+     * <li> medium: number of machines of the medium partition (38)
+     * <li> sharing: <tt>firstfit</tt> or <tt>bestfit</tt> to let Gridlets
+     *      share machines, only with the fcfs policy, or <tt>none</tt> to
+     *      give them whole machines (none)
+     * <li> contiguous: <tt>true</tt> to give Gridlets whole machines with
+     *      consecutive IDs when possible, only with the fcfs policy; the
+     *      number of Gridlets that got them and the mean fragmentation of
+     *      the idle machines are printed at the end (false)
+     * <li> checkpoint: <tt>time</tt>:<tt>file</tt> to write a snapshot of
+     *      the simulation at that time into that file, see
+     *      {@link SimulationSnapshot}; needs <tt>completion=event</tt> (none)
+     * <li> resume: a snapshot file to resume from instead of starting from
+     *      the beginning of the trace, with the same trace and resource;
+     *      only the Gridlets that finish after the snapshot are printed,
+     *      needs <tt>completion=event</tt> (none)
+     * <li> batchsubmit: <tt>true</tt> to send the jobs with the same submit
+     *      time to the resource in one event; they then arrive at the same
+     *      time instead of one network transfer apart (false)
+     * <li> simtrace: <tt>false</tt> to not trace GridSim events (true)
+     * <li> restrace: file where the resource state is sampled, or
+     *      <tt>none</tt> (res_trace.csv)
+     * <li> traceinterval: min. seconds between two samples (3600)
+     * <li> results: binary file where the results of the Gridlets are
+     *      written, see {@link GridletResults} (none)
+     * <li> resultscsv: the same results as a CSV file (none)
+     * <li> print: <tt>false</tt> to not print the queue times (true)
+     * <li> stats: <tt>true</tt> to print the mean, percentiles etc. of the
+     *      wait and run times, for each class type and each partition
+     *      (false)
+     * <li> retain: <tt>false</tt> to not keep the finished Gridlets; they
+     *      are printed as they come back instead, best with a lookahead
+     *      (true)
+     * </ul>
+     * The JVM exits with status 1 if the arguments are invalid, e.g. an
+     * unknown name or policy, or the simulation fails.
+     *
+     * @param args the command line arguments
+     */
     public static void main(String[] args) {
         try {
+            String unknown = getUnknownArg(args, ARG_NAMES);
+            if (unknown != null) {
+                System.out.println("Unknown argument: " + unknown);
+                System.exit(1);
+            }
+
             // number of grid user entities + any MyWorkload entities.
             int num_user = 1;
             Calendar calendar = Calendar.getInstance();
-            boolean trace_flag = true;     // mean trace GridSim events
+            boolean trace_flag = Boolean.parseBoolean(
+                    getArg(args, -1, "simtrace", "true"));  // mean trace GridSim events
 
             // Initialize the GridSim package
             System.out.println("Initializing GridSim package");
@@ -32,14 +111,82 @@ public class ExampleWorkload {
             //////////////////////////////////////////////////////
             /////// Creating resources
             int rating = 100;       // rating of each PE in MIPS
-            int totalPE = 12;        // total number of PEs for each Machine
-            int totalMachine = 48;   // total number of Machines
+            int totalPE = Integer.parseInt(getArg(args, -1, "pes", "12"));        // total number of PEs for each Machine
+            int totalMachine = Integer.parseInt(getArg(args, -1, "machines", "48"));   // total number of Machines
+            String nodes = getArg(args, -1, "nodes",
+                    totalMachine + "x" + totalPE + "@" + rating);
             int i = 0;
 
             String resName = "Res_0";
-            CenapadAllocPolicy allocPolicy = new CenapadAllocPolicy(resName, "allocPolicy");
+            // FCFS queues by default, or EASY or conservative backfilling
+            String policy = getArg(args, 3, "policy", "fcfs");
+            CenapadAllocPolicy allocPolicy = createAllocPolicy(policy, resName,
+                    "allocPolicy");
+            if (allocPolicy == null) {
+                System.out.println("Unknown policy: " + policy);
+                System.exit(1);
+            }
+            // only wakes up at Gridlet completions instead of hourly, if asked
+            String completion = getArg(args, 2, "completion", "poll");
+            if (completion.equals("event")) {
+                allocPolicy.setEventDriven(true);
+            } else if (completion.equals("poll") == false) {
+                System.out.println("Unknown completion: " + completion);
+                System.exit(1);
+            }
+            allocPolicy.setMediumPartitionSize(
+                    Integer.parseInt(getArg(args, -1, "medium", "38")));
+            String sharing = getArg(args, -1, "sharing", "none");
+            int allocation = CenapadAllocPolicy.AllocWholeMachines;
+            if (sharing.equals("firstfit")) {
+                allocation = CenapadAllocPolicy.AllocFirstFit;
+            } else if (sharing.equals("bestfit")) {
+                allocation = CenapadAllocPolicy.AllocBestFit;
+            } else if (sharing.equals("none") == false) {
+                System.out.println("Unknown sharing: " + sharing);
+                System.exit(1);
+            } else if (Boolean.parseBoolean(
+                    getArg(args, -1, "contiguous", "false")) == true) {
+                allocation = CenapadAllocPolicy.AllocContiguous;
+            }
+            if (allocPolicy.setAllocation(allocation) == false) {
+                System.out.println("This allocation is not supported by the "
+                        + policy + " policy");
+                System.exit(1);
+            }
+            String resTrace = getArg(args, -1, "restrace", "res_trace.csv");
+            allocPolicy.setTraceFile(resTrace.equals("none") ? null : resTrace);
+            allocPolicy.setTraceInterval(
+                    Double.parseDouble(getArg(args, -1, "traceinterval", "3600")));
+            String resultsFile = getArg(args, -1, "results", null);
+            String resultsCsv = getArg(args, -1, "resultscsv", null);
+            GridletResults results = null;
+            if (resultsFile != null || resultsCsv != null) {
+                results = new GridletResults();
+                allocPolicy.setResults(results);
+            }
+            // writes a snapshot at the given time, or resumes from one
+            String checkpoint = getArg(args, -1, "checkpoint", null);
+            if (checkpoint != null) {
+                int colon = checkpoint.indexOf(':');
+                if (colon < 0 || allocPolicy.setCheckpoint(
+                        Double.parseDouble(checkpoint.substring(0, colon)),
+                        checkpoint.substring(colon + 1)) == false) {
+                    System.out.println("Invalid checkpoint: " + checkpoint);
+                    System.exit(1);
+                }
+            }
+            String resume = getArg(args, -1, "resume", null);
+            SimulationSnapshot snapshot = null;
+            if (resume != null) {
+                snapshot = SimulationSnapshot.read(resume);
+                if (allocPolicy.resume(snapshot) == false) {
+                    System.out.println("Resuming needs completion=event");
+                    System.exit(1);
+                }
+            }
             //TestSpaceShared allocPolicy = new TestSpaceShared(resName, "allocPolicy");
-            createGridResource(resName, rating, totalMachine, totalPE, allocPolicy);
+            createGridResource(resName, createMachineList(nodes), allocPolicy);
 
             //////////////////////////////////////////////////////
             /////// Creating MyWorkload
@@ -49,73 +196,269 @@ public class ExampleWorkload {
                     = new MyWorkload("Load_0", tracefile, resName, rating);
 
             // tells the MyWorkload entity what to look for.
-            // parameters: maxField, jobNum, submitTime, runTime, numPE
-            workload.setField(5, 1, 2, 3, 4, 5);
+            // parameters: maxField, jobNum, submitTime, runTime, numPE,
+            // classType. The 4 field traces have no class type.
+            if (getArg(args, -1, "fields", "5").equals("4")) {
+                workload.setField(4, 1, 2, 3, 4, 0);
+            } else {
+                workload.setField(5, 1, 2, 3, 4, 5);
+            }
             workload.setComment("#");     // set "#" as a comment
 
+            // the class types of the partitions of a Slurm accounting log
+            String partitions = getArg(args, -1, "partitions", null);
+            if (partitions != null) {
+                for (String mapping : partitions.split(",")) {
+                    int colon = mapping.lastIndexOf(':');
+                    if (colon < 0 || workload.setPartition(
+                            mapping.substring(0, colon), Integer.parseInt(
+                            mapping.substring(colon + 1))) == false) {
+                        System.out.println("Invalid partition: " + mapping);
+                        System.exit(1);
+                    }
+                }
+            }
+            workload.setMinRunTime(Integer.parseInt(getArg(args, -1,
+                    "minruntime", "" + SlurmTraceSource.DEFAULT_MIN_RUN_TIME)));
+            workload.setParseThreads(
+                    Integer.parseInt(getArg(args, -1, "parsethreads", "1")));
+            boolean batchSubmit = Boolean.parseBoolean(
+                    getArg(args, -1, "batchsubmit", "false"));
+            workload.setBatchSubmit(batchSubmit);
+            if (snapshot != null && workload.resume(snapshot) == false) {
+                System.out.println("The snapshot is not from this workload");
+                System.exit(1);
+            }
+
+            // only keeps a window of jobs ahead of the clock, if given
+            workload.setLookahead(
+                    Integer.parseInt(getArg(args, 1, "lookahead", "0")));
+
+            // computes the wait and run time statistics on the fly, if asked
+            GridletStatistics stats = null;
+            if (Boolean.parseBoolean(getArg(args, -1, "stats", "false")) == true) {
+                stats = new GridletStatistics();
+                workload.addConsumer(stats);
+            }
+
+            // prints each Gridlet as it comes back and then drops it, if asked
+            boolean print = Boolean.parseBoolean(getArg(args, -1, "print", "true"));
+            boolean retain = Boolean.parseBoolean(getArg(args, -1, "retain", "true"));
+            GridletPrinter printer = null;
+            if (retain == false) {
+                workload.setRetainGridlets(false);
+                if (print == true) {
+                    printer = new GridletPrinter();
+                    workload.addConsumer(printer);
+                }
+            }
+
             //////////////////////////////////////////////////////
             /////// Starts the simulation
             GridSim.startGridSimulation();
 
             //////////////////////////////////////////////////////
-            /////// Print queue times
-            GridletList glList = new GridletList();
-            for (Gridlet gl : workload.getGridletList()) {
-                glList.add(gl);
+            /////// Write the results and print queue times
+            if (resultsFile != null) {
+                results.write(resultsFile);
+            }
+            if (resultsCsv != null) {
+                results.writeCsv(resultsCsv);
+            }
+
+            if (printer != null) {
+                printer.flush();
+            } else if (print == true) {
+                GridletList glList = new GridletList();
+                for (Gridlet gl : workload.getGridletList()) {
+                    glList.add(gl);
+                }
+                printGridletList(glList);
+            }
+            if (stats != null) {
+                stats.print(System.out);
+            }
+            if (allocation == CenapadAllocPolicy.AllocContiguous) {
+                System.out.println("Contiguous allocations: "
+                        + allocPolicy.getNumContiguous() + ", scattered: "
+                        + allocPolicy.getNumScattered()
+                        + ", mean fragmentation: "
+                        + allocPolicy.getMeanFragmentation());
+            }
+            if (batchSubmit == true) {
+                System.out.println("Batch submissions: "
+                        + allocPolicy.getNumBatches());
             }
-            printGridletList(glList);
             //workload.printGridletList(false);
         } catch (Exception e) {
             e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Gets an optional argument, given either as <tt>name=value</tt> or at a
+     * fixed position.
+     *
+     * @param args the command line arguments
+     * @param index the position of this argument or <tt>-1</tt> if it can
+     * only be given by name
+     * @param name the name of this argument
+     * @param defaultValue the value if this argument is not given
+     * @return the value of this argument
+     */
+    static String getArg(String[] args, int index, String name,
+            String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+
+        if (index >= 0 && index < args.length && args[index].indexOf('=') < 0) {
+            return args[index];
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets the first argument given as <tt>name=value</tt> whose name is not
+     * known. The trace, i.e. the first argument, is not checked.
+     *
+     * @param args the command line arguments
+     * @param names the names that are known
+     * @return the unknown argument or <tt>null</tt> if there is none
+     */
+    static String getUnknownArg(String[] args, String[] names) {
+        for (int i = 1; i < args.length; i++) {
+            int equals = args[i].indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            if (Arrays.asList(names).contains(
+                    args[i].substring(0, equals)) == false) {
+                return args[i];
+            }
         }
+        return null;
     }
 
+    /**
+     * Prints the queue and run times of the Gridlets as CSV.
+     *
+     * @param list the finished Gridlets
+     */
     private static void printGridletList(GridletList list) {
         int size = list.size();
-        Gridlet gridlet;
+        GridletPrinter printer = new GridletPrinter();
+        for (int i = 0; i < size; i++) {
+            printer.gridletReturned((Gridlet) list.get(i));
+        }
+        printer.flush();
+    }
 
-        String div = ",";
-        //System.out.println();
-        //System.out.println("========== OUTPUT ==========");
-        System.out.println("Gridlet ID" + div + "SubmissionTime" + div
-                + "QueueTime" + div + "RunTime");
+    /**
+     * Prints the queue and run times of Gridlets as CSV, starting with the
+     * header. The lines are put together in a buffer, which is written to
+     * <tt>System.out</tt> once it is large, instead of printing each field.
+     */
+    private static final class GridletPrinter implements GridletConsumer {
 
-        for (int i = 0; i < size; i++) {
-            gridlet = (Gridlet) list.get(i);
-            System.out.print(gridlet.getGridletID());
-            System.out.print(div + gridlet.getSubmissionTime());
-            
-            double queueTime = gridlet.getWaitingTime();
-            System.out.print(div + queueTime);
-            
-            double runTime = gridlet.getWallClockTime();
-            System.out.println(div + runTime);
+        private static final int BUFFER_SIZE = 1 << 16;
+        private static final String DIV = ",";
+        private final StringBuilder out_;
+
+        GridletPrinter() {
+            out_ = new StringBuilder(BUFFER_SIZE);
+            out_.append("Gridlet ID").append(DIV).append("SubmissionTime")
+                    .append(DIV).append("QueueTime").append(DIV)
+                    .append("RunTime").append('\n');
+        }
+
+        public void gridletReturned(Gridlet gridlet) {
+            out_.append(gridlet.getGridletID());
+            out_.append(DIV).append(gridlet.getSubmissionTime());
+            out_.append(DIV).append(gridlet.getWaitingTime());
+            out_.append(DIV).append(gridlet.getWallClockTime()).append('\n');
+
+            if (out_.length() > BUFFER_SIZE - 256) {
+                flush();
+            }
+        }
+
+        void flush() {
+            System.out.print(out_);
+            System.out.flush();
+            out_.setLength(0);
+        }
+    }
+
+    /**
+     * Creates the allocation policy of a resource.
+     *
+     * @param policy <tt>fcfs</tt>, <tt>easy</tt> or <tt>conservative</tt>
+     * @param resName the Grid Resource name
+     * @param entityName the policy entity name
+     * @return the policy or <tt>null</tt> if the name is not known
+     * @throws Exception if the entity can not be created
+     */
+    static CenapadAllocPolicy createAllocPolicy(String policy, String resName,
+            String entityName) throws Exception {
+        if (policy.equals("easy")) {
+            return new EasyBackfillAllocPolicy(resName, entityName);
+        } else if (policy.equals("conservative")) {
+            return new ConservativeBackfillAllocPolicy(resName, entityName);
+        } else if (policy.equals("fcfs")) {
+            return new CenapadAllocPolicy(resName, entityName);
+        }
+        return null;
+    }
+
+    /**
+     * Creates the Machines of a Grid resource. A Machine contains one or
+     * more PEs (Processing Elements or CPUs).
+     *
+     * @param nodes groups of Machines, each as <tt>count</tt>x<tt>pes</tt>
+     * or <tt>count</tt>x<tt>pes</tt>@<tt>rating</tt>, separated by commas
+     * @return the Machines, with IDs from 0 in the given order
+     */
+    static MachineList createMachineList(String nodes) {
+        MachineList mList = new MachineList();
+
+        int id = 0;
+        for (String group : nodes.split(",")) {
+            int x = group.indexOf('x');
+            int at = group.indexOf('@');
+            int totalMachine = Integer.parseInt(group.substring(0, x).trim());
+            int totalPE = Integer.parseInt(group.substring(x + 1,
+                    (at < 0) ? group.length() : at).trim());
+            int rating = (at < 0) ? 100
+                    : Integer.parseInt(group.substring(at + 1).trim());
+            for (int i = 0; i < totalMachine; i++) {
+                // one Machine with its id, number of PEs and rating
+                mList.add(new Machine(id++, totalPE, rating));
+            }
         }
+        return mList;
     }
-    
+
     /**
      * Creates one Grid resource. A Grid resource contains one or more Machines.
      * Similarly, a Machine contains one or more PEs (Processing Elements or
      * CPUs).
      *
      * @param name a Grid Resource name
-     * @param peRating rating of each PE
-     * @param totalMachine total number of Machines
-     * @param totalPE total number of PEs for each Machine
+     * @param mList the Machines, see {@link #createMachineList(String)}
+     * @param allocPolicy the allocation policy
      */
-    private static void createGridResource(String name, int peRating,
-            int totalMachine, int totalPE, AllocPolicy allocPolicy) {
+    static void createGridResource(String name, MachineList mList,
+            AllocPolicy allocPolicy) {
         //////////////////////////////////////////
         // Here are the steps needed to create a Grid resource:
         // 1. We need to create an object of MachineList to store one or more
         //    Machines
-        MachineList mList = new MachineList();
-
-        int rating = peRating;
-        for (int i = 0; i < totalMachine; i++) {
-            // 2. Create one Machine with its id, number of PEs and rating
-            mList.add(new Machine(i, totalPE, rating));
-        }
+        // 2. Create one Machine with its id, number of PEs and rating
+        // Both are done by createMachineList().
 
         //////////////////////////////////////////
         // 3. Create a ResourceCharacteristics object that stores the
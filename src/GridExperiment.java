@@ -0,0 +1,174 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.GridSim;
+import gridsim.MachineList;
+import java.util.Calendar;
+
+/**
+ * Runs several workloads on several resources, e.g. to compare one large
+ * cluster with a federation of smaller ones. Each trace is read by its own
+ * {@link MyWorkload}, and all of them submit to one {@link MetaScheduler},
+ * which sends each Gridlet to a resource.
+ *
+ * @see ExampleWorkload
+ */
+public class GridExperiment {
+
+    /**
+     * Runs one simulation. Usage:
+     * <pre>
+     * GridExperiment trace[,trace]... [name=value]...
+     * </pre>
+     * The optional arguments are:
+     * <ul>
+     * <li> resources: the machines of each resource, separated by
+     *      <tt>;</tt>, each given as in the <tt>nodes</tt> argument of
+     *      {@link ExampleWorkload}, e.g. <tt>38x12,10x12;24x12</tt>
+     *      (<tt>48x12;48x12</tt>)
+     * <li> medium: number of machines of the medium partition of each
+     *      resource, separated by <tt>;</tt>, or one number for all of
+     *      them (38)
+     * <li> policy: <tt>fcfs</tt>, <tt>easy</tt> or <tt>conservative</tt>,
+     *      for all resources (fcfs)
+     * <li> completion: <tt>event</tt> or <tt>poll</tt>, see
+     *      {@link ExampleWorkload} (event)
+     * <li> routing: <tt>leastloaded</tt> or <tt>shortestwait</tt>, see
+     *      {@link MetaScheduler.LeastLoaded} and
+     *      {@link MetaScheduler.ShortestWait} (shortestwait)
+     * <li> fields: number of fields of the traces, <tt>5</tt> or <tt>4</tt>
+     *      (5)
+     * <li> lookahead: max. number of Gridlets each workload schedules
+     *      ahead of the clock, or <tt>0</tt> for the whole trace (0)
+     * <li> batchsubmit: <tt>true</tt> to send the jobs with the same submit
+     *      time in one event (false)
+     * <li> simtrace: <tt>false</tt> to not trace GridSim events (false)
+     * </ul>
+     * The number of Gridlets routed to each resource and the wait and run
+     * time statistics of all workloads are printed at the end.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            String[] traces = args[0].split(",");
+            String[] resources = ExampleWorkload.getArg(args, -1,
+                    "resources", "48x12;48x12").split(";");
+            String[] medium = ExampleWorkload.getArg(args, -1, "medium",
+                    "38").split(";");
+            if (medium.length != 1 && medium.length != resources.length) {
+                System.out.println("Give one medium size or one for each "
+                        + "resource");
+                return;
+            }
+
+            // one grid user entity for each workload
+            int num_user = traces.length;
+            Calendar calendar = Calendar.getInstance();
+            boolean trace_flag = Boolean.parseBoolean(
+                    ExampleWorkload.getArg(args, -1, "simtrace", "false"));
+            System.out.println("Initializing GridSim package");
+            GridSim.init(num_user, calendar, trace_flag);
+
+            //////////////////////////////////////////////////////
+            /////// Creating resources
+            int rating = 100;       // rating the trace run times are for
+            String policy = ExampleWorkload.getArg(args, -1, "policy", "fcfs");
+            boolean eventDriven = ExampleWorkload.getArg(args, -1,
+                    "completion", "event").equals("event");
+            MachineList[] machines = new MachineList[resources.length];
+            int[] numMedium = new int[resources.length];
+            CenapadAllocPolicy[] policies =
+                    new CenapadAllocPolicy[resources.length];
+            for (int i = 0; i < resources.length; i++) {
+                String resName = "Res_" + i;
+                CenapadAllocPolicy allocPolicy = ExampleWorkload
+                        .createAllocPolicy(policy, resName, "allocPolicy_" + i);
+                if (allocPolicy == null) {
+                    System.out.println("Unknown policy: " + policy);
+                    return;
+                }
+                allocPolicy.setEventDriven(eventDriven);
+                numMedium[i] = Integer.parseInt(
+                        medium[Math.min(i, medium.length - 1)].trim());
+                allocPolicy.setMediumPartitionSize(numMedium[i]);
+                allocPolicy.setTraceFile(null);
+
+                machines[i] = ExampleWorkload.createMachineList(resources[i]);
+                ExampleWorkload.createGridResource(resName, machines[i],
+                        allocPolicy);
+                policies[i] = allocPolicy;
+            }
+
+            //////////////////////////////////////////////////////
+            /////// Creating the MetaScheduler
+            String routing = ExampleWorkload.getArg(args, -1, "routing",
+                    "shortestwait");
+            RoutingPolicy routingPolicy;
+            if (routing.equals("leastloaded")) {
+                routingPolicy = new MetaScheduler.LeastLoaded();
+            } else {
+                routingPolicy = new MetaScheduler.ShortestWait();
+            }
+            MetaScheduler scheduler = new MetaScheduler("MetaScheduler",
+                    routingPolicy);
+            for (int i = 0; i < resources.length; i++) {
+                scheduler.addResource("Res_" + i, machines[i], numMedium[i],
+                        policies[i]);
+            }
+
+            //////////////////////////////////////////////////////
+            /////// Creating MyWorkload entities
+            int lookahead = Integer.parseInt(
+                    ExampleWorkload.getArg(args, -1, "lookahead", "0"));
+            boolean batchSubmit = Boolean.parseBoolean(
+                    ExampleWorkload.getArg(args, -1, "batchsubmit", "false"));
+            boolean classType = ExampleWorkload.getArg(args, -1, "fields",
+                    "5").equals("5");
+            GridletStatistics[] stats = new GridletStatistics[traces.length];
+            for (int i = 0; i < traces.length; i++) {
+                MyWorkload workload = new MyWorkload("Load_" + i, traces[i],
+                        "MetaScheduler", rating);
+                if (classType == true) {
+                    workload.setField(5, 1, 2, 3, 4, 5);
+                } else {
+                    workload.setField(4, 1, 2, 3, 4, 0);
+                }
+                workload.setComment("#");
+                workload.setLookahead(lookahead);
+                workload.setBatchSubmit(batchSubmit);
+
+                // only the statistics are kept
+                workload.setRetainGridlets(false);
+                stats[i] = new GridletStatistics();
+                workload.addConsumer(stats[i]);
+            }
+
+            //////////////////////////////////////////////////////
+            /////// Starts the simulation
+            GridSim.startGridSimulation();
+
+            //////////////////////////////////////////////////////
+            /////// Print the routing and the statistics
+            for (MetaScheduler.ResourceState state : scheduler.getResources()) {
+                System.out.println(state.getName() + ": "
+                        + state.getNumRouted() + " Gridlets");
+            }
+            if (scheduler.getNumUnroutable() > 0) {
+                System.out.println("Gridlets no resource can run: "
+                        + scheduler.getNumUnroutable());
+            }
+            GridletStatistics total = new GridletStatistics();
+            for (GridletStatistics s : stats) {
+                total.merge(s);
+            }
+            total.print(System.out);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
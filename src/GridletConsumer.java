@@ -0,0 +1,31 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.Gridlet;
+
+/**
+ * Gets each Gridlet that comes back to a {@link MyWorkload}, as soon as it
+ * comes back, e.g. to update statistics or to write it out. Together with
+ * {@link MyWorkload#setRetainGridlets(boolean)}, the finished Gridlets do
+ * not have to be kept until the end of the simulation. A resource can also
+ * give its finished Gridlets to a consumer.
+ *
+ * @see MyWorkload#addConsumer(GridletConsumer)
+ * @see CenapadAllocPolicy#setConsumer(GridletConsumer)
+ * @invariant $none
+ */
+interface GridletConsumer
+{
+    /**
+     * Handles a Gridlet that has come back from a resource. The Gridlet must
+     * not be changed.
+     * @param gl   a Gridlet
+     * @pre gl != null
+     * @post $none
+     */
+    void gridletReturned(Gridlet gl);
+}
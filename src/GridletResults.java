@@ -0,0 +1,514 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.Gridlet;
+import gridsim.ResGridlet;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The results of finished Gridlets, kept in memory as one primitive array
+ * per column. They can be written into a compact binary file and read back
+ * with bulk reads, or exported as CSV.
+ * <p>
+ * The format is columnar. All numbers are big-endian:
+ * <pre>
+ *  offset  size            content
+ *  0       int             {@link #MAGIC}
+ *  4       int             {@link #VERSION}
+ *  8       long            number of Gridlets, n
+ *  16      long            number of machine IDs, m
+ *  24      (reserved)      zeros up to {@link #HEADER_SIZE}
+ *  64      int[n]          Gridlet ID
+ *          double[n]       submission time
+ *          double[n]       waiting (queue) time
+ *          double[n]       wall clock (run) time
+ *          int[n]          number of PEs
+ *          int[n]          class type
+ *          int[n]          number of machines the Gridlet ran on
+ *          int[m]          IDs of these machines, Gridlet after Gridlet
+ * </pre>
+ *
+ * @see CenapadAllocPolicy#setResults(GridletResults)
+ * @see ResultConverter
+ * @invariant $none
+ */
+final class GridletResults
+{
+    /** The first 4 bytes of a results file, i.e. "GDRS" */
+    static final int MAGIC = 0x47445253;
+
+    /** Version of the format */
+    static final int VERSION = 1;
+
+    /** Size of the header, in bytes */
+    static final int HEADER_SIZE = 64;
+
+    /** Header of the CSV export */
+    static final String CSV_HEADER = "Gridlet ID,SubmissionTime,QueueTime,"
+            + "RunTime,NumPE,ClassType,Machines";
+
+    private static final int INITIAL_SIZE = 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private int count_;             // number of Gridlets
+    private int machineCount_;      // number of machine IDs
+
+    // the columns
+    private int[] gridletId_;
+    private double[] submissionTime_;
+    private double[] waitingTime_;
+    private double[] wallClockTime_;
+    private int[] numPE_;
+    private int[] classType_;
+    private int[] numMachines_;
+    private int[] machineIds_;
+    private int[] machineStart_;    // index of the first machine ID
+
+    /**
+     * Creates an empty set of results
+     * @pre $none
+     * @post $none
+     */
+    GridletResults() {
+        this(INITIAL_SIZE, INITIAL_SIZE);
+    }
+
+    /**
+     * Creates an empty set of results with a given capacity
+     * @param size         number of Gridlets
+     * @param machineSize  number of machine IDs
+     */
+    private GridletResults(int size, int machineSize)
+    {
+        count_ = 0;
+        machineCount_ = 0;
+        gridletId_ = new int[size];
+        submissionTime_ = new double[size];
+        waitingTime_ = new double[size];
+        wallClockTime_ = new double[size];
+        numPE_ = new int[size];
+        classType_ = new int[size];
+        numMachines_ = new int[size];
+        machineStart_ = new int[size];
+        machineIds_ = new int[machineSize];
+    }
+
+    /**
+     * Adds a Gridlet that has been finalized, together with the machines it
+     * ran on
+     * @param rgl  a ResGridlet object
+     * @pre rgl != null
+     * @post $none
+     */
+    void add(ResGridlet rgl)
+    {
+        Gridlet gl = rgl.getGridlet();
+        int[] ids = CenapadAllocPolicy.getMachineIds(rgl);
+        add(gl.getGridletID(), gl.getSubmissionTime(), gl.getWaitingTime(),
+            gl.getWallClockTime(), gl.getNumPE(), gl.getClassType(), ids.length);
+        for (int id : ids) {
+            addMachine(id);
+        }
+    }
+
+    /**
+     * Adds a Gridlet, whose machine IDs must be added next with
+     * {@link #addMachine(int)}
+     * @param id              Gridlet ID
+     * @param submissionTime  submission time
+     * @param waitingTime     waiting time
+     * @param wallClockTime   wall clock time
+     * @param numPE           number of PEs
+     * @param classType       class type
+     * @param numMachines     number of machines it ran on
+     * @pre numMachines >= 0
+     * @post $none
+     */
+    void add(int id, double submissionTime, double waitingTime,
+             double wallClockTime, int numPE, int classType, int numMachines)
+    {
+        if (count_ == gridletId_.length)
+        {
+            int size = Math.max(count_ * 2, 16);
+            gridletId_ = Arrays.copyOf(gridletId_, size);
+            submissionTime_ = Arrays.copyOf(submissionTime_, size);
+            waitingTime_ = Arrays.copyOf(waitingTime_, size);
+            wallClockTime_ = Arrays.copyOf(wallClockTime_, size);
+            numPE_ = Arrays.copyOf(numPE_, size);
+            classType_ = Arrays.copyOf(classType_, size);
+            numMachines_ = Arrays.copyOf(numMachines_, size);
+            machineStart_ = Arrays.copyOf(machineStart_, size);
+        }
+        if (machineCount_ + numMachines > machineIds_.length)
+        {
+            machineIds_ = Arrays.copyOf(machineIds_,
+                    Math.max(machineIds_.length * 2, machineCount_ + numMachines));
+        }
+
+        gridletId_[count_] = id;
+        submissionTime_[count_] = submissionTime;
+        waitingTime_[count_] = waitingTime;
+        wallClockTime_[count_] = wallClockTime;
+        numPE_[count_] = numPE;
+        classType_[count_] = classType;
+        numMachines_[count_] = numMachines;
+        machineStart_[count_] = machineCount_;
+        count_++;
+    }
+
+    /**
+     * Adds a machine ID of the last Gridlet added
+     * @param machineId  a machine ID
+     * @pre $none
+     * @post $none
+     */
+    void addMachine(int machineId) {
+        machineIds_[machineCount_++] = machineId;
+    }
+
+    /**
+     * Gets the number of Gridlets
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int size() {
+        return count_;
+    }
+
+    /** @return the ID of a Gridlet */
+    int getGridletID(int i) {
+        return gridletId_[i];
+    }
+
+    /** @return the submission time of a Gridlet */
+    double getSubmissionTime(int i) {
+        return submissionTime_[i];
+    }
+
+    /** @return the waiting (queue) time of a Gridlet */
+    double getWaitingTime(int i) {
+        return waitingTime_[i];
+    }
+
+    /** @return the wall clock (run) time of a Gridlet */
+    double getWallClockTime(int i) {
+        return wallClockTime_[i];
+    }
+
+    /** @return the number of PEs of a Gridlet */
+    int getNumPE(int i) {
+        return numPE_[i];
+    }
+
+    /** @return the class type of a Gridlet */
+    int getClassType(int i) {
+        return classType_[i];
+    }
+
+    /** @return the number of machines a Gridlet ran on */
+    int getNumMachines(int i) {
+        return numMachines_[i];
+    }
+
+    /** @return the j-th machine ID a Gridlet ran on */
+    int getMachineID(int i, int j) {
+        return machineIds_[machineStart_[i] + j];
+    }
+
+    /**
+     * Writes the results into a binary file
+     * @param fileName  the file name
+     * @throws IOException  if the file can not be written
+     * @pre fileName != null
+     * @post $none
+     */
+    void write(String fileName) throws IOException
+    {
+        FileOutputStream file = new FileOutputStream(fileName);
+        try
+        {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(count_);
+            buffer.putLong(machineCount_);
+            while (buffer.position() < HEADER_SIZE) {
+                buffer.put((byte) 0);
+            }
+
+            writeColumn(channel, buffer, gridletId_, count_);
+            writeColumn(channel, buffer, submissionTime_);
+            writeColumn(channel, buffer, waitingTime_);
+            writeColumn(channel, buffer, wallClockTime_);
+            writeColumn(channel, buffer, numPE_, count_);
+            writeColumn(channel, buffer, classType_, count_);
+            writeColumn(channel, buffer, numMachines_, count_);
+            writeColumn(channel, buffer, machineIds_, machineCount_);
+            flush(channel, buffer);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads the results from a binary file
+     * @param fileName  the file name
+     * @return the results
+     * @throws IOException  if the file can not be read or is not a results
+     *                      file
+     * @pre fileName != null
+     * @post $result != null
+     */
+    static GridletResults read(String fileName) throws IOException
+    {
+        FileInputStream file = new FileInputStream(fileName);
+        try
+        {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(HEADER_SIZE);
+            fill(channel, buffer);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(fileName + " is not a results file");
+            }
+
+            long count = buffer.getLong();
+            long machineCount = buffer.getLong();
+            if (count > Integer.MAX_VALUE || machineCount > Integer.MAX_VALUE) {
+                throw new IOException(fileName + " is too large");
+            }
+
+            int n = (int) count;
+            GridletResults results = new GridletResults(n, (int) machineCount);
+            buffer.clear();
+            buffer.flip();      // nothing has been read yet
+            readColumn(channel, buffer, results.gridletId_, n);
+            readColumn(channel, buffer, results.submissionTime_, n);
+            readColumn(channel, buffer, results.waitingTime_, n);
+            readColumn(channel, buffer, results.wallClockTime_, n);
+            readColumn(channel, buffer, results.numPE_, n);
+            readColumn(channel, buffer, results.classType_, n);
+            readColumn(channel, buffer, results.numMachines_, n);
+            readColumn(channel, buffer, results.machineIds_, (int) machineCount);
+
+            int start = 0;
+            for (int i = 0; i < n; i++)
+            {
+                results.machineStart_[i] = start;
+                start += results.numMachines_[i];
+            }
+            results.count_ = n;
+            results.machineCount_ = (int) machineCount;
+            return results;
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the results as CSV, with the machine IDs of a Gridlet
+     * separated by spaces
+     * @param fileName  the file name
+     * @throws IOException  if the file can not be written
+     * @pre fileName != null
+     * @post $none
+     */
+    void writeCsv(String fileName) throws IOException
+    {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(fileName),
+                                                   BUFFER_SIZE);
+        try
+        {
+            StringBuilder line = new StringBuilder(128);
+            writer.write(CSV_HEADER);
+            writer.newLine();
+            for (int i = 0; i < count_; i++)
+            {
+                line.setLength(0);
+                line.append(gridletId_[i]).append(',')
+                    .append(submissionTime_[i]).append(',')
+                    .append(waitingTime_[i]).append(',')
+                    .append(wallClockTime_[i]).append(',')
+                    .append(numPE_[i]).append(',')
+                    .append(classType_[i]).append(',');
+                for (int j = 0; j < numMachines_[i]; j++)
+                {
+                    if (j > 0) {
+                        line.append(' ');
+                    }
+                    line.append(machineIds_[machineStart_[i] + j]);
+                }
+                line.append('\n');
+                writer.append(line);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes an int column
+     * @param channel  the file channel
+     * @param buffer   the buffer to write through
+     * @param column   the column
+     * @param length   number of values to write
+     * @throws IOException  if the file can not be written
+     */
+    private static void writeColumn(FileChannel channel, ByteBuffer buffer,
+                                    int[] column, int length) throws IOException
+    {
+        int done = 0;
+        while (done < length)
+        {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            int num = Math.min(length - done, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(column, done, num);
+            buffer.position(buffer.position() + num * 4);
+            done += num;
+        }
+    }
+
+    /**
+     * Writes a double column
+     * @param channel  the file channel
+     * @param buffer   the buffer to write through
+     * @param column   the column
+     * @throws IOException  if the file can not be written
+     */
+    private void writeColumn(FileChannel channel, ByteBuffer buffer,
+                             double[] column) throws IOException
+    {
+        int done = 0;
+        while (done < count_)
+        {
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            int num = Math.min(count_ - done, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(column, done, num);
+            buffer.position(buffer.position() + num * 8);
+            done += num;
+        }
+    }
+
+    /**
+     * Reads an int column
+     * @param channel  the file channel
+     * @param buffer   the buffer to read through, in read mode
+     * @param column   the column
+     * @param length   number of values to read
+     * @throws IOException  if the file can not be read
+     */
+    private static void readColumn(FileChannel channel, ByteBuffer buffer,
+                                   int[] column, int length) throws IOException
+    {
+        int done = 0;
+        while (done < length)
+        {
+            if (buffer.remaining() < 4) {
+                refill(channel, buffer);
+            }
+            int num = Math.min(length - done, buffer.remaining() / 4);
+            buffer.asIntBuffer().get(column, done, num);
+            buffer.position(buffer.position() + num * 4);
+            done += num;
+        }
+    }
+
+    /**
+     * Reads a double column
+     * @param channel  the file channel
+     * @param buffer   the buffer to read through, in read mode
+     * @param column   the column
+     * @param length   number of values to read
+     * @throws IOException  if the file can not be read
+     */
+    private static void readColumn(FileChannel channel, ByteBuffer buffer,
+                                   double[] column, int length) throws IOException
+    {
+        int done = 0;
+        while (done < length)
+        {
+            if (buffer.remaining() < 8) {
+                refill(channel, buffer);
+            }
+            int num = Math.min(length - done, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().get(column, done, num);
+            buffer.position(buffer.position() + num * 8);
+            done += num;
+        }
+    }
+
+    /**
+     * Writes the content of a buffer and clears it
+     * @param channel  the file channel
+     * @param buffer   the buffer
+     * @throws IOException  if the file can not be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Keeps the unread bytes of a buffer and reads more bytes after them
+     * @param channel  the file channel
+     * @param buffer   the buffer, in read mode
+     * @throws IOException  if the file ends too early
+     */
+    private static void refill(FileChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        buffer.compact();
+        int start = buffer.position();
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // reads as much as fits
+        }
+        if (buffer.position() == start) {
+            throw new IOException("Unexpected end of results file");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Reads bytes until a buffer is full up to its limit
+     * @param channel  the file channel
+     * @param buffer   the buffer
+     * @throws IOException  if the file ends too early
+     */
+    private static void fill(FileChannel channel, ByteBuffer buffer)
+            throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of results file");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.Gridlet;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The wait (queue) and run times of the finished Gridlets, for all
+ * Gridlets, for each class type and for each partition, computed as the
+ * Gridlets come back. {@link CenapadAllocPolicy} queues the Gridlets of
+ * class type <tt>PartitionMedium</tt> in the medium partition and the ones
+ * of every other class type, e.g. the GPU ones, in the long partition, so a
+ * partition may aggregate several class types.
+ *
+ * @see MyWorkload#addConsumer(GridletConsumer)
+ * @see OnlineStatistics
+ * @invariant $none
+ */
+final class GridletStatistics implements GridletConsumer
+{
+    /** The quantiles that are printed */
+    static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    private final OnlineStatistics wait_;
+    private final OnlineStatistics run_;
+    private final Map<Integer, OnlineStatistics> classWait_;
+    private final Map<Integer, OnlineStatistics> classRun_;
+    private final Map<Integer, OnlineStatistics> partitionWait_;
+    private final Map<Integer, OnlineStatistics> partitionRun_;
+
+    /**
+     * Creates empty statistics
+     * @pre $none
+     * @post $none
+     */
+    GridletStatistics()
+    {
+        wait_ = new OnlineStatistics();
+        run_ = new OnlineStatistics();
+        classWait_ = new TreeMap<Integer, OnlineStatistics>();
+        classRun_ = new TreeMap<Integer, OnlineStatistics>();
+        partitionWait_ = new TreeMap<Integer, OnlineStatistics>();
+        partitionRun_ = new TreeMap<Integer, OnlineStatistics>();
+    }
+
+    /**
+     * Adds a finished Gridlet
+     * @param gl   a Gridlet that came back from a resource
+     * @pre gl != null
+     * @post $none
+     */
+    void add(Gridlet gl)
+    {
+        double wait = gl.getWaitingTime();
+        double run = gl.getWallClockTime();
+        wait_.add(wait);
+        run_.add(run);
+        get(classWait_, gl.getClassType()).add(wait);
+        get(classRun_, gl.getClassType()).add(run);
+        get(partitionWait_, getPartition(gl.getClassType())).add(wait);
+        get(partitionRun_, getPartition(gl.getClassType())).add(run);
+    }
+
+    /**
+     * Adds a Gridlet that comes back to a workload
+     * @param gl   a Gridlet
+     * @pre gl != null
+     * @post $none
+     * @see #add(Gridlet)
+     */
+    public void gridletReturned(Gridlet gl) {
+        add(gl);
+    }
+
+    /**
+     * Adds the Gridlets of other statistics to these ones, e.g. the
+     * statistics of another workload
+     * @param other   other statistics
+     * @pre other != null
+     * @post $none
+     */
+    void merge(GridletStatistics other)
+    {
+        wait_.merge(other.wait_);
+        run_.merge(other.run_);
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                other.classWait_.entrySet()) {
+            get(classWait_, entry.getKey()).merge(entry.getValue());
+        }
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                other.classRun_.entrySet()) {
+            get(classRun_, entry.getKey()).merge(entry.getValue());
+        }
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                other.partitionWait_.entrySet()) {
+            get(partitionWait_, entry.getKey()).merge(entry.getValue());
+        }
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                other.partitionRun_.entrySet()) {
+            get(partitionRun_, entry.getKey()).merge(entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the wait times of all Gridlets
+     * @return the statistics
+     * @pre $none
+     * @post $result != null
+     */
+    OnlineStatistics getWaitTime() {
+        return wait_;
+    }
+
+    /**
+     * Gets the run times of all Gridlets
+     * @return the statistics
+     * @pre $none
+     * @post $result != null
+     */
+    OnlineStatistics getRunTime() {
+        return run_;
+    }
+
+    /**
+     * Gets the wait times of the Gridlets of a class type
+     * @param classType   a class type
+     * @return the statistics, which are empty if no Gridlet has this type
+     * @pre $none
+     * @post $result != null
+     */
+    OnlineStatistics getWaitTime(int classType) {
+        return get(classWait_, classType);
+    }
+
+    /**
+     * Gets the run times of the Gridlets of a class type
+     * @param classType   a class type
+     * @return the statistics, which are empty if no Gridlet has this type
+     * @pre $none
+     * @post $result != null
+     */
+    OnlineStatistics getRunTime(int classType) {
+        return get(classRun_, classType);
+    }
+
+    /**
+     * Gets the wait times of the Gridlets queued in a partition
+     * @param partition   <tt>PartitionMedium</tt> or <tt>PartitionLong</tt>
+     * @return the statistics, which are empty if no Gridlet was queued there
+     * @pre partition == CenapadAllocPolicy.PartitionMedium ||
+     *      partition == CenapadAllocPolicy.PartitionLong
+     * @post $result != null
+     */
+    OnlineStatistics getPartitionWaitTime(int partition) {
+        return get(partitionWait_, partition);
+    }
+
+    /**
+     * Gets the run times of the Gridlets queued in a partition
+     * @param partition   <tt>PartitionMedium</tt> or <tt>PartitionLong</tt>
+     * @return the statistics, which are empty if no Gridlet was queued there
+     * @pre partition == CenapadAllocPolicy.PartitionMedium ||
+     *      partition == CenapadAllocPolicy.PartitionLong
+     * @post $result != null
+     */
+    OnlineStatistics getPartitionRunTime(int partition) {
+        return get(partitionRun_, partition);
+    }
+
+    /**
+     * Prints the statistics as a table, one line for all Gridlets, one for
+     * each class type and one for each partition
+     * @param out   where to print
+     * @pre out != null
+     * @post $none
+     */
+    void print(PrintStream out)
+    {
+        StringBuilder header = new StringBuilder();
+        header.append(String.format("%-8s %-5s %8s %12s %12s %12s",
+                "Class", "Time", "Count", "Mean", "StdDev", "Min"));
+        for (double q : QUANTILES) {
+            header.append(String.format(" %12s", "P" + Math.round(q * 100)));
+        }
+        header.append(String.format(" %12s", "Max"));
+        out.println(header);
+
+        print(out, "all", "wait", wait_);
+        for (Map.Entry<Integer, OnlineStatistics> entry : classWait_.entrySet()) {
+            print(out, String.valueOf(entry.getKey()), "wait", entry.getValue());
+        }
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                partitionWait_.entrySet()) {
+            print(out, getPartitionName(entry.getKey()), "wait",
+                  entry.getValue());
+        }
+        print(out, "all", "run", run_);
+        for (Map.Entry<Integer, OnlineStatistics> entry : classRun_.entrySet()) {
+            print(out, String.valueOf(entry.getKey()), "run", entry.getValue());
+        }
+        for (Map.Entry<Integer, OnlineStatistics> entry :
+                partitionRun_.entrySet()) {
+            print(out, getPartitionName(entry.getKey()), "run",
+                  entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the partition a Gridlet is queued in, as done by
+     * CenapadAllocPolicy.gridletSubmit()
+     * @param classType   the class type of the Gridlet
+     * @return <tt>PartitionMedium</tt> or <tt>PartitionLong</tt>
+     */
+    private static int getPartition(int classType)
+    {
+        if (classType == CenapadAllocPolicy.PartitionMedium) {
+            return CenapadAllocPolicy.PartitionMedium;
+        }
+        return CenapadAllocPolicy.PartitionLong;
+    }
+
+    /**
+     * Gets the name of a partition as printed in the table
+     * @param partition   <tt>PartitionMedium</tt> or <tt>PartitionLong</tt>
+     * @return the name
+     */
+    private static String getPartitionName(int partition)
+    {
+        if (partition == CenapadAllocPolicy.PartitionMedium) {
+            return "medium";
+        }
+        return "long";
+    }
+
+    /**
+     * Prints one line of the table
+     * @param out     where to print
+     * @param name    the class type or partition
+     * @param time    the kind of time
+     * @param stats   the statistics
+     */
+    private static void print(PrintStream out, String name, String time,
+                              OnlineStatistics stats)
+    {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("%-8s %-5s %8d %12.1f %12.1f %12.1f",
+                name, time, stats.getCount(), stats.getMean(),
+                stats.getStandardDeviation(), stats.getMin()));
+        for (double q : QUANTILES) {
+            line.append(String.format(" %12.1f", stats.getQuantile(q)));
+        }
+        line.append(String.format(" %12.1f", stats.getMax()));
+        out.println(line);
+    }
+
+    /**
+     * Gets the statistics of a class type, creating them if needed
+     * @param map         statistics by class type
+     * @param classType   a class type
+     * @return the statistics
+     */
+    private static OnlineStatistics get(Map<Integer, OnlineStatistics> map,
+                                        int classType)
+    {
+        OnlineStatistics stats = map.get(classType);
+        if (stats == null)
+        {
+            stats = new OnlineStatistics();
+            map.put(classType, stats);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.ResGridlet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
+
+/**
+ * A list of ResGridlet objects that keeps their arrival (FIFO) order and
+ * is also indexed by <tt>(userId, gridletId)</tt>. Unlike
+ * {@link gridsim.ResGridletList}, which is a linked list scanned from the
+ * start, finding or removing a Gridlet by its IDs, removing the first
+ * Gridlet or a given ResGridlet object takes constant time. The number of
+ * Gridlets requiring each number of PEs is also kept, so the smallest
+ * number of PEs required in this list is known without a scan.
+ *
+ * @see CenapadAllocPolicy
+ * @invariant $none
+ */
+final class IndexedGridletList implements Iterable<ResGridlet>
+{
+    private final LinkedHashMap<Long, ResGridlet> map_;
+    private final TreeMap<Integer, Integer> numPE_;  // PEs -> Gridlets
+
+    /**
+     * Creates an empty list
+     * @pre $none
+     * @post $none
+     */
+    IndexedGridletList()
+    {
+        map_ = new LinkedHashMap<Long, ResGridlet>();
+        numPE_ = new TreeMap<Integer, Integer>();
+    }
+
+    /**
+     * Appends a Gridlet at the end of this list
+     * @param rgl  a ResGridlet object
+     * @return <tt>true</tt> if it is added, <tt>false</tt> if a Gridlet with
+     *         the same IDs is already in this list
+     * @pre rgl != null
+     * @post $none
+     */
+    boolean add(ResGridlet rgl)
+    {
+        Long key = key(rgl.getGridletID(), rgl.getUserID());
+        if (map_.containsKey(key) == true) {
+            return false;
+        }
+
+        map_.put(key, rgl);
+        count(rgl, 1);
+        return true;
+    }
+
+    /**
+     * Finds a Gridlet
+     * @param gridletId  a Gridlet ID
+     * @param userId     the user or owner's ID of this Gridlet
+     * @return the ResGridlet object or <tt>null</tt> if it is not found
+     * @pre $none
+     * @post $none
+     */
+    ResGridlet get(int gridletId, int userId) {
+        return map_.get( key(gridletId, userId) );
+    }
+
+    /**
+     * Gets the first Gridlet of this list, i.e. the one that was added first
+     * @return the ResGridlet object or <tt>null</tt> if this list is empty
+     * @pre $none
+     * @post $none
+     */
+    ResGridlet getFirst()
+    {
+        if (map_.isEmpty() == true) {
+            return null;
+        }
+        return map_.values().iterator().next();
+    }
+
+    /**
+     * Removes a Gridlet
+     * @param gridletId  a Gridlet ID
+     * @param userId     the user or owner's ID of this Gridlet
+     * @return the removed ResGridlet object or <tt>null</tt> if it is not
+     *         found
+     * @pre $none
+     * @post $none
+     */
+    ResGridlet remove(int gridletId, int userId)
+    {
+        ResGridlet rgl = map_.remove( key(gridletId, userId) );
+        if (rgl != null) {
+            count(rgl, -1);
+        }
+        return rgl;
+    }
+
+    /**
+     * Removes a Gridlet
+     * @param rgl  a ResGridlet object
+     * @return <tt>true</tt> if it is removed, <tt>false</tt> if it is not
+     *         found
+     * @pre rgl != null
+     * @post $none
+     */
+    boolean remove(ResGridlet rgl) {
+        return remove(rgl.getGridletID(), rgl.getUserID()) != null;
+    }
+
+    /**
+     * Gets the number of Gridlets in this list
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int size() {
+        return map_.size();
+    }
+
+    /**
+     * Checks whether this list is empty
+     * @return <tt>true</tt> if it is empty, <tt>false</tt> otherwise
+     * @pre $none
+     * @post $none
+     */
+    boolean isEmpty() {
+        return map_.isEmpty();
+    }
+
+    /**
+     * Gets the smallest number of PEs required by a Gridlet in this list
+     * @return the number of PEs or <tt>Integer.MAX_VALUE</tt> if this list
+     *         is empty
+     * @pre $none
+     * @post $result > 0
+     */
+    int getMinNumPE() {
+        return numPE_.isEmpty() ? Integer.MAX_VALUE : numPE_.firstKey();
+    }
+
+    /**
+     * Iterates over the Gridlets in FIFO order. A Gridlet can be removed
+     * through the iterator.
+     * @return an iterator
+     * @pre $none
+     * @post $result != null
+     */
+    public Iterator<ResGridlet> iterator()
+    {
+        final Iterator<ResGridlet> iter = map_.values().iterator();
+        return new Iterator<ResGridlet>() {
+            private ResGridlet last_ = null;
+
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            public ResGridlet next() {
+                last_ = iter.next();
+                return last_;
+            }
+
+            public void remove() {
+                iter.remove();
+                count(last_, -1);
+            }
+        };
+    }
+
+    /**
+     * Counts a Gridlet in or out of the number of PEs index
+     * @param rgl    a ResGridlet object
+     * @param sign   <tt>1</tt> to add or <tt>-1</tt> to remove it
+     */
+    private void count(ResGridlet rgl, int sign)
+    {
+        Integer pes = rgl.getNumPE();
+        Integer n = numPE_.get(pes);
+        int count = (n == null ? 0 : n) + sign;
+        if (count == 0) {
+            numPE_.remove(pes);
+        } else {
+            numPE_.put(pes, count);
+        }
+    }
+
+    /**
+     * Combines the IDs of a Gridlet into a key of the index
+     * @param gridletId  a Gridlet ID
+     * @param userId     the user or owner's ID of this Gridlet
+     * @return the key
+     */
+    private static Long key(int gridletId, int userId) {
+        return Long.valueOf( ((long) userId << 32) | (gridletId & 0xFFFFFFFFL) );
+    }
+}
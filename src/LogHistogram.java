@@ -0,0 +1,156 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative values with log-linear buckets, used to get
+ * quantiles without keeping every value. Values are counted in
+ * milliseconds. Below 128 ms every value has its own bucket. Above that,
+ * each power of two is split into 128 buckets of the same width, so a
+ * quantile is off by less than 0.4% of its value.
+ * <p>
+ * Two histograms are merged by adding their counts, e.g. to put together
+ * the histograms of several runs or partitions.
+ *
+ * @see OnlineStatistics
+ * @invariant $none
+ */
+final class LogHistogram
+{
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final double UNIT = 1000.0;     // buckets per second
+
+    private long[] counts_;     // grows up to the largest bucket used
+    private long total_;
+
+    /**
+     * Creates an empty histogram
+     * @pre $none
+     * @post $none
+     */
+    LogHistogram()
+    {
+        counts_ = new long[SUB_BUCKETS * 8];
+        total_ = 0;
+    }
+
+    /**
+     * Adds a value. A negative value is counted as 0.
+     * @param value   a value, in seconds
+     * @pre $none
+     * @post $none
+     */
+    void add(double value)
+    {
+        long x = 0;
+        if (value > 0.0) {
+            x = (long) (value * UNIT + 0.5);
+        }
+
+        int index = getIndex(x);
+        if (index >= counts_.length) {
+            counts_ = Arrays.copyOf(counts_,
+                    Math.max(index + 1, counts_.length * 2));
+        }
+        counts_[index]++;
+        total_++;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one
+     * @param other   another histogram
+     * @pre other != null
+     * @post $none
+     */
+    void merge(LogHistogram other)
+    {
+        if (other.counts_.length > counts_.length) {
+            counts_ = Arrays.copyOf(counts_, other.counts_.length);
+        }
+        for (int i = 0; i < other.counts_.length; i++) {
+            counts_[i] += other.counts_[i];
+        }
+        total_ += other.total_;
+    }
+
+    /**
+     * Gets the number of values
+     * @return the number of values
+     * @pre $none
+     * @post $result >= 0
+     */
+    long getCount() {
+        return total_;
+    }
+
+    /**
+     * Gets a quantile, i.e. the smallest value such that a given fraction
+     * of the values are not larger. It is the middle of its bucket.
+     * @param q   the fraction, e.g. 0.99 for the 99th percentile
+     * @return the quantile in seconds, or <tt>Double.NaN</tt> if there is no
+     *         value
+     * @pre q >= 0.0 && q <= 1.0
+     * @post $none
+     */
+    double getQuantile(double q)
+    {
+        if (total_ == 0) {
+            return Double.NaN;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(q * total_));
+        long count = 0;
+        int index = 0;
+        while (index < counts_.length - 1)
+        {
+            count += counts_[index];
+            if (count >= rank) {
+                break;
+            }
+            index++;
+        }
+
+        double low = getLowest(index);
+        double high = getLowest(index + 1) - 1;
+        return (low + high) / 2.0 / UNIT;
+    }
+
+    /**
+     * Gets the bucket of a value
+     * @param x   a value in milliseconds
+     * @return the bucket index
+     */
+    private static int getIndex(long x)
+    {
+        if (x < SUB_BUCKETS) {
+            return (int) x;
+        }
+
+        // the top SUB_BITS + 1 bits of x select the bucket
+        int shift = 63 - Long.numberOfLeadingZeros(x) - SUB_BITS;
+        int mantissa = (int) (x >>> shift);
+        return (shift + 1) * SUB_BUCKETS + mantissa - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the lowest value of a bucket
+     * @param index   a bucket index
+     * @return the lowest value in milliseconds
+     */
+    private static long getLowest(int index)
+    {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return mantissa << shift;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.util.BitSet;
+
+/**
+ * A group of machines of a resource with the same number of PEs and the
+ * same MIPS rating, which all belong to the medium partition or all do
+ * not. {@link CenapadAllocPolicy} puts every machine in one pool and keeps
+ * the machines of each pool in buckets by their number of free PEs, so it
+ * can tell whether a Gridlet fits by looking at each pool once instead of
+ * at each machine, and find a machine with enough free PEs by looking at
+ * each bucket once. The idle machines are the ones whose PEs are all free.
+ * <p>
+ * Machines are identified by their index in the MachineList, and the ones
+ * of a bucket are taken in that order.
+ *
+ * @see CenapadAllocPolicy
+ * @invariant $none
+ */
+final class MachinePool
+{
+    private final int numPE_;          // PEs of each machine
+    private final int rating_;         // MIPS rating of each PE
+    private final boolean medium_;     // belongs to the medium partition
+    private final BitSet machines_;    // machine indices of this pool
+    private final BitSet[] free_;      // machines by number of free PEs
+    private final int[] numFree_;      // number of machines of each bucket
+    private int numMachines_;
+    private int numFreePE_;            // free PEs of all machines
+
+    /**
+     * Creates an empty pool
+     * @param numPE    number of PEs of each machine
+     * @param rating   MIPS rating of each PE
+     * @param medium   <tt>true</tt> if its machines belong to the medium
+     *                 partition
+     * @pre numPE > 0
+     * @pre rating > 0
+     * @post $none
+     */
+    MachinePool(int numPE, int rating, boolean medium)
+    {
+        numPE_ = numPE;
+        rating_ = rating;
+        medium_ = medium;
+        machines_ = new BitSet();
+        free_ = new BitSet[numPE + 1];
+        for (int i = 0; i <= numPE; i++) {
+            free_[i] = new BitSet();
+        }
+        numFree_ = new int[numPE + 1];
+        numMachines_ = 0;
+        numFreePE_ = 0;
+    }
+
+    /**
+     * Checks whether a machine can be put in this pool
+     * @param numPE    number of PEs of the machine
+     * @param rating   MIPS rating of its PEs
+     * @param medium   <tt>true</tt> if it belongs to the medium partition
+     * @return <tt>true</tt> if it has the same kind as this pool
+     * @pre $none
+     * @post $none
+     */
+    boolean accepts(int numPE, int rating, boolean medium) {
+        return numPE_ == numPE && rating_ == rating && medium_ == medium;
+    }
+
+    /**
+     * Adds a machine
+     * @param index     the machine index in the MachineList
+     * @param numFree   its number of free PEs
+     * @pre index >= 0
+     * @pre numFree >= 0 && numFree <= getNumPE()
+     * @post $none
+     */
+    void add(int index, int numFree)
+    {
+        if (machines_.get(index) == false)
+        {
+            machines_.set(index);
+            numMachines_++;
+            free_[numFree].set(index);
+            numFree_[numFree]++;
+            numFreePE_ += numFree;
+        }
+    }
+
+    /**
+     * Moves a machine of this pool to another bucket once some of its PEs
+     * are taken or freed
+     * @param index     the machine index in the MachineList
+     * @param oldFree   its number of free PEs before
+     * @param newFree   its number of free PEs now
+     * @pre index >= 0
+     * @pre oldFree >= 0 && oldFree <= getNumPE()
+     * @pre newFree >= 0 && newFree <= getNumPE()
+     * @post $none
+     */
+    void setFree(int index, int oldFree, int newFree)
+    {
+        free_[oldFree].clear(index);
+        numFree_[oldFree]--;
+        free_[newFree].set(index);
+        numFree_[newFree]++;
+        numFreePE_ += newFree - oldFree;
+    }
+
+    /**
+     * Gets the next idle machine
+     * @param fromIndex   the first machine index to look at
+     * @return the index of the next idle machine or <tt>-1</tt> if none
+     * @pre fromIndex >= 0
+     * @post $none
+     */
+    int nextIdle(int fromIndex) {
+        return free_[numPE_].nextSetBit(fromIndex);
+    }
+
+    /**
+     * Gets the next machine with a given number of free PEs
+     * @param numFree     the number of free PEs
+     * @param fromIndex   the first machine index to look at
+     * @return the index of the next such machine or <tt>-1</tt> if none
+     * @pre numFree >= 0 && numFree <= getNumPE()
+     * @pre fromIndex >= 0
+     * @post $none
+     */
+    int nextFree(int numFree, int fromIndex) {
+        return free_[numFree].nextSetBit(fromIndex);
+    }
+
+    /**
+     * Finds the first machine, in MachineList order, with at least a given
+     * number of free PEs
+     * @param numPE   the number of PEs needed
+     * @return the machine index or <tt>-1</tt> if none
+     * @pre numPE > 0
+     * @post $none
+     */
+    int firstFit(int numPE)
+    {
+        int first = -1;
+        for (int k = numPE; k <= numPE_; k++)
+        {
+            if (numFree_[k] == 0) {
+                continue;
+            }
+
+            int i = free_[k].nextSetBit(0);
+            if (first < 0 || i < first) {
+                first = i;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Finds a machine with the fewest free PEs that are still enough, the
+     * first one in MachineList order among those
+     * @param numPE   the number of PEs needed
+     * @return the machine index or <tt>-1</tt> if none
+     * @pre numPE > 0
+     * @post $none
+     */
+    int bestFit(int numPE)
+    {
+        for (int k = numPE; k <= numPE_; k++)
+        {
+            if (numFree_[k] > 0) {
+                return free_[k].nextSetBit(0);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the number of machines
+     * @return the number of machines
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumMachines() {
+        return numMachines_;
+    }
+
+    /**
+     * Gets the number of idle machines
+     * @return the number of machines with no busy PE
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumIdle() {
+        return numFree_[numPE_];
+    }
+
+    /**
+     * Gets the number of PEs of the idle machines
+     * @return the number of PEs
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumIdlePE() {
+        return numFree_[numPE_] * numPE_;
+    }
+
+    /**
+     * Gets the number of machines with a given number of free PEs
+     * @param numFree   the number of free PEs
+     * @return the number of machines
+     * @pre numFree >= 0 && numFree <= getNumPE()
+     * @post $result >= 0
+     */
+    int getNumMachines(int numFree) {
+        return numFree_[numFree];
+    }
+
+    /**
+     * Gets the number of free PEs of all machines, idle or not
+     * @return the number of PEs
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumFreePE() {
+        return numFreePE_;
+    }
+
+    /**
+     * Gets the number of PEs of each machine
+     * @return the number of PEs
+     * @pre $none
+     * @post $result > 0
+     */
+    int getNumPE() {
+        return numPE_;
+    }
+
+    /**
+     * Gets the MIPS rating of each PE
+     * @return the rating
+     * @pre $none
+     * @post $result > 0
+     */
+    int getRating() {
+        return rating_;
+    }
+
+    /**
+     * Checks whether the machines belong to the medium partition
+     * @return <tt>true</tt> if they do
+     * @pre $none
+     * @post $none
+     */
+    boolean isMedium() {
+        return medium_;
+    }
+}
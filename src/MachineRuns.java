@@ -0,0 +1,173 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The runs of idle machines with consecutive indices in the MachineList,
+ * which models machines that are close in the network, e.g. on the same
+ * switch. The runs are kept ordered both by their first machine and by
+ * their length, so marking a machine idle or busy, and finding the
+ * smallest run of at least a given length, take <tt>O(log n)</tt> time.
+ *
+ * @see CenapadAllocPolicy#setAllocation(int)
+ * @invariant $none
+ */
+final class MachineRuns
+{
+    private final TreeMap<Integer, Integer> runs_;   // first -> last index
+    private final TreeSet<Long> byLength_;   // (length << 32) | first index
+    private int numIdle_;
+
+    /**
+     * Creates an empty set of runs, i.e. with no idle machine
+     * @pre $none
+     * @post $none
+     */
+    MachineRuns()
+    {
+        runs_ = new TreeMap<Integer, Integer>();
+        byLength_ = new TreeSet<Long>();
+        numIdle_ = 0;
+    }
+
+    /**
+     * Marks a machine as idle, which joins the runs next to it
+     * @param index   the machine index, which is not idle yet
+     * @pre index >= 0
+     * @post $none
+     */
+    void addIdle(int index)
+    {
+        int first = index;
+        int last = index;
+
+        Map.Entry<Integer, Integer> before = runs_.floorEntry(index - 1);
+        if (before != null && before.getValue() == index - 1)
+        {
+            first = before.getKey();
+            remove(first, index - 1);
+        }
+
+        Integer after = runs_.get(index + 1);
+        if (after != null)
+        {
+            last = after;
+            remove(index + 1, last);
+        }
+
+        add(first, last);
+        numIdle_++;
+    }
+
+    /**
+     * Marks a machine as busy, which splits the run it is in
+     * @param index   the machine index, which is idle
+     * @pre index >= 0
+     * @post $none
+     */
+    void removeIdle(int index)
+    {
+        Map.Entry<Integer, Integer> run = runs_.floorEntry(index);
+        int first = run.getKey();
+        int last = run.getValue();
+        remove(first, last);
+
+        if (first < index) {
+            add(first, index - 1);
+        }
+        if (index < last) {
+            add(index + 1, last);
+        }
+        numIdle_--;
+    }
+
+    /**
+     * Finds the smallest run of at least a given length, the first one in
+     * MachineList order among those
+     * @param length   the number of machines needed
+     * @return the index of the first machine of the run or <tt>-1</tt> if
+     *         no run is long enough
+     * @pre length > 0
+     * @post $none
+     */
+    int bestFit(int length)
+    {
+        Long key = byLength_.ceiling((long) length << 32);
+        return (key == null) ? -1 : (int) (key & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the length of the longest run
+     * @return the number of machines or <tt>0</tt> if none is idle
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getLongest() {
+        return byLength_.isEmpty() ? 0 : (int) (byLength_.last() >>> 32);
+    }
+
+    /**
+     * Gets the number of runs
+     * @return the number of runs
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumRuns() {
+        return runs_.size();
+    }
+
+    /**
+     * Gets the number of idle machines
+     * @return the number of machines
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumIdle() {
+        return numIdle_;
+    }
+
+    /**
+     * Gets how fragmented the idle machines are, i.e. the share of them
+     * outside the longest run
+     * @return between <tt>0.0</tt>, if they are all in one run or none is
+     *         idle, and nearly <tt>1.0</tt>
+     * @pre $none
+     * @post $result >= 0.0 && $result < 1.0
+     */
+    double getFragmentation()
+    {
+        if (numIdle_ == 0) {
+            return 0.0;
+        }
+        return 1.0 - (double) getLongest() / numIdle_;
+    }
+
+    /**
+     * Adds a run
+     * @param first   the index of its first machine
+     * @param last    the index of its last machine
+     */
+    private void add(int first, int last)
+    {
+        runs_.put(first, last);
+        byLength_.add( ((long) (last - first + 1) << 32) | first );
+    }
+
+    /**
+     * Removes a run
+     * @param first   the index of its first machine
+     * @param last    the index of its last machine
+     */
+    private void remove(int first, int last)
+    {
+        runs_.remove(first);
+        byLength_.remove( ((long) (last - first + 1) << 32) | first );
+    }
+}
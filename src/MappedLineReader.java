@@ -0,0 +1,215 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads an uncompressed ASCII trace file one line at the time through a
+ * memory-mapped {@link FileChannel}. The bytes are never decoded into
+ * <tt>String</tt> objects. Instead, each line is returned as a
+ * {@link CharSequence} view over the bytes, which is reused for the next
+ * line. Hence, a line must be consumed, e.g. by a {@link TraceTokenizer},
+ * before reading the next one.
+ * <p>
+ * The file is mapped in windows of {@link #WINDOW_SIZE} bytes, so traces
+ * bigger than the address space or than 2 GB can be read as well. The
+ * mapped bytes are copied in bulk into a small array before being scanned,
+ * since reading a mapped buffer one byte at the time is much slower than
+ * reading an array.
+ *
+ * @invariant $none
+ */
+final class MappedLineReader
+{
+    /** Size of a mapped window, in bytes */
+    static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /** Initial size of the array that lines are scanned from, in bytes */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final FileInputStream file_;    // the trace file
+    private final FileChannel channel_;     // channel of the trace file
+    private final long size_;               // size of the file
+    private final Line line_;               // the reused line view
+    private MappedByteBuffer window_;       // the current mapped window
+    private long windowEnd_;                // file offset after the window
+    private byte[] chunk_;                  // bytes being scanned
+    private int position_;                  // start of the next line in chunk_
+    private int limit_;                     // number of valid bytes in chunk_
+
+    /**
+     * Opens a file for reading
+     * @param fileName  a file name
+     * @throws IOException  if the file can not be opened or mapped
+     * @pre fileName != null
+     * @post $none
+     */
+    MappedLineReader(String fileName) throws IOException
+    {
+        file_ = new FileInputStream(fileName);
+        channel_ = file_.getChannel();
+        size_ = channel_.size();
+        line_ = new Line();
+        window_ = null;
+        windowEnd_ = 0;
+        chunk_ = new byte[CHUNK_SIZE];
+        position_ = 0;
+        limit_ = 0;
+    }
+
+    /**
+     * Reads the next line, without its line terminator
+     * @return a view of the line, valid until the next call to this method,
+     *         or <tt>null</tt> at the end of the file
+     * @throws IOException  if the file can not be mapped
+     * @pre $none
+     * @post $none
+     */
+    CharSequence nextLine() throws IOException
+    {
+        byte[] chunk = chunk_;
+        int end = position_;
+        while (true)
+        {
+            // look for the end of this line
+            while (end < limit_ && chunk[end] != '\n') {
+                end++;
+            }
+            if (end < limit_) {
+                break;
+            }
+
+            // the line continues after this chunk, so read more bytes
+            int scanned = end - position_;
+            if (fill() == false)
+            {
+                if (position_ == limit_) {
+                    return null;    // end of file
+                }
+                break;      // the last line has no line terminator
+            }
+            chunk = chunk_;
+            end = position_ + scanned;
+        }
+
+        int start = position_;
+        position_ = (end < limit_) ? end + 1 : end;
+
+        // ignore the carriage return of a DOS line terminator
+        if (end > start && chunk[end - 1] == '\r') {
+            end--;
+        }
+        line_.set(chunk, start, end);
+        return line_;
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException  if the file can not be closed
+     * @pre $none
+     * @post $none
+     */
+    void close() throws IOException
+    {
+        window_ = null;
+        channel_.close();
+        file_.close();
+    }
+
+    /**
+     * Moves the unread bytes to the start of the chunk, then copies more
+     * bytes from the mapped file after them. The chunk grows if a line does
+     * not fit into it.
+     * @return <tt>false</tt> at the end of the file, <tt>true</tt> otherwise
+     * @throws IOException  if the file can not be mapped
+     */
+    private boolean fill() throws IOException
+    {
+        // map the next window of the file
+        if (window_ == null || window_.hasRemaining() == false)
+        {
+            if (windowEnd_ >= size_) {
+                return false;
+            }
+
+            long len = Math.min(WINDOW_SIZE, size_ - windowEnd_);
+            window_ = channel_.map(FileChannel.MapMode.READ_ONLY, windowEnd_, len);
+            windowEnd_ += len;
+        }
+
+        int unread = limit_ - position_;
+        if (unread == chunk_.length)
+        {
+            byte[] array = new byte[chunk_.length * 2];
+            System.arraycopy(chunk_, position_, array, 0, unread);
+            chunk_ = array;
+        }
+        else {
+            System.arraycopy(chunk_, position_, chunk_, 0, unread);
+        }
+
+        int len = Math.min(chunk_.length - unread, window_.remaining());
+        window_.get(chunk_, unread, len);
+        position_ = 0;
+        limit_ = unread + len;
+        return true;
+    }
+
+    /**
+     * A view of one line of ASCII bytes. A {@link TraceTokenizer} reads
+     * the bytes of this class directly instead of through {@link #charAt}.
+     */
+    static final class Line implements CharSequence
+    {
+        private byte[] bytes_;  // the array containing the line
+        private int start_;     // offset of the line in the array
+        private int end_;       // offset after the line in the array
+
+        void set(byte[] bytes, int start, int end)
+        {
+            bytes_ = bytes;
+            start_ = start;
+            end_ = end;
+        }
+
+        byte[] array() {
+            return bytes_;
+        }
+
+        int start() {
+            return start_;
+        }
+
+        int end() {
+            return end_;
+        }
+
+        public int length() {
+            return end_ - start_;
+        }
+
+        public char charAt(int index) {
+            return (char) (bytes_[start_ + index] & 0xFF);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        public String toString()
+        {
+            StringBuilder str = new StringBuilder(end_ - start_);
+            for (int i = start_; i < end_; i++) {
+                str.append( (char) (bytes_[i] & 0xFF) );
+            }
+            return str.toString();
+        }
+    }
+}
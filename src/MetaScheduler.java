@@ -0,0 +1,500 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import eduni.simjava.Sim_event;
+import eduni.simjava.Sim_system;
+
+import gridsim.GridSim;
+import gridsim.GridSimTags;
+import gridsim.Gridlet;
+import gridsim.IO_data;
+import gridsim.Machine;
+import gridsim.MachineList;
+
+/**
+ * A front end that takes the Gridlets of one or more {@link MyWorkload}
+ * entities and sends each one to one of several resources, chosen by a
+ * {@link RoutingPolicy}. The workloads are given the name of this entity
+ * instead of a resource name. A Gridlet keeps its owner, so it goes back
+ * from the resource to its workload directly.
+ * <p>
+ * The policy does not ask the resources for their state. Instead, this
+ * entity keeps a {@link ResourceState} for each resource, which is updated
+ * when a Gridlet is routed to it and when it finishes there, as the
+ * resource gives its finished Gridlets to the state (see
+ * {@link CenapadAllocPolicy#setConsumer(GridletConsumer)}):
+ * <ul>
+ *      <li> the number of machines used by the Gridlets routed to the
+ *           resource and not finished yet, either running or queued
+ *      <li> a profile of the free machines over time, where each Gridlet
+ *           gets the earliest reservation for its run time, as done by
+ *           {@link ConservativeBackfillAllocPolicy}
+ * </ul>
+ * This is an estimate of the real state, since the resource may run the
+ * Gridlets in another order. Routing a Gridlet takes <tt>O(n)</tt> time for
+ * <tt>n</tt> resources, plus a profile search for each resource with
+ * {@link ShortestWait}.
+ * <p>
+ * <b>NOTE:</b> a Gridlet goes through one more network transfer on its
+ * way to the resource.
+ * The Gridlets a workload submits at once (see
+ * {@link MyWorkload#setBatchSubmit(boolean)}) are sent at once to each
+ * resource, whose allocation policy must then be a
+ * {@link CenapadAllocPolicy}.
+ *
+ * @see GridExperiment
+ * @invariant $none
+ */
+class MetaScheduler extends GridSim
+{
+    private final RoutingPolicy policy_;
+    private final ArrayList<ResourceState> resources_;
+    private ResourceState[] states_;        // resources_ as an array
+    private ArrayList<ArrayList<Gridlet>> pending_;   // by resource index
+    private int numUnroutable_;     // Gridlets no resource can run
+
+    /**
+     * Creates a new MetaScheduler entity
+     * @param name     this entity name
+     * @param policy   chooses the resource of each Gridlet
+     * @throws Exception  This happens when creating this entity before
+     *                   initializing GridSim package or this entity name is
+     *                   <tt>null</tt> or empty
+     * @pre name != null
+     * @pre policy != null
+     * @post $none
+     */
+    MetaScheduler(String name, RoutingPolicy policy) throws Exception
+    {
+        super(name, GridSimTags.DEFAULT_BAUD_RATE);
+        policy_ = policy;
+        resources_ = new ArrayList<ResourceState>();
+        states_ = null;
+        pending_ = null;
+        numUnroutable_ = 0;
+    }
+
+    /**
+     * Adds a resource Gridlets can be sent to, whose allocation policy
+     * then gives its finished Gridlets to this entity. This method should
+     * be called before the start of the simulation.
+     * @param resName     the resource name, which must already exist
+     * @param machines    the Machines of the resource, of which only the
+     *                    number of PEs and the ratings are read
+     * @param numMedium   number of machines of the medium partition, i.e.
+     *                    the first ones in MachineList order, see
+     *                    {@link CenapadAllocPolicy#setMediumPartitionSize(int)}
+     * @param policy      the allocation policy of the resource
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre resName != null
+     * @pre machines != null
+     * @pre numMedium >= 0
+     * @pre policy != null
+     * @post $none
+     */
+    boolean addResource(String resName, MachineList machines, int numMedium,
+                        CenapadAllocPolicy policy)
+    {
+        int id = GridSim.getEntityId(resName);
+        if (id < 0 || machines == null || machines.isEmpty() == true
+                || numMedium < 0 || policy == null) {
+            return false;
+        }
+
+        ResourceState state = new ResourceState(resName, id, machines,
+                Math.min(numMedium, machines.size()));
+        policy.setConsumer(state);
+        resources_.add(state);
+        return true;
+    }
+
+    /**
+     * Gets the state of each resource, in the order they were added
+     * @return the resources
+     * @pre $none
+     * @post $result != null
+     */
+    List<ResourceState> getResources() {
+        return resources_;
+    }
+
+    /**
+     * Gets the number of Gridlets that no resource has enough machines for.
+     * They are sent to the first resource, where they are never run.
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumUnroutable() {
+        return numUnroutable_;
+    }
+
+    /**
+     * Routes the Gridlets until the simulation ends
+     * @pre $none
+     * @post $none
+     */
+    public void body()
+    {
+        states_ = resources_.toArray(new ResourceState[resources_.size()]);
+        pending_ = new ArrayList<ArrayList<Gridlet>>(states_.length);
+        for (int i = 0; i < states_.length; i++) {
+            pending_.add(new ArrayList<Gridlet>());
+        }
+
+        Sim_event ev = new Sim_event();
+        while ( Sim_system.running() )
+        {
+            super.sim_get_next(ev);
+
+            // the event is not refilled once the simulation has stopped
+            int tag = ev.get_tag();
+            if (tag == GridSimTags.END_OF_SIMULATION
+                    || Sim_system.running() == false) {
+                break;
+            }
+
+            if (tag == GridSimTags.GRIDLET_SUBMIT)
+            {
+                routeGridlet( (Gridlet) ev.get_data() );
+                submitPending(false);
+            }
+            else if (tag == CenapadAllocPolicy.GRIDLET_SUBMIT_BATCH)
+            {
+                @SuppressWarnings("unchecked")
+                List<Gridlet> list = (List<Gridlet>) ev.get_data();
+                for (Gridlet gl : list) {
+                    routeGridlet(gl);
+                }
+                submitPending(true);
+            }
+        }
+
+        terminateIOEntities();
+    }
+
+    /**
+     * Chooses the resource of a Gridlet and reserves its machines there
+     * @param gl   a Gridlet that has just been submitted
+     * @pre gl != null
+     * @post $none
+     */
+    private void routeGridlet(Gridlet gl)
+    {
+        int index = policy_.route(gl, states_);
+        if (index < 0)
+        {
+            index = 0;
+            numUnroutable_++;
+        }
+
+        states_[index].reserve(gl);
+        pending_.get(index).add(gl);
+    }
+
+    /**
+     * Sends the routed Gridlets to their resources
+     * @param batch   <tt>true</tt> to send the Gridlets of one resource in
+     *                one event if there are more than one
+     * @pre $none
+     * @post $none
+     */
+    private void submitPending(boolean batch)
+    {
+        for (int i = 0; i < states_.length; i++)
+        {
+            ArrayList<Gridlet> list = pending_.get(i);
+            int resID = states_[i].getId();
+            if (batch == true && list.size() > 1)
+            {
+                long size = 0;
+                for (Gridlet gl : list) {
+                    size += gl.getGridletFileSize();
+                }
+                super.send(super.output, GridSimTags.SCHEDULE_NOW,
+                        CenapadAllocPolicy.GRIDLET_SUBMIT_BATCH,
+                        new IO_data(new ArrayList<Gridlet>(list), size, resID));
+            }
+            else
+            {
+                for (Gridlet gl : list) {
+                    super.send(super.output, GridSimTags.SCHEDULE_NOW,
+                            GridSimTags.GRIDLET_SUBMIT,
+                            new IO_data(gl, gl.getGridletFileSize(), resID));
+                }
+            }
+            list.clear();
+        }
+    }
+
+    /**
+     * The state of a resource as seen by the MetaScheduler, which is only
+     * updated by the Gridlets routed to it and finishing there.
+     */
+    static final class ResourceState implements GridletConsumer
+    {
+        private final String name_;
+        private final int id_;
+        private final int numMachines_;
+        private final int numMedium_;
+        private final int pesPerMachine_;   // PEs of the smallest machine
+        private final int rating_;          // MIPS rating of the slowest PE
+        private final AvailabilityProfile profile_;
+        private final int[] split_;
+        // of the Gridlets routed here and not finished yet
+        private final Map<Gridlet, AvailabilityProfile.Reservation>
+                reservations_;
+        private int usedMachines_;          // by the Gridlets not finished
+        private int numRouted_;
+
+        /**
+         * Creates the state of a resource with no Gridlet
+         * @param name        the resource name
+         * @param id          the resource ID
+         * @param machines    the Machines of the resource
+         * @param numMedium   number of machines of the medium partition
+         */
+        private ResourceState(String name, int id, MachineList machines,
+                              int numMedium)
+        {
+            int pes = Integer.MAX_VALUE;
+            int rating = Integer.MAX_VALUE;
+            for (Machine m : machines)
+            {
+                pes = Math.min(pes, m.getNumPE());
+                rating = Math.min(rating, m.getMIPSRating() / m.getNumPE());
+            }
+
+            name_ = name;
+            id_ = id;
+            numMachines_ = machines.size();
+            numMedium_ = numMedium;
+            pesPerMachine_ = pes;
+            rating_ = rating;
+            profile_ = new AvailabilityProfile(numMachines_ - numMedium,
+                    numMedium);
+            split_ = new int[2];
+            reservations_ = new IdentityHashMap<Gridlet,
+                    AvailabilityProfile.Reservation>();
+            usedMachines_ = 0;
+            numRouted_ = 0;
+        }
+
+        /**
+         * Gets the resource name
+         * @return the name
+         * @pre $none
+         * @post $result != null
+         */
+        String getName() {
+            return name_;
+        }
+
+        /**
+         * Gets the resource ID
+         * @return the entity ID
+         * @pre $none
+         * @post $result >= 0
+         */
+        int getId() {
+            return id_;
+        }
+
+        /**
+         * Gets the number of Gridlets routed to this resource so far
+         * @return the number of Gridlets
+         * @pre $none
+         * @post $result >= 0
+         */
+        int getNumRouted() {
+            return numRouted_;
+        }
+
+        /**
+         * Gets the machines used by the Gridlets routed to this resource
+         * and not finished yet, over all its machines. It is more than
+         * <tt>1.0</tt> if some of them are queued.
+         * @return the load
+         * @pre $none
+         * @post $result >= 0.0
+         */
+        double getLoad() {
+            return (double) usedMachines_ / numMachines_;
+        }
+
+        /**
+         * Checks whether this resource has enough machines for a Gridlet
+         * @param gl   a Gridlet
+         * @return <tt>true</tt> if it can run the Gridlet
+         * @pre gl != null
+         * @post $none
+         */
+        boolean canRun(Gridlet gl)
+        {
+            int capacity = numMachines_;
+            if (isMediumOnly(gl) == true) {
+                capacity = numMedium_;
+            }
+            return getRequiredMachines(gl) <= capacity;
+        }
+
+        /**
+         * Gets the time a Gridlet would wait on this resource, from the
+         * earliest reservation it can have in the profile
+         * @param gl   a Gridlet
+         * @return the wait time in seconds, or
+         *         <tt>Double.POSITIVE_INFINITY</tt> if it can't run here
+         * @pre gl != null
+         * @post $result >= 0.0
+         */
+        double getExpectedWait(Gridlet gl)
+        {
+            double now = GridSim.clock();
+            return findStart(gl, now) - now;
+        }
+
+        /**
+         * Releases what is left of the reservation of a Gridlet that has
+         * finished on this resource
+         * @param gl   a Gridlet
+         * @pre gl != null
+         * @post $none
+         */
+        public void gridletReturned(Gridlet gl)
+        {
+            AvailabilityProfile.Reservation r = reservations_.remove(gl);
+            if (r != null)  // else not routed by the MetaScheduler
+            {
+                usedMachines_ -= getRequiredMachines(gl);
+                profile_.release(r, GridSim.clock());
+            }
+        }
+
+        /**
+         * Gives a Gridlet the earliest reservation in the profile
+         * @param gl   a Gridlet routed to this resource
+         */
+        private void reserve(Gridlet gl)
+        {
+            double now = GridSim.clock();
+            profile_.removeBefore(now);
+            reservations_.put(gl, profile_.reserve(now, getRunTime(gl),
+                    getRequiredMachines(gl), isMediumOnly(gl)));
+            usedMachines_ += getRequiredMachines(gl);
+            numRouted_++;
+        }
+
+        /**
+         * Finds the earliest start time of a Gridlet in the profile, and
+         * drops the past breakpoints of the profile
+         * @param gl    a Gridlet
+         * @param now   the current time
+         * @return the start time or <tt>Double.POSITIVE_INFINITY</tt>
+         */
+        private double findStart(Gridlet gl, double now)
+        {
+            profile_.removeBefore(now);
+            return profile_.findStart(now, getRunTime(gl),
+                    getRequiredMachines(gl), isMediumOnly(gl), split_);
+        }
+
+        /**
+         * Gets the number of whole machines a Gridlet needs
+         * @param gl    a Gridlet
+         * @return the number of machines
+         */
+        private int getRequiredMachines(Gridlet gl) {
+            return CenapadAllocPolicy.getRequiredMachines(gl.getNumPE(),
+                    pesPerMachine_);
+        }
+
+        /**
+         * Gets the run time of a Gridlet on the slowest PEs of this
+         * resource, as estimated by the resource
+         * @param gl    a Gridlet
+         * @return the run time in seconds
+         */
+        private int getRunTime(Gridlet gl) {
+            return CenapadAllocPolicy.getEstimatedRunTime(
+                    gl.getGridletLength(), rating_);
+        }
+
+        /**
+         * Checks whether a Gridlet can only use the medium partition
+         * @param gl    a Gridlet
+         * @return <tt>true</tt> if it is a medium Gridlet
+         */
+        private static boolean isMediumOnly(Gridlet gl) {
+            return gl.getClassType() == CenapadAllocPolicy.PartitionMedium;
+        }
+    }
+
+    /**
+     * Sends a Gridlet to the resource with the lowest load, i.e. the
+     * fewest machines used by the Gridlets routed to it and not finished,
+     * relative to its size. Ties go to the first resource.
+     */
+    static final class LeastLoaded implements RoutingPolicy
+    {
+        public int route(Gridlet gl, ResourceState[] resources)
+        {
+            int best = -1;
+            double bestLoad = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < resources.length; i++)
+            {
+                if (resources[i].canRun(gl) == false) {
+                    continue;
+                }
+
+                double load = resources[i].getLoad();
+                if (load < bestLoad)
+                {
+                    best = i;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Sends a Gridlet to the resource where it would start first, from the
+     * reservations of the Gridlets routed to each resource. Ties, e.g.
+     * several resources where it can start now, go to the resource with the
+     * lowest load.
+     */
+    static final class ShortestWait implements RoutingPolicy
+    {
+        public int route(Gridlet gl, ResourceState[] resources)
+        {
+            int best = -1;
+            double bestWait = Double.POSITIVE_INFINITY;
+            double bestLoad = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < resources.length; i++)
+            {
+                if (resources[i].canRun(gl) == false) {
+                    continue;
+                }
+
+                double wait = resources[i].getExpectedWait(gl);
+                double load = resources[i].getLoad();
+                if (wait < bestWait || (wait == bestWait && load < bestLoad))
+                {
+                    best = i;
+                    bestWait = wait;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        }
+    }
+}
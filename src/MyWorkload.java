@@ -7,16 +7,9 @@
  * Copyright (c) 2004, The University of Melbourne, Australia
  */
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import eduni.simjava.Sim_event;
 import eduni.simjava.Sim_system;
@@ -41,7 +34,8 @@ import gridsim.net.SimpleLink;
  * <b>NOTE:</b>
  * <ul>
  *      <li> This class can only take <tt>one</tt> trace file of the following
- *           format: <i>ASCII text, zip, gz.</i>
+ *           format: <i>ASCII text, zip, gz</i> or a binary trace created by
+ *           {@link TraceConverter}.
  *      <li> This class can be classified as <b>one grid user entity</b>.
  *           Hence, you need to incorporate this entity into <tt>numUser</tt>
  *           during {@link gridsim.GridSim#init(int, Calendar, boolean)}
@@ -50,7 +44,9 @@ import gridsim.net.SimpleLink;
  *           instances of this class <tt>each with a unique entity name</tt>.
  *      <li> If size of the trace file is huge or contains lots of traces
  *           please increase the JVM heap size accordingly by using
- *           <tt>java -Xmx</tt> option when running the simulation.
+ *           <tt>java -Xmx</tt> option when running the simulation, or
+ *           only schedule a window of Gridlets ahead of the simulation clock
+ *           by using {@link #setLookahead(int)}.
  *      <li> If you are running an experiment using the network extension,
  *           i.e. the gridsim.net package, then you need to use
  *           {@link #Workload(String, double, double, int, String, String, int)}
@@ -75,7 +71,7 @@ import gridsim.net.SimpleLink;
  * running the simulation:
  * <ul>
  *      <li> {@link #setComment(String)}
- *      <li> {@link #setField(int, int, int, int, int)}
+ *      <li> {@link #setField(int, int, int, int, int, int)}
  * </ul>
  *
  * @see gridsim.GridSim#init(int, Calendar, boolean)
@@ -92,20 +88,29 @@ public class MyWorkload extends GridSim
     private int gridletID_;     // gridletID
     private int size_;          // job size for sending it through a network
     private ArrayList<Gridlet> list_;    // a list for getting all the Gridlets
+    private ArrayList<GridletConsumer> consumers_;  // get each Gridlet
+    private boolean retainGridlets_;     // false if Gridlets are dropped
+    private long numEvents_;             // events received while collecting
 
     // constant
-    private int JOB_NUM;        // job number
-    private int SUBMIT_TIME;    // submit time of a Gridlet
-    private int RUN_TIME;       // running time of a Gridlet
-    private int NUM_PROC;       // number of processors needed for a Gridlet
-    private int REQ_NUM_PROC;   // required number of processors
-    private int REQ_RUN_TIME;   // required running time
-    private int MAX_FIELD;      // max number of field in the trace file
-    private String COMMENT;     // a string that denotes the start of a comment
-    private static final int IRRELEVANT = -1;  // irrelevant number
     private static final int INTERVAL = 10;    // number of intervals
-    private String[] fieldArray_;       // a temp array storing all the fields
-    private int CLASSTYPE;
+
+    // trace cursor
+    private TextTraceSource text_;      // the trace, if it is a text file
+    private SlurmTraceSource slurm_;    // or if it is the output of sacct
+    private TraceSource source_;        // the trace being read
+    private TraceBatch batch_;          // the jobs read at the time
+    private int lookahead_;             // max. Gridlets submitted per window
+    private boolean endOfTrace_;        // true if the whole trace was read
+    private long lastSubmitTime_;       // submit time of the last Gridlet
+    private int lateGridlets_;          // Gridlets submitted after their time
+    private SimulationSnapshot snapshot_;   // the snapshot to resume from
+    private boolean batchSubmit_;       // true if jobs at once go in one event
+    private ArrayList<Gridlet> pending_;    // Gridlets of the same submit time
+    private long pendingTime_;          // their submit time
+    private double pendingDelay_;       // and their delay
+    private static final int TRACE_REFILL = 90001;  // reads the next window
+    private static final int BATCH_SIZE = 4096;     // max. jobs read at once
 
 
     /**
@@ -158,6 +163,57 @@ public class MyWorkload extends GridSim
         init(fileName, resourceName, rating);
     }
 
+    /**
+     * Create a new Workload object <b>without</b> using the network extension,
+     * which reads its jobs from a given trace source instead of finding the
+     * format from a file. Hence, {@link #setField(int, int, int, int, int, int)},
+     * {@link #setComment(String)}, {@link #setPartition(String, int)} and
+     * {@link #setMinRunTime(int)} are not used; the source must be set up
+     * before.
+     *
+     * @param name      this entity name
+     * @param source    the trace source, not opened yet
+     * @param resourceName  the resource name
+     * @param rating    the resource's PE rating
+     * @throws Exception  This happens when creating this entity before
+     *                   initializing GridSim package or this entity name is
+     *                   <tt>null</tt> or empty
+     * @throws ParameterException   This happens for the following conditions:
+     *      <ul>
+     *          <li>the entity name is null or empty
+     *          <li>the trace source is null
+     *          <li>the resource entity name is null or empty
+     *          <li>the resource PE rating <= 0
+     *      </ul>
+     * @pre name != null
+     * @pre source != null
+     * @pre resourceName != null
+     * @pre rating > 0
+     * @post $none
+     * @see TraceSource
+     */
+    MyWorkload(String name, TraceSource source, String resourceName,
+               int rating) throws ParameterException, Exception
+    {
+        super(name, GridSimTags.DEFAULT_BAUD_RATE);
+
+        // check the input parameters first
+        String msg = name + "(): Error - ";
+        if (source == null) {
+            throw new ParameterException(msg + "invalid trace source.");
+        }
+        else if (resourceName == null || resourceName.length() == 0) {
+            throw new ParameterException(msg + "invalid resource name.");
+        }
+        else if (rating <= 0) {
+            throw new ParameterException(msg+"resource PE rating must be > 0.");
+        }
+
+        System.out.println(name + ": Creating a workload object ...");
+        init(null, resourceName, rating);
+        source_ = source;
+    }
+
     /**
      * Create a new Workload object <b>with</b> the network extension.
      * This means this entity directly sends Gridlets to a destinated resource
@@ -274,7 +330,8 @@ public class MyWorkload extends GridSim
 
     /**
      * Initialises all the attributes
-     * @param   fileName    trace file name
+     * @param   fileName    trace file name, or <tt>null</tt> if the trace
+     *                      source is given
      * @param   resourceName    resource entity name
      * @param   rating      resource PE rating
      * @pre $none
@@ -288,20 +345,29 @@ public class MyWorkload extends GridSim
         rating_ = rating;
         gridletID_ = 1;   // starts at 1 to make it the same as in a trace file
         list_ = null;
+        consumers_ = new ArrayList<GridletConsumer>();
+        retainGridlets_ = true;
+        numEvents_ = 0;
         size_ = Link.DEFAULT_MTU;
 
-        // if using Standard MyWorkload Format -- don't forget to substract by 1
-        // since an array starts at 0, but the field in a trace starts at 1
-        JOB_NUM = 1 - 1;
-        SUBMIT_TIME = 2 - 1;
-        RUN_TIME = 4 - 1;
-        NUM_PROC = 5 - 1;
-        REQ_NUM_PROC = 8 - 1;
-        REQ_RUN_TIME = 9 - 1;
-
-        COMMENT = ";";      // semicolon means the start of a comment
-        MAX_FIELD = 18;     // standard workload format has 18 fields
-        fieldArray_ = null;
+        // by default, follows the Standard Workload Format
+        text_ = null;
+        slurm_ = null;
+        if (fileName != null)
+        {
+            text_ = TextTraceSource.createSwf(super.get_name(), fileName);
+            slurm_ = new SlurmTraceSource(super.get_name(), fileName);
+        }
+        source_ = null;
+        batch_ = null;
+
+        lookahead_ = 0;     // by default, submits the whole trace at once
+        endOfTrace_ = false;
+        lastSubmitTime_ = 0;
+        lateGridlets_ = 0;
+        snapshot_ = null;
+        batchSubmit_ = false;   // by default, one event per job
+        pending_ = new ArrayList<Gridlet>();
     }
 
     /**
@@ -321,6 +387,112 @@ public class MyWorkload extends GridSim
         return true;
     }
 
+    /**
+     * Limits the number of Gridlets that are scheduled ahead of the
+     * simulation clock. Instead of submitting the whole trace when the
+     * simulation starts, this entity keeps a cursor into the trace file and
+     * reads the next <tt>numGridlets</tt> jobs once the first Gridlet of the
+     * previous window is due. Hence, the number of pending submissions stays
+     * bounded regardless of the trace length.
+     * <p>
+     * <b>NOTE:</b> the trace must be sorted by submit time. A job that
+     * is read after its submit time has passed is submitted straight away.
+     *
+     * @param numGridlets  max. number of Gridlets read per window, or
+     *                     <tt>0</tt> to submit the whole trace at once
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre numGridlets >= 0
+     * @post $none
+     */
+    public boolean setLookahead(int numGridlets)
+    {
+        if (numGridlets < 0) {
+            return false;
+        }
+
+        lookahead_ = numGridlets;
+        return true;
+    }
+
+    /**
+     * Sends the jobs with the same submit time to the resource in one event
+     * instead of one event each, so the resource updates its Gridlets once
+     * for all of them. The jobs are then received at the same time, while
+     * they would be one network transfer apart otherwise. Jobs of two
+     * windows (see {@link #setLookahead(int)}) are sent in two events.
+     * <p>
+     * <b>NOTE:</b> the allocation policy of the resource must be a
+     * {@link CenapadAllocPolicy}, which knows
+     * {@link CenapadAllocPolicy#GRIDLET_SUBMIT_BATCH}.
+     * @param batchSubmit  <tt>true</tt> to send jobs at once in one event
+     * @pre $none
+     * @post $none
+     */
+    void setBatchSubmit(boolean batchSubmit)
+    {
+        batchSubmit_ = batchSubmit;
+    }
+
+    /**
+     * Resumes from a snapshot instead of from the start of the trace. The
+     * jobs the resource had received are skipped by ID, and the Gridlets of
+     * the snapshot come back to this entity as if it had submitted them.
+     * The other jobs are not submitted before the time of the snapshot. The
+     * resource must resume from the same snapshot, and this entity must
+     * have the name it had when the snapshot was taken.
+     * @param snapshot  the snapshot
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre snapshot != null
+     * @post $none
+     * @see CenapadAllocPolicy#resume(SimulationSnapshot)
+     */
+    boolean resume(SimulationSnapshot snapshot)
+    {
+        // a snapshot with no Gridlet left does not know its workload
+        if (snapshot == null || (snapshot.getEntries().isEmpty() == false
+                && snapshot.getUserName().equals(super.get_name()) == false)) {
+            return false;
+        }
+
+        snapshot_ = snapshot;
+        return true;
+    }
+
+    /**
+     * Adds an object that gets each Gridlet as soon as it comes back, e.g.
+     * {@link GridletStatistics}. The consumers are called in the order
+     * they were added.
+     * @param consumer  a consumer
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre consumer != null
+     * @post $none
+     */
+    boolean addConsumer(GridletConsumer consumer)
+    {
+        if (consumer == null) {
+            return false;
+        }
+
+        consumers_.add(consumer);
+        return true;
+    }
+
+    /**
+     * Sets whether the Gridlets that come back are kept in the list given
+     * by {@link #getGridletList()}. If they are not, each Gridlet is only
+     * given to the consumers and then dropped, so the memory used depends
+     * on the Gridlets in flight instead of the whole trace. This needs
+     * {@link #setLookahead(int)}, otherwise every Gridlet is created when
+     * the simulation starts anyway.
+     * @param retain  <tt>true</tt> to keep the Gridlets (by default),
+     *                <tt>false</tt> to drop them
+     * @pre $none
+     * @post $none
+     */
+    public void setRetainGridlets(boolean retain) {
+        retainGridlets_ = retain;
+    }
+
     /**
      * Identifies the start of a comment line. Hence, a line that starts
      * with a given comment will be ignored.
@@ -332,13 +504,64 @@ public class MyWorkload extends GridSim
      */
     public boolean setComment(String comment)
     {
-        boolean success = false;
-        if (comment != null && comment.length() > 0)
-        {
-            COMMENT = comment;
-            success = true;
+        if (text_ == null) {
+            return false;   // the trace source was given
         }
-        return success;
+        return text_.setComment(comment);
+    }
+
+    /**
+     * Maps a partition of a Slurm accounting log to a class type, see
+     * {@link SlurmTraceSource#setPartition(String, int)}. It has no effect
+     * on other traces.
+     * @param partition  the partition name, as in sacct
+     * @param classType  its class type
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre partition != null
+     * @pre classType >= 0
+     * @post $none
+     */
+    public boolean setPartition(String partition, int classType)
+    {
+        if (slurm_ == null) {
+            return false;   // the trace source was given
+        }
+        return slurm_.setPartition(partition, classType);
+    }
+
+    /**
+     * Sets the min. run time of the jobs read from a Slurm accounting log,
+     * see {@link SlurmTraceSource#setMinRunTime(int)}. It has no effect on
+     * other traces.
+     * @param seconds  the min. run time, or <tt>0</tt> to keep every job
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre seconds >= 0
+     * @post $none
+     */
+    public boolean setMinRunTime(int seconds)
+    {
+        if (slurm_ == null) {
+            return false;   // the trace source was given
+        }
+        return slurm_.setMinRunTime(seconds);
+    }
+
+    /**
+     * Sets the number of threads that parse a gz or zip trace, see
+     * {@link TextTraceSource#setThreads(int)}. It has no effect on other
+     * traces.
+     * @param numThreads  the number of threads, or <tt>1</tt> to read the
+     *                    trace in the thread of the simulation
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre numThreads > 0
+     * @post $none
+     */
+    public boolean setParseThreads(int numThreads)
+    {
+        if (text_ == null) {
+            return false;   // the trace source was given
+        }
+        return text_.setThreads(numThreads);
     }
 
     /**
@@ -348,7 +571,8 @@ public class MyWorkload extends GridSim
      * By default, this class follows the standard workload format as specified
      * in <a href="http://www.cs.huji.ac.il/labs/parallel/workload/">
      * http://www.cs.huji.ac.il/labs/parallel/workload/</a> <br>
-     * However, you can use other format by calling this method.
+     * However, you can use other format by calling this method. A binary
+     * trace already contains parsed jobs, so this method has no effect on it.
      * <p>
      * The parameters must be a positive integer number starting from 1.
      * A special case is where <tt>jobNum == -1</tt>, meaning the job or
@@ -360,90 +584,30 @@ public class MyWorkload extends GridSim
      * @param runTime   field/column number for locating the job run time
      * @param numProc   field/column number for locating the number of PEs
      *                  required to run a job
+     * @param classType field/column number for locating the job class type,
+     *                  or <tt>0</tt> if the trace has none and every job is
+     *                  of class type {@link TextTraceSource#DEFAULT_CLASS_TYPE}
      * @return <tt>true</tt> if successful, <tt>false</tt> otherwise
      * @pre maxField > 0
      * @pre submitTime > 0
      * @pre runTime > 0
      * @pre numProc > 0
+     * @pre classType >= 0
      * @post $none
      */
     public boolean setField(int maxField, int jobNum, int submitTime,
                             int runTime, int numProc, int classType)
     {
-        // need to substract by 1 since array starts at 0. Need to convert,
-        // position in a field into the index of the array
-        if (jobNum > 0) {
-            JOB_NUM = jobNum - 1;
-        }
-        else if (jobNum == 0)
-        {
-            System.out.println(super.get_name() +
-                    ".setField(): Invalid job number field.");
-            return false;
-        }
-        else {
-            JOB_NUM = -1;
+        if (text_ == null) {
+            return false;   // the trace source was given
         }
-
-        // get the max. number of field
-        if (maxField > 0) {
-            MAX_FIELD = maxField;
-        }
-        else
-        {
-            System.out.println(super.get_name() +
-                    ".setField(): Invalid max. number of field.");
-            return false;
-        }
-
-        // get the submit time field
-        if (submitTime > 0) {
-            SUBMIT_TIME = submitTime - 1;
-        }
-        else
-        {
-            System.out.println(super.get_name() +
-                    ".setField(): Invalid submit time field.");
-            return false;
-        }
-
-        // get the run time field
-        if (runTime > 0) {
-            REQ_RUN_TIME = runTime - 1;
-        }
-        else
-        {
-            System.out.println(super.get_name() +
-                    ".setField(): Invalid run time field.");
-            return false;
-        }
-
-        // get the number of processors field
-        if (numProc > 0) {
-            REQ_NUM_PROC = numProc - 1;
-        }
-        else
-        {
-            System.out.println(super.get_name() +
-                    ".setField(): Invalid number of processors field.");
-            return false;
-        }
-
-        // get the class type field     ~RenatoCJN
-        if (classType > 0) {
-            CLASSTYPE = classType - 1;
-        } else {
-           System.out.println(super.get_name() +
-                    ".setField(): Invalid class type field.");
-            return false; 
-        }
-        
-        return true;
+        return text_.setField(maxField, jobNum, submitTime, runTime,
+                numProc, classType);
     }
 
     /**
      * Gets a list of completed Gridlets
-     * @return a list of Gridlets
+     * @return a list of Gridlets, which is empty if they are not retained
      * @pre $none
      * @post $none
      */
@@ -451,6 +615,17 @@ public class MyWorkload extends GridSim
         return list_;
     }
 
+    /**
+     * Gets the number of events this entity received while collecting the
+     * Gridlets, i.e. returned Gridlets, pings and trace refills
+     * @return the number of events
+     * @pre $none
+     * @post $result >= 0
+     */
+    public long getNumEvents() {
+        return numEvents_;
+    }
+
     /**
      * Prints the Gridlet objects
      * @param history   <tt>true</tt> means printing each Gridlet's history,
@@ -515,9 +690,6 @@ public class MyWorkload extends GridSim
         System.out.println();
         System.out.println(super.get_name() + ".body() :%%%% Start ...");
 
-        // create a temp array
-        fieldArray_ = new String[MAX_FIELD];
-
         // get the resource id
         if (resID_ < 0)
         {
@@ -526,22 +698,13 @@ public class MyWorkload extends GridSim
             return;
         }
 
-        boolean success = false;
-
-        // read the gz file
-        if (fileName_.endsWith(".gz")) {
-            success = readGZIPFile(fileName_);
-        }
-        // read the zip file
-        else if (fileName_.endsWith(".zip")) {
-            success = readZipFile(fileName_);
-        }
-        // read from uncompressed file as well
-        else {
-            success = readFile(fileName_);
+        // submits the whole trace or only the first window of it
+        boolean success = openTrace(fileName_);
+        if (success == true) {
+            success = submitGridlets();
         }
 
-        // if all the gridlets have been submitted
+        // if the gridlets have been submitted
         if (success == true) {
             collectGridlet();
         }
@@ -551,6 +714,13 @@ public class MyWorkload extends GridSim
                     ".body(): Error - unable to parse from a file.");
         }
 
+        if (lateGridlets_ > 0)
+        {
+            System.out.println(super.get_name() + ": Warning - "
+                    + lateGridlets_ + " Gridlets were submitted late since "
+                    + "the trace is not sorted by submit time.");
+        }
+
         // shut down all the entities, including GridStatistics entity since
         // we used it to record certain events.
         shutdownGridStatisticsEntity();
@@ -563,24 +733,40 @@ public class MyWorkload extends GridSim
     //////////////////////// PRIVATE METHODS ///////////////////////
 
     /**
-     * Collects Gridlets sent and stores them into a list.
+     * Collects Gridlets sent, gives them to the consumers and stores them
+     * into a list unless they are dropped.
      * @pre $none
      * @post $none
      */
     private void collectGridlet()
     {
         System.out.println(super.get_name() + ": Collecting Gridlets ...");
-        list_ = new ArrayList(gridletID_ + 1);
+        if (retainGridlets_ == false) {
+            list_ = new ArrayList<Gridlet>(0);
+        }
+        else if (lookahead_ == 0) {
+            list_ = new ArrayList<Gridlet>(gridletID_ + 1);
+        }
+        else {
+            list_ = new ArrayList<Gridlet>();
+        }
 
         Object data = null;
         Gridlet gl = null;
 
         int counter = 1;    // starts at 1, since gridletID_ starts at 1 too
+        if (snapshot_ != null)
+        {
+            // the skipped jobs that were not finished come back too
+            counter += snapshot_.getNumSubmitted()
+                    - snapshot_.getEntries().size();
+        }
         Sim_event ev = new Sim_event();
         while ( Sim_system.running() )
         {
             super.sim_get_next(ev);     // get the next available event
             data = ev.get_data();       // get the event's data
+            numEvents_++;
 
             // handle ping request
             if (ev.get_tag() == GridSimTags.INFOPKT_SUBMIT)
@@ -589,16 +775,26 @@ public class MyWorkload extends GridSim
                 continue;
             }
 
+            // read the next window of the trace
+            if (ev.get_tag() == TRACE_REFILL) {
+                submitGridlets();
+            }
+
             // get the Gridlet data
-            if (data != null && data instanceof Gridlet)
+            else if (data != null && data instanceof Gridlet)
             {
                 gl = (Gridlet) data;
-                list_.add(gl);
+                for (int i = 0; i < consumers_.size(); i++) {
+                    consumers_.get(i).gridletReturned(gl);
+                }
+                if (retainGridlets_ == true) {
+                    list_.add(gl);
+                }
                 counter++;
             }
 
             // if all the Gridlets have been collected
-            if (counter == gridletID_) {
+            if (endOfTrace_ == true && counter == gridletID_) {
                 break;
             }
         }
@@ -622,129 +818,6 @@ public class MyWorkload extends GridSim
                    new IO_data(pkt, pkt.getSize(), pkt.getSrcID()) );
     }
 
-    /**
-     * Breaks a line of string into many fields.
-     * @param line  a line of string
-     * @param lineNum   a line number
-     * @pre line != null
-     * @pre lineNum > 0
-     * @post $none
-     */
-    private void parseValue(String line, int lineNum)
-    {
-        // skip a comment line
-        if (line.startsWith(COMMENT)) {
-            return;
-        }
-
-        String[] sp = line.split("\\s+");  // split the fields based on a space
-        int i;              // a counter
-        int len = 0;        // length of a string
-        int index = 0;      // the index of an array
-
-        // check for each field in the array
-        for (i = 0; i < sp.length; i++)
-        {
-            len = sp[i].length();  // get the length of a string
-
-            // if it is empty then ignore
-            if (len == 0) {
-                continue;
-            }
-            // if not, then put into the array
-            else
-            {
-                fieldArray_[index] = sp[i];
-                index++;
-            }
-        }
-
-        if (index == MAX_FIELD) {
-            extractField(fieldArray_, lineNum);
-        }
-    }
-
-    /**
-     * Extracts relevant information from a given array
-     * @param array  an array of String
-     * @param line   a line number
-     * @pre array != null
-     * @pre line > 0
-     */
-    private void extractField(String[] array, int line)
-    {
-        try
-        {
-            Integer obj = null;
-
-            // get the job number
-            int id = 0;
-            if (JOB_NUM == IRRELEVANT) {
-                id = gridletID_;
-            }
-            else
-            {
-                obj = new Integer( array[JOB_NUM].trim() );
-                id = obj.intValue();
-            }
-
-            // get the submit time
-            Long l = new Long( array[SUBMIT_TIME].trim() );
-            long submitTime = l.intValue();
-
-            // get the run time
-            obj = new Integer( array[REQ_RUN_TIME].trim() );
-            int runTime = obj.intValue();
-
-            // if the required run time field is ignored, then use
-            // the actual run time
-            if (runTime == IRRELEVANT)
-            {
-                obj = new Integer( array[RUN_TIME].trim() );
-                runTime = obj.intValue();
-            }
-
-            // according to the SWF manual, runtime of 0 is possible due
-            // to rounding down. E.g. runtime is 0.4 seconds -> runtime = 0
-            if (runTime == 0) {
-                runTime = 1;    // change to 1 second
-            }
-
-            // get the number of allocated processors
-            obj = new Integer( array[REQ_NUM_PROC].trim() );
-            int numProc = obj.intValue();
-
-            // if the required num of allocated processors field is ignored
-            // or zero, then use the actual field
-            if (numProc == IRRELEVANT || numProc == 0)
-            {
-                obj = new Integer( array[NUM_PROC].trim() );
-                numProc = obj.intValue();
-            }
-
-            // finally, check if the num of PEs required is valid or not
-            if (numProc <= 0)
-            {
-                System.out.println(super.get_name() + ": Warning - job #"
-                        + id + " at line " + line + " requires " + numProc
-                        + " CPU. Change to 1 CPU.");
-                numProc = 1;
-            }
-            obj = new Integer( array[CLASSTYPE].trim() );
-            int classType = obj.intValue();
-            
-            // submit a Gridlet
-            submitGridlet(id, submitTime, runTime, numProc, classType);
-        }
-        catch (Exception e)
-        {
-            e.printStackTrace();
-            System.out.println(super.get_name() +
-                    ": Exception in reading file at line #" + line + 
-                    ", exception: " + e.getMessage());
-        }
-    }
-
     /**
      * Creates a Gridlet with the given information, then submit it to a
      * resource
@@ -779,96 +852,168 @@ public class MyWorkload extends GridSim
             submitTime = 0;
         }
 
+        // the trace is read ahead of the clock, so convert into a delay. The
+        // jobs the resource of a snapshot had not received come after it.
+        double arrival = submitTime;
+        if (snapshot_ != null) {
+            arrival = Math.max(arrival, snapshot_.getTime());
+        }
+        double delay = arrival - GridSim.clock();
+        if (delay < 0)
+        {
+            delay = 0;
+            lateGridlets_++;
+        }
+
         gridletID_++;   // increment the counter
+        lastSubmitTime_ = submitTime;
+
+        // keeps the Gridlet until a job with another submit time comes
+        if (batchSubmit_ == true)
+        {
+            if (pending_.isEmpty() == false && pendingTime_ != submitTime) {
+                submitPending();
+            }
+            pending_.add(gl);
+            pendingTime_ = submitTime;
+            pendingDelay_ = delay;
+            return;
+        }
 
         // submit a gridlet to resource
-        super.send(super.output, submitTime, GridSimTags.GRIDLET_SUBMIT,
+        super.send(super.output, delay, GridSimTags.GRIDLET_SUBMIT,
                 new IO_data(gl, gl.getGridletFileSize(), resID_) );
     }
 
     /**
-     * Reads a text file one line at the time
-     * @param fileName   a file name
+     * Sends the Gridlets that have the same submit time to the resource,
+     * in one event if there are more than one
+     * @pre $none
+     * @post $none
+     */
+    private void submitPending()
+    {
+        if (pending_.size() == 1)
+        {
+            Gridlet gl = pending_.get(0);
+            super.send(super.output, pendingDelay_, GridSimTags.GRIDLET_SUBMIT,
+                    new IO_data(gl, gl.getGridletFileSize(), resID_) );
+        }
+        else if (pending_.size() > 1)
+        {
+            long size = 0;
+            for (Gridlet gl : pending_) {
+                size += gl.getGridletFileSize();
+            }
+            super.send(super.output, pendingDelay_,
+                    CenapadAllocPolicy.GRIDLET_SUBMIT_BATCH,
+                    new IO_data(new ArrayList<Gridlet>(pending_), size, resID_));
+        }
+        pending_.clear();
+    }
+
+    /**
+     * Submits the next window of Gridlets from the trace. If there are more
+     * jobs left in the trace, then this entity reminds itself to read the
+     * next window once the first Gridlet of this window is due.
      * @return <tt>true</tt> if reading a file is successful, <tt>false</tt>
      *         otherwise.
-     * @pre fileName != null
+     * @pre $none
      * @post $none
      */
-    private boolean readFile(String fileName)
+    private boolean submitGridlets()
     {
         boolean success = false;
-        BufferedReader reader = null;
+        int count = 0;
+        long firstSubmitTime = -1;
+        if (batch_ == null) {
+            batch_ = new TraceBatch(BATCH_SIZE);
+        }
+
         try
         {
-            FileInputStream file = new FileInputStream(fileName);
-            reader = new BufferedReader(new InputStreamReader(file));
-
-            // read one line at the time
-            int line = 1;
-            while ( reader.ready() )
+            // read a batch of jobs at the time
+            boolean hasNext = true;
+            while ( lookahead_ == 0 || count < lookahead_ )
             {
-                parseValue(reader.readLine(), line);
-                line++;
+                int max = BATCH_SIZE;
+                if (lookahead_ > 0) {
+                    max = Math.min(max, lookahead_ - count);
+                }
+
+                int size = source_.next(batch_, max);
+                for (int i = 0; i < size; i++)
+                {
+                    // the resource of the snapshot has received this job,
+                    // which still counts in the window, so the windows are
+                    // read at the same times as before the snapshot
+                    if (snapshot_ != null
+                            && snapshot_.isReceived(batch_.getJobNum(i))) {
+                        gridletID_++;
+                        lastSubmitTime_ = Math.max(batch_.getSubmitTime(i), 0);
+                    }
+                    else {
+                        submitGridlet(batch_.getJobNum(i),
+                                batch_.getSubmitTime(i), batch_.getRunTime(i),
+                                batch_.getNumPE(i), batch_.getClassType(i));
+                    }
+                    if (count == 0) {
+                        firstSubmitTime = lastSubmitTime_;
+                    }
+                    count++;
+                }
+
+                if (size < max)
+                {
+                    hasNext = false;
+                    break;
+                }
+            }
+            if (batchSubmit_ == true) {
+                submitPending();
             }
 
-            reader.close();    // close the file
+            // the whole trace has been read
+            if (hasNext == false) {
+                closeTrace();
+            }
+            else
+            {
+                double delay = firstSubmitTime - GridSim.clock();
+                super.send(super.get_id(), Math.max(delay, 0), TRACE_REFILL);
+            }
             success = true;
         }
-        catch (FileNotFoundException f)
-        {
-            System.out.println(super.get_name() +
-                    ": Error - the file was not found: " + f.getMessage());
-        }
         catch (IOException e)
         {
             System.out.println(super.get_name() +
                     ": Error - an IOException occurred: " + e.getMessage());
-        }
-        finally
-        {
-            if (reader != null)
-            {
-                try {
-                    reader.close();    // close the file
-                }
-                catch (IOException e)
-                {
-                    System.out.println(super.get_name() +
-                        ": Error - an IOException occurred: " + e.getMessage());
-                }
-            }
+            closeTrace();
         }
 
         return success;
     }
 
     /**
-     * Reads a gzip file one line at the time
-     * @param fileName   a gzip file name
-     * @return <tt>true</tt> if reading a file is successful, <tt>false</tt>
+     * Opens a trace file for reading. The file can be in one of the following
+     * format: <i>ASCII text, zip, gz</i> or a binary trace.
+     * @param fileName   a file name
+     * @return <tt>true</tt> if opening a file is successful, <tt>false</tt>
      *         otherwise.
      * @pre fileName != null
      * @post $none
      */
-    private boolean readGZIPFile(String fileName)
+    private boolean openTrace(String fileName)
     {
         boolean success = false;
-        BufferedReader reader = null;
         try
         {
-            FileInputStream file = new FileInputStream(fileName);
-            GZIPInputStream gz =  new GZIPInputStream(file);
-            reader = new BufferedReader(new InputStreamReader(gz));
-
-            // read one line at the time
-            int line = 1;
-            while ( reader.ready() )
-            {
-                parseValue(reader.readLine(), line);
-                line++;
+            // otherwise, the trace source was given
+            if (fileName != null) {
+                source_ = findSource(fileName);
             }
 
-            reader.close();   // close the file
+            source_.open();
             success = true;
         }
         catch (FileNotFoundException f)
@@ -881,84 +1026,50 @@ public class MyWorkload extends GridSim
             System.out.println(super.get_name() +
                     ": Error - an IOException occurred: " + e.getMessage());
         }
-        finally
-        {
-            if (reader != null)
-            {
-                try {
-                    reader.close();    // close the file
-                }
-                catch (IOException e)
-                {
-                    System.out.println(super.get_name() +
-                        ": Error - an IOException occurred: " + e.getMessage());
-                }
-            }
-        }
 
+        if (success == false) {
+            endOfTrace_ = true;
+        }
         return success;
     }
 
     /**
-     * Reads a Zip file. Iterating through each entry and reading it one line
-     * at the time.
-     * @param fileName   a zip file name
-     * @return <tt>true</tt> if reading a file is successful, <tt>false</tt>
-     *         otherwise.
+     * Finds the trace source that reads the format of a trace file
+     * @param fileName   a file name
+     * @return the trace source
+     * @throws IOException  if the file can not be read
      * @pre fileName != null
-     * @post $none
+     * @post $result != null
      */
-    private boolean readZipFile(String fileName)
+    private TraceSource findSource(String fileName) throws IOException
     {
-        boolean success = false;
-        ZipFile zipFile = null;
-        try
-        {
-            BufferedReader reader = null;
-
-            // ZipFile offers an Enumeration of all the files in the Zip file
-            zipFile = new ZipFile(fileName);
-            Enumeration<? extends ZipEntry> e = zipFile.entries();
-            while (e.hasMoreElements()) {
-                success = false;    // reset the value again
-                ZipEntry zipEntry = e.nextElement();
-
-                reader = new BufferedReader(
-                		new InputStreamReader(zipFile.getInputStream(zipEntry)));
-
-                // read one line at the time
-                int line = 1;
-                while ( reader.ready() )
-                {
-                    parseValue(reader.readLine(), line);
-                    line++;
-                }
+        // a pre-compiled trace does not need to be parsed
+        if (BinaryTraceSource.isBinaryTrace(fileName) == true) {
+            return new BinaryTraceSource(fileName);
+        }
+        // the accounting log of Slurm is read without pre-processing
+        else if (SlurmTraceSource.isSlurmTrace(fileName) == true) {
+            return slurm_;
+        }
+        return text_;
+    }
 
-                reader.close();   // close the file
-                success = true;
-            }
+    /**
+     * Closes the trace file and marks the end of the trace.
+     * @pre $none
+     * @post $none
+     */
+    private void closeTrace()
+    {
+        endOfTrace_ = true;
+        try {
+            source_.close();    // close the file
         }
         catch (IOException e)
         {
             System.out.println(super.get_name() +
-                    ": Error - an IOException occurred: " + e.getMessage());
-        }
-        finally
-        {
-            if (zipFile != null)
-            {
-                try {
-                    zipFile.close();    // close the file
-                }
-                catch (IOException e)
-                {
-                    System.out.println(super.get_name() +
-                        ": Error - an IOException occurred: " + e.getMessage());
-                }
-            }
+                ": Error - an IOException occurred: " + e.getMessage());
         }
-
-        return success;
     }
 } 
 
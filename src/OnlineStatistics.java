@@ -0,0 +1,170 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+/**
+ * Statistics of a series of values that are computed as the values come,
+ * without keeping them. The mean and variance use Welford's method, which
+ * stays accurate for long series, and the quantiles come from a
+ * {@link LogHistogram}. Two objects can be merged, giving the statistics of
+ * both series.
+ *
+ * @see GridletStatistics
+ * @invariant $none
+ */
+final class OnlineStatistics
+{
+    private long count_;
+    private double mean_;
+    private double m2_;         // sum of squared differences from the mean
+    private double min_;
+    private double max_;
+    private final LogHistogram histogram_;
+
+    /**
+     * Creates empty statistics
+     * @pre $none
+     * @post $none
+     */
+    OnlineStatistics()
+    {
+        count_ = 0;
+        mean_ = 0.0;
+        m2_ = 0.0;
+        min_ = Double.POSITIVE_INFINITY;
+        max_ = Double.NEGATIVE_INFINITY;
+        histogram_ = new LogHistogram();
+    }
+
+    /**
+     * Adds a value
+     * @param value   a value, in seconds
+     * @pre $none
+     * @post $none
+     */
+    void add(double value)
+    {
+        count_++;
+        double delta = value - mean_;
+        mean_ += delta / count_;
+        m2_ += delta * (value - mean_);
+        min_ = Math.min(min_, value);
+        max_ = Math.max(max_, value);
+        histogram_.add(value);
+    }
+
+    /**
+     * Adds the values of other statistics to these ones
+     * @param other   other statistics
+     * @pre other != null
+     * @post $none
+     */
+    void merge(OnlineStatistics other)
+    {
+        if (other.count_ == 0) {
+            return;
+        }
+
+        long count = count_ + other.count_;
+        double delta = other.mean_ - mean_;
+        mean_ += delta * other.count_ / count;
+        m2_ += other.m2_ + delta * delta * count_ * other.count_ / count;
+        count_ = count;
+        min_ = Math.min(min_, other.min_);
+        max_ = Math.max(max_, other.max_);
+        histogram_.merge(other.histogram_);
+    }
+
+    /**
+     * Gets the number of values
+     * @return the number of values
+     * @pre $none
+     * @post $result >= 0
+     */
+    long getCount() {
+        return count_;
+    }
+
+    /**
+     * Gets the mean
+     * @return the mean or <tt>Double.NaN</tt> if there is no value
+     * @pre $none
+     * @post $none
+     */
+    double getMean()
+    {
+        if (count_ == 0) {
+            return Double.NaN;
+        }
+        return mean_;
+    }
+
+    /**
+     * Gets the sample variance
+     * @return the variance or <tt>Double.NaN</tt> if there are less than
+     *         two values
+     * @pre $none
+     * @post $none
+     */
+    double getVariance()
+    {
+        if (count_ < 2) {
+            return Double.NaN;
+        }
+        return m2_ / (count_ - 1);
+    }
+
+    /**
+     * Gets the sample standard deviation
+     * @return the standard deviation or <tt>Double.NaN</tt> if there are
+     *         less than two values
+     * @pre $none
+     * @post $none
+     */
+    double getStandardDeviation() {
+        return Math.sqrt( getVariance() );
+    }
+
+    /**
+     * Gets the smallest value
+     * @return the smallest value or <tt>Double.NaN</tt> if there is no value
+     * @pre $none
+     * @post $none
+     */
+    double getMin() {
+        return (count_ == 0) ? Double.NaN : min_;
+    }
+
+    /**
+     * Gets the largest value
+     * @return the largest value or <tt>Double.NaN</tt> if there is no value
+     * @pre $none
+     * @post $none
+     */
+    double getMax() {
+        return (count_ == 0) ? Double.NaN : max_;
+    }
+
+    /**
+     * Gets an approximate quantile, kept between the smallest and largest
+     * values
+     * @param q   the fraction, e.g. 0.95 for the 95th percentile
+     * @return the quantile or <tt>Double.NaN</tt> if there is no value
+     * @pre q >= 0.0 && q <= 1.0
+     * @post $none
+     * @see LogHistogram#getQuantile(double)
+     */
+    double getQuantile(double q)
+    {
+        if (count_ == 0) {
+            return Double.NaN;
+        }
+
+        double value = histogram_.getQuantile(q);
+        return Math.min(max_, Math.max(min_, value));
+    }
+}
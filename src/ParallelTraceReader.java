@@ -0,0 +1,532 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the jobs of a gz or zip trace with several threads. Decompressing
+ * and parsing are both CPU bound, so they are pipelined:
+ * <ul>
+ *      <li> one thread decompresses each stream, i.e. the gz file or each
+ *           entry of the zip file, and cuts it into chunks of whole lines
+ *      <li> a pool of threads parses the chunks into {@link TraceBatch}
+ *           objects, many chunks at the time
+ *      <li> the caller takes the parsed chunks of each stream in the order
+ *           they were cut, so the jobs come in the order of the file
+ * </ul>
+ * The entries of a zip file are read at the same time, and their jobs are
+ * merged by submit time. If the entries are sorted by submit time, then so
+ * are the jobs, and if they follow each other the jobs come in the same
+ * order as the entries. Jobs with the same submit time come in the order
+ * of their entries.
+ * <p>
+ * The number of chunks of each stream that are cut but not taken yet is
+ * bounded, so the memory used does not depend on the trace length. The
+ * warnings of a chunk are printed when the caller takes it, hence in the
+ * same order as when reading the trace with one thread.
+ *
+ * @see TextTraceSource#setThreads(int)
+ * @invariant $none
+ */
+final class ParallelTraceReader
+{
+    /** Size of a chunk cut by a decompressing thread, in bytes */
+    static final int CHUNK_SIZE = 1024 * 1024;
+
+    /** Number of chunks of a stream that are cut ahead, per parsing thread */
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    private final String fileName_; // file name
+    private final ChunkParser parser_;
+    private final int numThreads_;  // number of parsing threads
+    private ExecutorService pool_;  // the parsing threads
+    private ZipFile zipFile_;       // the zip file being read, if any
+    private ArrayList<Stream> streams_;
+    private Stream current_;        // the stream of the current job
+    private volatile boolean closed_;
+
+    /**
+     * Parses a chunk of a trace. It is called by the parsing threads, many
+     * chunks at the time.
+     */
+    interface ChunkParser
+    {
+        /**
+         * Parses the lines of a chunk
+         * @param bytes      an array containing the chunk
+         * @param from       offset of the first byte of the chunk
+         * @param to         offset after its last byte
+         * @param firstLine  line number of its first line in the stream
+         * @param numLines   number of lines of the chunk
+         * @param messages   where the warnings are added instead of being
+         *                   printed
+         * @return the jobs of the chunk
+         * @pre bytes != null
+         * @pre messages != null
+         * @post $result != null
+         */
+        TraceBatch parse(byte[] bytes, int from, int to, int firstLine,
+                         int numLines, ArrayList<String> messages);
+    }
+
+    /**
+     * Creates a new reader
+     * @param fileName     the trace file name, ending with <tt>.gz</tt> or
+     *                     <tt>.zip</tt>
+     * @param parser       parses the chunks
+     * @param numThreads   number of parsing threads
+     * @pre fileName != null
+     * @pre parser != null
+     * @pre numThreads > 0
+     * @post $none
+     */
+    ParallelTraceReader(String fileName, ChunkParser parser, int numThreads)
+    {
+        fileName_ = fileName;
+        parser_ = parser;
+        numThreads_ = numThreads;
+        pool_ = null;
+        zipFile_ = null;
+        streams_ = null;
+        current_ = null;
+        closed_ = false;
+    }
+
+    /**
+     * Opens the file and starts decompressing and parsing it
+     * @throws IOException  if the file can not be opened
+     * @pre $none
+     * @post $none
+     */
+    void open() throws IOException
+    {
+        closed_ = false;
+        current_ = null;
+        streams_ = new ArrayList<Stream>();
+        try
+        {
+            if (fileName_.endsWith(".zip"))
+            {
+                zipFile_ = new ZipFile(fileName_);
+                Enumeration<? extends ZipEntry> entries = zipFile_.entries();
+                while (entries.hasMoreElements())
+                {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.isDirectory() == false) {
+                        streams_.add( new Stream(entry.getName(),
+                                zipFile_.getInputStream(entry)) );
+                    }
+                }
+            }
+            else
+            {
+                streams_.add( new Stream(fileName_, new GZIPInputStream(
+                        new FileInputStream(fileName_), 64 * 1024)) );
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+
+        pool_ = Executors.newFixedThreadPool(numThreads_,
+                new DaemonThreadFactory("parser"));
+        for (Stream stream : streams_) {
+            stream.start();
+        }
+    }
+
+    /**
+     * Moves to the next job, i.e. the one with the smallest submit time
+     * among the next job of each stream
+     * @return <tt>true</tt> if there is a job, <tt>false</tt> at the end of
+     *         the trace
+     * @throws IOException  if the trace can not be read
+     * @pre $none
+     * @post $none
+     */
+    boolean next() throws IOException
+    {
+        if (current_ != null) {
+            current_.advance();
+        }
+        else
+        {
+            // the first job of each stream
+            for (Stream stream : streams_) {
+                stream.advance();
+            }
+        }
+
+        // the streams are few, so there is no need for a heap
+        current_ = null;
+        for (Stream stream : streams_)
+        {
+            if (stream.hasJob() == true && (current_ == null ||
+                    stream.getSubmitTime() < current_.getSubmitTime())) {
+                current_ = stream;
+            }
+        }
+        return current_ != null;
+    }
+
+    /**
+     * Gets the job number of the current job, as parsed
+     * @return the job number
+     * @pre $none
+     * @post $none
+     */
+    int getJobNum() {
+        return current_.batch_.getJobNum(current_.index_);
+    }
+
+    long getSubmitTime() {
+        return current_.getSubmitTime();
+    }
+
+    int getRunTime() {
+        return current_.batch_.getRunTime(current_.index_);
+    }
+
+    int getNumPE() {
+        return current_.batch_.getNumPE(current_.index_);
+    }
+
+    int getClassType() {
+        return current_.batch_.getClassType(current_.index_);
+    }
+
+    /**
+     * Stops all the threads and closes the file
+     * @throws IOException  if the file can not be closed
+     * @pre $none
+     * @post $none
+     */
+    void close() throws IOException
+    {
+        closed_ = true;
+        if (pool_ != null)
+        {
+            pool_.shutdownNow();
+            pool_ = null;
+        }
+
+        try
+        {
+            if (streams_ != null)
+            {
+                for (Stream stream : streams_) {
+                    stream.stop();
+                }
+            }
+            if (zipFile_ != null) {
+                zipFile_.close();   // close the file
+            }
+        }
+        finally
+        {
+            streams_ = null;
+            zipFile_ = null;
+            current_ = null;
+        }
+    }
+
+    /**
+     * Creates a future that is already done
+     * @param result     its result, or <tt>null</tt> at the end of a stream
+     * @param exception  its exception, or <tt>null</tt> if none
+     * @return the future
+     */
+    private static Future<Chunk> done(final Chunk result,
+                                      final Exception exception)
+    {
+        FutureTask<Chunk> task = new FutureTask<Chunk>(new Callable<Chunk>()
+        {
+            public Chunk call() throws Exception
+            {
+                if (exception != null) {
+                    throw exception;
+                }
+                return result;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * The jobs of a chunk and the warnings found while parsing it
+     */
+    private static final class Chunk
+    {
+        final TraceBatch batch_;
+        final ArrayList<String> messages_;
+
+        Chunk(TraceBatch batch, ArrayList<String> messages)
+        {
+            batch_ = batch;
+            messages_ = messages;
+        }
+    }
+
+    /**
+     * One decompressed stream, i.e. the gz file or one entry of the zip
+     * file. Its thread cuts it into chunks and hands them to the parsing
+     * threads, and keeps their futures in order.
+     */
+    private final class Stream implements Runnable
+    {
+        private final String name_;
+        private final InputStream in_;
+        private final BlockingQueue<Future<Chunk>> chunks_;
+        private Thread thread_;
+
+        // the current job of this stream
+        private TraceBatch batch_;
+        private int index_;
+        private boolean end_;
+
+        Stream(String name, InputStream in)
+        {
+            name_ = name;
+            in_ = in;
+            chunks_ = new ArrayBlockingQueue<Future<Chunk>>(
+                    numThreads_ * CHUNKS_PER_THREAD);
+            thread_ = null;
+            batch_ = null;
+            index_ = 0;
+            end_ = false;
+        }
+
+        void start()
+        {
+            thread_ = new Thread(this, "ParallelTraceReader-" + name_);
+            thread_.setDaemon(true);
+            thread_.start();
+        }
+
+        void stop() throws IOException
+        {
+            if (thread_ != null) {
+                thread_.interrupt();
+            }
+            in_.close();
+        }
+
+        boolean hasJob() {
+            return batch_ != null;
+        }
+
+        long getSubmitTime() {
+            return batch_.getSubmitTime(index_);
+        }
+
+        /**
+         * Moves to the next job of this stream, taking the next chunk once
+         * the current one is done
+         * @throws IOException  if the stream can not be read
+         */
+        void advance() throws IOException
+        {
+            index_++;
+            while (batch_ == null || index_ >= batch_.getSize())
+            {
+                batch_ = null;
+                if (end_ == true) {
+                    return;
+                }
+
+                Chunk chunk = null;
+                try {
+                    chunk = chunks_.take().get();
+                }
+                catch (InterruptedException e) {
+                    throw new InterruptedIOException(fileName_);
+                }
+                catch (ExecutionException e)
+                {
+                    end_ = true;
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+
+                if (chunk == null)
+                {
+                    end_ = true;
+                    return;
+                }
+                for (String message : chunk.messages_) {
+                    System.out.println(message);
+                }
+                batch_ = chunk.batch_;
+                index_ = 0;
+            }
+        }
+
+        /**
+         * Decompresses the stream and cuts it into chunks of whole lines
+         */
+        public void run()
+        {
+            try
+            {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int len = 0;
+                int line = 1;
+                while (true)
+                {
+                    int n = in_.read(buffer, len, buffer.length - len);
+                    if (n < 0)
+                    {
+                        if (len > 0) {
+                            parse(buffer, len, line);
+                        }
+                        break;
+                    }
+
+                    len += n;
+                    if (len < buffer.length) {
+                        continue;
+                    }
+
+                    // the last line goes on into the next chunk
+                    int last = len - 1;
+                    while (last >= 0 && buffer[last] != '\n') {
+                        last--;
+                    }
+                    if (last < 0)
+                    {
+                        // a line longer than a chunk
+                        buffer = Arrays.copyOf(buffer, len * 2);
+                        continue;
+                    }
+
+                    int rest = len - last - 1;
+                    byte[] next = new byte[Math.max(CHUNK_SIZE, rest)];
+                    System.arraycopy(buffer, last + 1, next, 0, rest);
+                    line += parse(buffer, last + 1, line);
+                    buffer = next;
+                    len = rest;
+                }
+                chunks_.put( done(null, null) );
+            }
+            catch (InterruptedException e) {
+                // closed while waiting for the caller
+            }
+            catch (RejectedExecutionException e) {
+                // closed while handing a chunk to the parsing threads
+            }
+            catch (IOException e) {
+                fail(e);
+            }
+            catch (RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Hands the failure of this thread to the caller, waiting for room
+         * in the queue so that the caller does not wait forever
+         * @param e  the failure
+         */
+        private void fail(Exception e)
+        {
+            if (closed_ == true) {
+                return;
+            }
+            try {
+                chunks_.put( done(null, e) );
+            }
+            catch (InterruptedException ie) {
+                // closed while waiting for the caller
+            }
+        }
+
+        /**
+         * Hands a chunk to the parsing threads
+         * @param bytes      the chunk, which is not changed afterwards
+         * @param len        number of bytes of the chunk
+         * @param firstLine  line number of its first line
+         * @return the number of lines of the chunk
+         * @throws InterruptedException  if the reader is closed meanwhile
+         */
+        private int parse(final byte[] bytes, final int len,
+                          final int firstLine) throws InterruptedException
+        {
+            int count = 0;
+            for (int i = 0; i < len; i++)
+            {
+                if (bytes[i] == '\n') {
+                    count++;
+                }
+            }
+            final int numLines = (bytes[len - 1] == '\n') ? count : count + 1;
+
+            ExecutorService pool = pool_;
+            if (pool == null) {
+                throw new InterruptedException();
+            }
+            chunks_.put( pool.submit(new Callable<Chunk>()
+            {
+                public Chunk call()
+                {
+                    ArrayList<String> messages = new ArrayList<String>(0);
+                    TraceBatch batch = parser_.parse(bytes, 0, len,
+                            firstLine, numLines, messages);
+                    return new Chunk(batch, messages);
+                }
+            }) );
+            return numLines;
+        }
+    }
+
+    /**
+     * Creates daemon threads, so a reader that is not closed does not keep
+     * the JVM running
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory
+    {
+        private final String prefix_;
+        private int count_;
+
+        DaemonThreadFactory(String prefix)
+        {
+            prefix_ = prefix;
+            count_ = 0;
+        }
+
+        public synchronized Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r, "ParallelTraceReader-" + prefix_
+                    + "-" + (++count_));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
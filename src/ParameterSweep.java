@@ -0,0 +1,452 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs {@link ExampleWorkload} for every combination of a grid of
+ * parameters, several runs at a time, and gathers their results into one
+ * table. GridSim and SimJava keep their state in static fields, so each
+ * run is a separate JVM with its own working directory, where its output,
+ * <tt>res_trace.csv</tt> and the SimJava files are written.
+ * <p>
+ * Usage:
+ * <pre>
+ *  java ParameterSweep [-out dir] [-threads n] [-jvm option]... name=value[,value]...
+ * </pre>
+ * Each <tt>name=value</tt> is an argument of ExampleWorkload, e.g.
+ * <tt>trace</tt>, <tt>policy</tt>, <tt>completion</tt>, <tt>lookahead</tt>,
+ * <tt>machines</tt>, <tt>pes</tt> or <tt>medium</tt>, and a comma separated
+ * list of values is swept. <tt>trace</tt> is required. GridSim events are
+ * not traced unless <tt>simtrace=true</tt> is given. The results are read
+ * from the Gridlets each run prints, so <tt>print=false</tt> is refused.
+ * For example:
+ * <pre>
+ *  java ParameterSweep -out sweep -threads 4 -jvm -Xmx1g
+ *      trace=workload_reduced_gpu.jobs,workload_reduced_all.jobs
+ *      policy=fcfs,easy,conservative medium=30,38 completion=event
+ * </pre>
+ * The default output directory is <tt>sweep</tt> and the default number of
+ * threads is the number of processors. The results are:
+ * <ul>
+ * <li> <tt>summary.csv</tt>: one row per run, with its parameters, status,
+ *      exit code, number of jobs, mean and max. queue time, mean bounded
+ *      slowdown (10 sec. bound), makespan and wall clock time. The status
+ *      of a run is <tt>failed</tt> if its exit code is not 0 or it printed
+ *      no Gridlet, and <tt>ok</tt> otherwise.
+ * <li> <tt>gridlets.csv</tt>: the Gridlets of all runs, with the run number.
+ * <li> <tt>run_N/output.txt</tt>: the console output of run N.
+ * </ul>
+ *
+ * @see ExampleWorkload
+ * @invariant $none
+ */
+public class ParameterSweep
+{
+    private static final String HEADER = "Gridlet ID,SubmissionTime,QueueTime,RunTime";
+    private static final double SLOWDOWN_BOUND = 10.0;   // in seconds
+
+    public static void main(String[] args)
+    {
+        File outDir = new File("sweep");
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> jvmOptions = new ArrayList<String>();
+        Map<String, String[]> grid = new LinkedHashMap<String, String[]>();
+
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                if (args[i].equals("-out") && i + 1 < args.length) {
+                    outDir = new File(args[++i]);
+                }
+                else if (args[i].equals("-threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                }
+                else if (args[i].equals("-jvm") && i + 1 < args.length) {
+                    jvmOptions.add(args[++i]);
+                }
+                else if (args[i].indexOf('=') > 0)
+                {
+                    int index = args[i].indexOf('=');
+                    grid.put(args[i].substring(0, index),
+                             args[i].substring(index + 1).split(","));
+                }
+                else {
+                    grid.clear();
+                    break;
+                }
+            }
+        }
+        catch (NumberFormatException e) {
+            grid.clear();
+        }
+
+        if (grid.containsKey("trace") == false || threads < 1)
+        {
+            System.out.println("Usage: java ParameterSweep [-out dir] "
+                    + "[-threads n] [-jvm option]... name=value[,value]...");
+            System.exit(1);
+        }
+
+        if (grid.containsKey("print") == true)
+        {
+            for (String value : grid.get("print"))
+            {
+                if (Boolean.parseBoolean(value) == false)
+                {
+                    System.out.println("ParameterSweep: print=" + value
+                            + " is not supported, the results are read from "
+                            + "the printed Gridlets");
+                    System.exit(1);
+                }
+            }
+        }
+
+        if (grid.containsKey("simtrace") == false) {
+            grid.put("simtrace", new String[] { "false" });
+        }
+
+        try {
+            new ParameterSweep(outDir, threads, jvmOptions, grid).run();
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private final File outDir_;
+    private final int threads_;
+    private final List<String> jvmOptions_;
+    private final Map<String, String[]> grid_;
+
+    /**
+     * Creates a new sweep
+     * @param outDir      the directory for the results
+     * @param threads     max. number of runs at the same time
+     * @param jvmOptions  options of the JVM of each run
+     * @param grid        the values of each parameter
+     * @pre outDir != null
+     * @pre threads > 0
+     * @pre jvmOptions != null
+     * @pre grid != null && grid.containsKey("trace")
+     * @post $none
+     */
+    ParameterSweep(File outDir, int threads, List<String> jvmOptions,
+                   Map<String, String[]> grid)
+    {
+        outDir_ = outDir;
+        threads_ = threads;
+        jvmOptions_ = jvmOptions;
+        grid_ = grid;
+    }
+
+    /**
+     * Runs all combinations of parameters and writes the results
+     * @throws Exception  if the results can't be written, or a run is
+     *                    interrupted
+     * @pre $none
+     * @post $none
+     */
+    void run() throws Exception
+    {
+        List<String[]> runs = combinations();
+        if (outDir_.isDirectory() == false && outDir_.mkdirs() == false) {
+            throw new IOException("Cannot create " + outDir_);
+        }
+
+        System.out.println("ParameterSweep: " + runs.size() + " runs on "
+                + threads_ + " threads into " + outDir_);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads_);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+        try
+        {
+            for (int i = 0; i < runs.size(); i++)
+            {
+                final int run = i + 1;
+                final String[] values = runs.get(i);
+                results.add( executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return runOne(run, values);
+                    }
+                }) );
+            }
+
+            // writes the rows in run order, whatever order they finish in
+            BufferedWriter summary = new BufferedWriter(
+                    new FileWriter(new File(outDir_, "summary.csv")) );
+            try
+            {
+                summary.write("run");
+                for (String name : grid_.keySet()) {
+                    summary.write("," + name);
+                }
+                summary.write(",status,exitCode,jobs,meanQueueTime,maxQueueTime,"
+                        + "meanBoundedSlowdown,makespan,wallClockMs");
+                summary.newLine();
+
+                for (Future<String> result : results)
+                {
+                    summary.write( result.get() );
+                    summary.newLine();
+                }
+            }
+            finally {
+                summary.close();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        writeGridlets( runs.size() );
+        System.out.println("ParameterSweep: results in "
+                + new File(outDir_, "summary.csv"));
+    }
+
+    /**
+     * Builds every combination of the parameter values, where the last
+     * parameter changes first
+     * @return the values of each run, in the order of the parameters
+     */
+    private List<String[]> combinations()
+    {
+        List<String[]> runs = new ArrayList<String[]>();
+        runs.add(new String[0]);
+        for (String[] values : grid_.values())
+        {
+            List<String[]> next = new ArrayList<String[]>();
+            for (String[] run : runs)
+            {
+                for (String value : values)
+                {
+                    String[] combination = new String[run.length + 1];
+                    System.arraycopy(run, 0, combination, 0, run.length);
+                    combination[run.length] = value;
+                    next.add(combination);
+                }
+            }
+            runs = next;
+        }
+        return runs;
+    }
+
+    /**
+     * Runs one simulation in its own JVM and directory, and summarises it
+     * @param run     the run number
+     * @param values  the value of each parameter
+     * @return the row of this run in the summary
+     * @throws Exception  if the JVM can't be started or is interrupted
+     */
+    private String runOne(int run, String[] values) throws Exception
+    {
+        File dir = new File(outDir_, "run_" + run);
+        if (dir.isDirectory() == false && dir.mkdirs() == false) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin"
+                + File.separator + "java");
+        command.addAll(jvmOptions_);
+        command.add("-cp");
+        command.add( System.getProperty("java.class.path") );
+        command.add("ExampleWorkload");
+
+        StringBuilder row = new StringBuilder();
+        row.append(run);
+        List<String> options = new ArrayList<String>();
+        int i = 0;
+        for (String name : grid_.keySet())
+        {
+            String value = values[i++];
+            row.append(',').append(value);
+            if (name.equals("trace") == true) {
+                // the run does not start in the current directory
+                command.add( new File(value).getAbsolutePath() );
+            }
+            else {
+                options.add(name + "=" + value);
+            }
+        }
+        command.addAll(options);
+
+        File output = new File(dir, "output.txt");
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.directory(dir);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(output);
+
+        long start = System.currentTimeMillis();
+        int exitCode = builder.start().waitFor();
+        long elapsed = System.currentTimeMillis() - start;
+
+        // a run that printed no Gridlet has failed, whatever its exit code
+        StringBuilder stats = new StringBuilder();
+        int jobs = summarise(output, stats);
+        String status = (exitCode == 0 && jobs > 0) ? "ok" : "failed";
+        row.append(',').append(status).append(',').append(exitCode);
+        row.append(stats);
+        row.append(',').append(elapsed);
+
+        System.out.println("ParameterSweep: run " + run + " " + status
+                + " with exit code " + exitCode + " and " + jobs
+                + " Gridlets in " + elapsed + " ms");
+        return row.toString();
+    }
+
+    /**
+     * Appends the statistics of the Gridlets of one run to its row
+     * @param output  the console output of the run
+     * @param row     the row of this run
+     * @return the number of Gridlets printed by the run
+     * @throws IOException  if the output can't be read
+     */
+    private static int summarise(File output, StringBuilder row)
+            throws IOException
+    {
+        int jobs = 0;
+        double totalQueue = 0;
+        double maxQueue = 0;
+        double totalSlowdown = 0;
+        double firstSubmit = Double.MAX_VALUE;
+        double lastFinish = 0;
+
+        BufferedReader reader = new BufferedReader(new FileReader(output));
+        try
+        {
+            String line;
+            boolean started = false;
+            while ((line = reader.readLine()) != null)
+            {
+                if (started == false)
+                {
+                    started = line.equals(HEADER);
+                    continue;
+                }
+
+                double[] gridlet = parseGridlet(line);
+                if (gridlet == null) {
+                    continue;
+                }
+
+                double submit = gridlet[1];
+                double queue = gridlet[2];
+                double runTime = gridlet[3];
+                jobs++;
+                totalQueue += queue;
+                maxQueue = Math.max(maxQueue, queue);
+                totalSlowdown += Math.max(1.0, (queue + runTime)
+                        / Math.max(runTime, SLOWDOWN_BOUND));
+                firstSubmit = Math.min(firstSubmit, submit);
+                lastFinish = Math.max(lastFinish, submit + queue + runTime);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        row.append(',').append(jobs);
+        if (jobs == 0)
+        {
+            row.append(",,,,");
+            return jobs;
+        }
+
+        row.append(',').append(totalQueue / jobs);
+        row.append(',').append(maxQueue);
+        row.append(',').append(totalSlowdown / jobs);
+        row.append(',').append(lastFinish - firstSubmit);
+        return jobs;
+    }
+
+    /**
+     * Writes the Gridlets of all runs into one file, with the run number
+     * @param runs  the number of runs
+     * @throws IOException  if a file can't be read or written
+     */
+    private void writeGridlets(int runs) throws IOException
+    {
+        BufferedWriter writer = new BufferedWriter(
+                new FileWriter(new File(outDir_, "gridlets.csv")) );
+        try
+        {
+            writer.write("run," + HEADER);
+            writer.newLine();
+            for (int run = 1; run <= runs; run++)
+            {
+                File output = new File(new File(outDir_, "run_" + run),
+                                       "output.txt");
+                BufferedReader reader = new BufferedReader(new FileReader(output));
+                try
+                {
+                    String line;
+                    boolean started = false;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        if (started == false) {
+                            started = line.equals(HEADER);
+                        }
+                        else if (parseGridlet(line) != null)
+                        {
+                            writer.write(run + "," + line);
+                            writer.newLine();
+                        }
+                    }
+                }
+                finally {
+                    reader.close();
+                }
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Parses a Gridlet line of the ExampleWorkload output
+     * @param line  a line
+     * @return the ID, submission time, queue time and run time, or
+     *         <tt>null</tt> if it is not a Gridlet line
+     */
+    private static double[] parseGridlet(String line)
+    {
+        String[] fields = line.split(",");
+        if (fields.length != 4) {
+            return null;
+        }
+
+        try
+        {
+            double[] gridlet = new double[4];
+            for (int i = 0; i < 4; i++) {
+                gridlet[i] = Double.parseDouble(fields[i]);
+            }
+            return gridlet;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
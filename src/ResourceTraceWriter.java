@@ -0,0 +1,152 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the samples of a resource state, i.e. the <tt>res_trace.csv</tt>
+ * file of {@link CenapadAllocPolicy}. The rows are put into a large buffer,
+ * and a full buffer is written by a background thread while the simulation
+ * goes on with a new buffer. The rest is written when this object is
+ * closed. Buffers are written in order, one at a time.
+ *
+ * @see CenapadAllocPolicy#setTraceFile(String)
+ * @invariant $none
+ */
+final class ResourceTraceWriter
+{
+    /** The header of the file */
+    static final String HEADER = "timestamp,usedPEs,jobsRunning,"
+            + "JobsInLongQueue,JobsInMediumQueue,busyMachines";
+
+    private static final int BUFFER_SIZE = 1 << 20;    // in chars
+
+    private final String fileName_;
+    private final Writer out_;
+    private final ExecutorService executor_;
+    private StringBuilder buffer_;
+    private volatile IOException error_;    // from the background thread
+
+    /**
+     * Creates a new file and writes its header
+     * @param fileName   the file name
+     * @throws IOException  if the file can't be created
+     * @pre fileName != null
+     * @post $none
+     */
+    ResourceTraceWriter(String fileName) throws IOException
+    {
+        fileName_ = fileName;
+        out_ = new OutputStreamWriter(new FileOutputStream(fileName), "US-ASCII");
+        executor_ = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "ResourceTraceWriter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        buffer_ = new StringBuilder(BUFFER_SIZE);
+        buffer_.append(HEADER).append('\n');
+        error_ = null;
+    }
+
+    /**
+     * Adds one sample of the resource state
+     * @param time           the simulation time
+     * @param usedPEs        the number of busy PEs
+     * @param jobsRunning    the number of Gridlets in execution
+     * @param longQueue      the number of Gridlets in the long queue
+     * @param mediumQueue    the number of Gridlets in the medium queue
+     * @param busyMachines   the number of machines with a busy PE
+     * @pre $none
+     * @post $none
+     */
+    void sample(double time, int usedPEs, int jobsRunning, int longQueue,
+                int mediumQueue, int busyMachines)
+    {
+        buffer_.append(time).append(',')
+               .append(usedPEs).append(',')
+               .append(jobsRunning).append(',')
+               .append(longQueue).append(',')
+               .append(mediumQueue).append(',')
+               .append(busyMachines).append('\n');
+
+        // leaves some room, so the buffer never grows
+        if (buffer_.length() > BUFFER_SIZE - 256)
+        {
+            flush(buffer_);
+            buffer_ = new StringBuilder(BUFFER_SIZE);
+        }
+    }
+
+    /**
+     * Writes the remaining rows, waits for the background thread and closes
+     * the file
+     * @throws IOException  if a row could not be written
+     * @pre $none
+     * @post $none
+     */
+    void close() throws IOException
+    {
+        flush(buffer_);
+        buffer_ = null;
+        executor_.shutdown();
+        try
+        {
+            while (executor_.awaitTermination(1, TimeUnit.MINUTES) == false) {
+                // keeps waiting, since the rows must not be lost
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        out_.close();
+        if (error_ != null) {
+            throw error_;
+        }
+    }
+
+    /**
+     * Gives a buffer to the background thread
+     * @param buffer  the rows to write
+     */
+    private void flush(final StringBuilder buffer)
+    {
+        if (buffer.length() == 0) {
+            return;
+        }
+
+        executor_.execute(new Runnable() {
+            public void run()
+            {
+                if (error_ != null) {
+                    return;
+                }
+
+                try
+                {
+                    out_.append(buffer);
+                    out_.flush();
+                }
+                catch (IOException e)
+                {
+                    error_ = new IOException("Cannot write " + fileName_, e);
+                }
+            }
+        });
+    }
+}
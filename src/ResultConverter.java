@@ -0,0 +1,47 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+/**
+ * Exports a binary results file written by {@link GridletResults} as CSV,
+ * with one line per Gridlet and its machine IDs separated by spaces.
+ * <p>
+ * Usage:
+ * <pre>
+ *  java ResultConverter input output.csv
+ * </pre>
+ *
+ * @see GridletResults
+ * @invariant $none
+ */
+public class ResultConverter
+{
+    public static void main(String[] args)
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: java ResultConverter input output.csv");
+            System.exit(1);
+        }
+
+        try
+        {
+            long start = System.currentTimeMillis();
+            GridletResults results = GridletResults.read(args[0]);
+            results.writeCsv(args[1]);
+
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.println("Converted " + results.size() + " Gridlets from "
+                    + args[0] + " into " + args[1] + " in " + elapsed + " ms");
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import gridsim.Gridlet;
+
+/**
+ * Chooses the resource a {@link MetaScheduler} sends a Gridlet to. The
+ * state of each resource is kept by the MetaScheduler, which updates it as
+ * Gridlets are routed and come back, so a policy does not ask the
+ * resources anything.
+ *
+ * @see MetaScheduler#MetaScheduler(String, RoutingPolicy)
+ * @see MetaScheduler.LeastLoaded
+ * @see MetaScheduler.ShortestWait
+ * @invariant $none
+ */
+interface RoutingPolicy
+{
+    /**
+     * Chooses the resource of a Gridlet that has just been submitted
+     * @param gl          a Gridlet
+     * @param resources   the state of each resource
+     * @return the index of a resource that can run the Gridlet, or
+     *         <tt>-1</tt> if none can
+     * @pre gl != null
+     * @pre resources != null && resources.length > 0
+     * @post $result >= -1 && $result < resources.length
+     */
+    int route(Gridlet gl, MetaScheduler.ResourceState[] resources);
+}
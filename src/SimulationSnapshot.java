@@ -0,0 +1,344 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The state of a resource and of the workload that feeds it at a given
+ * simulation time, so another simulation can resume from there instead of
+ * replaying the trace from the start. It holds what can't be read again
+ * from the trace:
+ * <ul>
+ *      <li> the IDs of the Gridlets the resource has received, which a
+ *           resumed workload skips. The trace need not be sorted by submit
+ *           time, so its jobs are skipped by ID rather than by position.
+ *      <li> every Gridlet that is queued, running or paused, with its
+ *           progress, arrival and start times, and the PEs and finish time
+ *           of a running one
+ * </ul>
+ * The Gridlets that have already finished are not kept, so a resumed
+ * simulation only gives the results of the Gridlets that finish after
+ * the snapshot.
+ * <p>
+ * A resource that runs the Gridlets of several workloads, e.g. behind a
+ * {@link MetaScheduler}, can't be checkpointed, since the Gridlet IDs of
+ * several workloads can't be told apart.
+ * <p>
+ * The file is written with a DataOutputStream. All numbers are big-endian:
+ * <pre>
+ *  int             {@link #MAGIC}
+ *  int             {@link #VERSION}
+ *  double          simulation time
+ *  UTF             name of the workload entity that owns the Gridlets
+ *  int             number of Gridlets received by the resource n, then
+ *                  int[n] their IDs in increasing order
+ *  int             number of Gridlets in the snapshot, then for each one:
+ *      int         state, i.e. {@link #QUEUED_MEDIUM} to {@link #PAUSED}
+ *      int         Gridlet ID, number of PEs and class type
+ *      long        file size and output size
+ *      double      length, length finished so far, arrival time
+ *      (running)   double exec start time, CPU time so far and finish time,
+ *                  int completion rank, int number of PEs n, then int[n]
+ *                  machine IDs and int[n] PE IDs
+ * </pre>
+ *
+ * @see CenapadAllocPolicy#setCheckpoint(double, String)
+ * @see CenapadAllocPolicy#resume(SimulationSnapshot)
+ * @see MyWorkload#resume(SimulationSnapshot)
+ * @invariant $none
+ */
+final class SimulationSnapshot
+{
+    /** The first 4 bytes of a snapshot file, i.e. "GDSN" */
+    static final int MAGIC = 0x4744534E;
+
+    /** Version of the format */
+    static final int VERSION = 2;
+
+    /** A Gridlet in the medium queue */
+    static final int QUEUED_MEDIUM = 0;
+
+    /** A Gridlet in the long queue */
+    static final int QUEUED_LONG = 1;
+
+    /** A Gridlet that is running */
+    static final int RUNNING = 2;
+
+    /** A Gridlet that is paused */
+    static final int PAUSED = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final double time_;
+    private final String userName_;
+    private final int[] received_;  // sorted
+    private final ArrayList<Entry> entries_;
+
+    /**
+     * Creates an empty snapshot
+     * @param time       the simulation time
+     * @param userName   the workload entity that owns the Gridlets
+     * @param received   IDs of the Gridlets received by the resource, in
+     *                   increasing order
+     * @pre time >= 0.0
+     * @pre userName != null
+     * @pre received != null
+     * @post $none
+     */
+    SimulationSnapshot(double time, String userName, int[] received)
+    {
+        time_ = time;
+        userName_ = userName;
+        received_ = received;
+        entries_ = new ArrayList<Entry>();
+    }
+
+    /**
+     * Adds a Gridlet. The queued Gridlets must be added in queue order and
+     * the running ones in the order of the execution list.
+     * @param entry   the state of a Gridlet
+     * @pre entry != null
+     * @post $none
+     */
+    void add(Entry entry) {
+        entries_.add(entry);
+    }
+
+    /**
+     * Gets the simulation time
+     * @return the time
+     * @pre $none
+     * @post $result >= 0.0
+     */
+    double getTime() {
+        return time_;
+    }
+
+    /**
+     * Gets the name of the workload entity that owns the Gridlets
+     * @return the entity name
+     * @pre $none
+     * @post $result != null
+     */
+    String getUserName() {
+        return userName_;
+    }
+
+    /**
+     * Gets the number of Gridlets received by the resource, i.e. the number
+     * of jobs of the trace a resumed workload skips
+     * @return the number of Gridlets
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getNumSubmitted() {
+        return received_.length;
+    }
+
+    /**
+     * Gets the IDs of the Gridlets received by the resource
+     * @return the IDs in increasing order, which must not be changed
+     * @pre $none
+     * @post $result != null
+     */
+    int[] getReceived() {
+        return received_;
+    }
+
+    /**
+     * Checks whether the resource had received a Gridlet
+     * @param gridletId   a Gridlet ID
+     * @return <tt>true</tt> if a resumed workload skips this job
+     * @pre $none
+     * @post $none
+     */
+    boolean isReceived(int gridletId) {
+        return Arrays.binarySearch(received_, gridletId) >= 0;
+    }
+
+    /**
+     * Gets the Gridlets that are queued, running or paused
+     * @return the Gridlets, in the order they were added
+     * @pre $none
+     * @post $result != null
+     */
+    ArrayList<Entry> getEntries() {
+        return entries_;
+    }
+
+    /**
+     * Writes this snapshot into a file
+     * @param fileName  the file name
+     * @throws IOException  if the file can not be written
+     * @pre fileName != null
+     * @post $none
+     */
+    void write(String fileName) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(fileName), BUFFER_SIZE));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(time_);
+            out.writeUTF(userName_);
+            out.writeInt(received_.length);
+            for (int id : received_) {
+                out.writeInt(id);
+            }
+            out.writeInt(entries_.size());
+            for (Entry e : entries_) {
+                e.write(out);
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a snapshot file
+     * @param fileName  the file name
+     * @return the snapshot
+     * @throws IOException  if the file can not be read or is not a snapshot
+     * @pre fileName != null
+     * @post $result != null
+     */
+    static SimulationSnapshot read(String fileName) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(fileName), BUFFER_SIZE));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(fileName + " is not a snapshot file");
+            }
+
+            double time = in.readDouble();
+            String userName = in.readUTF();
+            int[] received = new int[in.readInt()];
+            for (int i = 0; i < received.length; i++) {
+                received[i] = in.readInt();
+            }
+            SimulationSnapshot snapshot = new SimulationSnapshot(time,
+                    userName, received);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                snapshot.add( Entry.read(in) );
+            }
+            return snapshot;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The state of one Gridlet. The fields of a running Gridlet are only
+     * used if it is running.
+     */
+    static final class Entry
+    {
+        int state_;
+        int gridletId_;
+        int numPE_;
+        int classType_;
+        long fileSize_;
+        long outputSize_;
+        double length_;
+        double finishedSoFar_;
+        double arrivalTime_;
+
+        // running Gridlets only
+        double execStartTime_;
+        double cpuTime_;        // run time before this snapshot
+        double finishTime_;
+        int rank_;              // order of completions with the same time
+        int[] machineIds_;
+        int[] peIds_;
+
+        /**
+         * Writes this entry
+         * @param out   the output
+         * @throws IOException  if it can not be written
+         */
+        private void write(DataOutputStream out) throws IOException
+        {
+            out.writeInt(state_);
+            out.writeInt(gridletId_);
+            out.writeInt(numPE_);
+            out.writeInt(classType_);
+            out.writeLong(fileSize_);
+            out.writeLong(outputSize_);
+            out.writeDouble(length_);
+            out.writeDouble(finishedSoFar_);
+            out.writeDouble(arrivalTime_);
+            if (state_ != RUNNING) {
+                return;
+            }
+
+            out.writeDouble(execStartTime_);
+            out.writeDouble(cpuTime_);
+            out.writeDouble(finishTime_);
+            out.writeInt(rank_);
+            out.writeInt(machineIds_.length);
+            for (int id : machineIds_) {
+                out.writeInt(id);
+            }
+            for (int id : peIds_) {
+                out.writeInt(id);
+            }
+        }
+
+        /**
+         * Reads an entry
+         * @param in   the input
+         * @return the entry
+         * @throws IOException  if it can not be read
+         */
+        private static Entry read(DataInputStream in) throws IOException
+        {
+            Entry e = new Entry();
+            e.state_ = in.readInt();
+            e.gridletId_ = in.readInt();
+            e.numPE_ = in.readInt();
+            e.classType_ = in.readInt();
+            e.fileSize_ = in.readLong();
+            e.outputSize_ = in.readLong();
+            e.length_ = in.readDouble();
+            e.finishedSoFar_ = in.readDouble();
+            e.arrivalTime_ = in.readDouble();
+            if (e.state_ != RUNNING) {
+                return e;
+            }
+
+            e.execStartTime_ = in.readDouble();
+            e.cpuTime_ = in.readDouble();
+            e.finishTime_ = in.readDouble();
+            e.rank_ = in.readInt();
+            int n = in.readInt();
+            e.machineIds_ = new int[n];
+            e.peIds_ = new int[n];
+            for (int i = 0; i < n; i++) {
+                e.machineIds_[i] = in.readInt();
+            }
+            for (int i = 0; i < n; i++) {
+                e.peIds_[i] = in.readInt();
+            }
+            return e;
+        }
+    }
+}
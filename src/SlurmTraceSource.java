@@ -0,0 +1,690 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads jobs straight from the accounting log of a Slurm cluster, i.e. the
+ * output of
+ * <pre>
+ * sacct -a -P -sCD -S start_time --format JobID,JobName,Partition,User,NCPUS,Submit,Start,End
+ * </pre>
+ * The first line is the header, and the fields of each line are separated
+ * by <tt>|</tt>. The columns are found by their name in the header, so
+ * they can be in any order and other columns are ignored; only
+ * <tt>JobID</tt>, <tt>Partition</tt>, <tt>NCPUS</tt>, <tt>Submit</tt>,
+ * <tt>Start</tt> and <tt>End</tt> are needed. The file can be ASCII text or
+ * gz.
+ * <p>
+ * The jobs are filtered in the same way as the traces made from these logs:
+ * <ul>
+ *      <li> job steps and array jobs, whose ID is not a plain number, are
+ *           skipped
+ *      <li> jobs that ran for less than {@link #setMinRunTime(int)} seconds
+ *           are skipped
+ *      <li> jobs with an unknown start or end time are skipped
+ * </ul>
+ * The jobs are numbered from 1 in the order they are read. The run time is
+ * <tt>End - Start</tt>, and the class type comes from the partition, see
+ * {@link #setPartition(String, int)}.
+ * <p>
+ * The times are in the <tt>YYYY-MM-DDTHH:MM:SS</tt> format of Slurm, in
+ * the default time zone. They are parsed by hand, and the time of the
+ * start of each hour is cached, so a <tt>Calendar</tt> is only used for a
+ * new hour of a column. Daylight saving changes happen on the hour, hence
+ * they are still taken into account.
+ *
+ * @see MyWorkload
+ * @invariant $none
+ */
+final class SlurmTraceSource implements TraceSource
+{
+    /** The default min. run time of a job, in seconds */
+    static final int DEFAULT_MIN_RUN_TIME = 360;
+
+    private static final char SEPARATOR = '|';
+    private static final String JOB_ID = "JobID";
+    private static final int UNKNOWN_PARTITION = -1;
+
+    private final String name_;     // name used for printing messages
+    private final String fileName_; // file name
+    private final HashMap<String, Integer> partitions_;  // -> class type
+    private String lastPartition_;  // partition of the last job
+    private int lastClassType_;     // and its class type
+    private int minRunTime_;
+
+    // column index of each field, found in the header
+    private int jobIdField_;
+    private int partitionField_;
+    private int numPEField_;
+    private int submitField_;
+    private int startField_;
+    private int endField_;
+    private int maxField_;      // number of columns needed from a line
+
+    // trace cursor
+    private MappedLineReader mapped_;   // reader of an uncompressed file
+    private BufferedReader reader_;     // reader of a gz file
+    private int[] start_;               // offset of each column of a line
+    private int[] end_;                 // offset after each column
+    private int lineNum_;               // current line number
+    private int count_;                 // number of jobs read so far
+    private int numUnknownPartition_;   // jobs of unmapped partitions
+
+    // one date parser for each column, as each one caches its last hour
+    private final DateParser submitDate_;
+    private final DateParser startDate_;
+    private final DateParser endDate_;
+
+    // the current job
+    private int jobNum_;
+    private long submitTime_;
+    private int runTime_;
+    private int numPE_;
+    private int classType_;
+
+    /**
+     * Creates a new Slurm trace source
+     * @param name      a name used for printing messages
+     * @param fileName  the sacct output, as ASCII text or gz
+     * @pre name != null
+     * @pre fileName != null
+     * @post $none
+     */
+    SlurmTraceSource(String name, String fileName)
+    {
+        name_ = name;
+        fileName_ = fileName;
+        partitions_ = new HashMap<String, Integer>();
+        minRunTime_ = DEFAULT_MIN_RUN_TIME;
+        lastPartition_ = null;
+        lastClassType_ = 0;
+
+        mapped_ = null;
+        reader_ = null;
+        start_ = null;
+        end_ = null;
+        lineNum_ = 0;
+        count_ = 0;
+        numUnknownPartition_ = 0;
+
+        submitDate_ = new DateParser();
+        startDate_ = new DateParser();
+        endDate_ = new DateParser();
+    }
+
+    /**
+     * Checks whether a file is the output of sacct, i.e. whether its first
+     * line is a header with a <tt>JobID</tt> column separated by
+     * <tt>|</tt>
+     * @param fileName  the file name
+     * @return <tt>true</tt> if it is, <tt>false</tt> otherwise
+     * @throws IOException  if the file can not be read
+     * @pre fileName != null
+     * @post $none
+     */
+    static boolean isSlurmTrace(String fileName) throws IOException
+    {
+        if (fileName.endsWith(".zip")) {
+            return false;
+        }
+
+        BufferedReader in = openReader(fileName);
+        try
+        {
+            String header = in.readLine();
+            if (header == null || header.indexOf(SEPARATOR) < 0) {
+                return false;
+            }
+            for (String column : header.split("\\|")) {
+                if (column.trim().equals(JOB_ID)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        catch (IOException e) {
+            return false;   // e.g. not a gz file after all
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Maps a partition to a class type. A partition whose name is a number
+     * is mapped to that number by default, and any other one that is not
+     * mapped to {@link TextTraceSource#DEFAULT_CLASS_TYPE}.
+     * This method should be called before opening the trace.
+     * @param partition  the partition name, as in sacct
+     * @param classType  its class type, e.g. <tt>0</tt> for the medium
+     *                   partition of {@link CenapadAllocPolicy}
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre partition != null
+     * @pre classType >= 0
+     * @post $none
+     */
+    boolean setPartition(String partition, int classType)
+    {
+        if (partition == null || partition.length() == 0 || classType < 0) {
+            return false;
+        }
+
+        partitions_.put(partition, classType);
+        lastPartition_ = null;
+        return true;
+    }
+
+    /**
+     * Sets the min. run time of a job. Shorter jobs are skipped.
+     * This method should be called before opening the trace.
+     * @param seconds  the min. run time, or <tt>0</tt> to keep every job
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre seconds >= 0
+     * @post $none
+     */
+    boolean setMinRunTime(int seconds)
+    {
+        if (seconds < 0) {
+            return false;
+        }
+
+        minRunTime_ = seconds;
+        return true;
+    }
+
+    /**
+     * Opens the trace file and reads its header
+     * @throws IOException  if the file can not be opened or the header does
+     *                      not have the needed columns
+     * @pre $none
+     * @post $none
+     */
+    public void open() throws IOException
+    {
+        lineNum_ = 0;
+        count_ = 0;
+        numUnknownPartition_ = 0;
+
+        try
+        {
+            // read from uncompressed file straight from its bytes
+            if (fileName_.endsWith(".gz")) {
+                reader_ = openReader(fileName_);
+            }
+            else {
+                mapped_ = new MappedLineReader(fileName_);
+            }
+
+            CharSequence header = nextLine();
+            if (header == null) {
+                throw new IOException(fileName_ + " is empty");
+            }
+            readHeader(header.toString());
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next job in the trace. Lines that are not jobs, that are
+     * filtered out or that can not be parsed are skipped.
+     * @return <tt>true</tt> if there is a job, <tt>false</tt> at the end of
+     *         the trace
+     * @throws IOException  if the trace can not be read
+     * @pre $none
+     * @post $none
+     */
+    public boolean next() throws IOException
+    {
+        CharSequence line = null;
+        while ( (line = nextLine()) != null )
+        {
+            if (parseLine(line) == true)
+            {
+                count_++;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public int next(TraceBatch batch, int maxJobs) throws IOException {
+        return batch.fill(this, maxJobs);
+    }
+
+    public int getJobNum() {
+        return jobNum_;
+    }
+
+    public long getSubmitTime() {
+        return submitTime_;
+    }
+
+    public int getRunTime() {
+        return runTime_;
+    }
+
+    public int getNumPE() {
+        return numPE_;
+    }
+
+    public int getClassType() {
+        return classType_;
+    }
+
+    /**
+     * Closes the trace file
+     * @throws IOException  if the file can not be closed
+     * @pre $none
+     * @post $none
+     */
+    public void close() throws IOException
+    {
+        if (numUnknownPartition_ > 0)
+        {
+            System.out.println(name_ + ": Warning - " + numUnknownPartition_
+                    + " jobs of unmapped partitions got class type "
+                    + TextTraceSource.DEFAULT_CLASS_TYPE + ".");
+            numUnknownPartition_ = 0;
+        }
+
+        try
+        {
+            if (mapped_ != null) {
+                mapped_.close();    // close the file
+            }
+            if (reader_ != null) {
+                reader_.close();    // close the file
+            }
+        }
+        finally
+        {
+            mapped_ = null;
+            reader_ = null;
+        }
+    }
+
+    /**
+     * Opens a text or gz file for reading lines
+     * @param fileName  the file name
+     * @return the reader
+     * @throws IOException  if the file can not be opened
+     * @pre fileName != null
+     * @post $result != null
+     */
+    private static BufferedReader openReader(String fileName) throws IOException
+    {
+        InputStream in = new FileInputStream(fileName);
+        try
+        {
+            if (fileName.endsWith(".gz")) {
+                in = new GZIPInputStream(in);
+            }
+        }
+        catch (IOException e)
+        {
+            in.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(in));
+    }
+
+    /**
+     * Finds the columns of the needed fields
+     * @param header  the first line of the trace
+     * @throws IOException  if a needed column is missing
+     * @pre header != null
+     * @post $none
+     */
+    private void readHeader(String header) throws IOException
+    {
+        String[] columns = header.split("\\|");
+        jobIdField_ = findColumn(columns, JOB_ID);
+        partitionField_ = findColumn(columns, "Partition");
+        numPEField_ = findColumn(columns, "NCPUS");
+        submitField_ = findColumn(columns, "Submit");
+        startField_ = findColumn(columns, "Start");
+        endField_ = findColumn(columns, "End");
+
+        maxField_ = 1 + Math.max(Math.max(jobIdField_, partitionField_),
+                Math.max(numPEField_, Math.max(submitField_,
+                Math.max(startField_, endField_))));
+        start_ = new int[maxField_];
+        end_ = new int[maxField_];
+    }
+
+    /**
+     * Finds a column of the header by its name
+     * @param columns  the column names
+     * @param name     the name to look for
+     * @return the column index
+     * @throws IOException  if there is no such column
+     * @pre columns != null
+     * @pre name != null
+     * @post $result >= 0
+     */
+    private int findColumn(String[] columns, String name) throws IOException
+    {
+        for (int i = 0; i < columns.length; i++)
+        {
+            if (columns[i].trim().equals(name)) {
+                return i;
+            }
+        }
+        throw new IOException(fileName_ + " has no " + name + " column");
+    }
+
+    /**
+     * Reads the next line of the trace
+     * @return a line of string, which is only valid until the next call to
+     *         this method, or <tt>null</tt> at the end of the trace
+     * @throws IOException  if an error occurs while reading the file
+     * @pre $none
+     * @post $none
+     */
+    private CharSequence nextLine() throws IOException
+    {
+        CharSequence line = null;
+        if (mapped_ != null) {
+            line = mapped_.nextLine();
+        }
+        else if (reader_ != null) {
+            line = reader_.readLine();
+        }
+
+        if (line != null) {
+            lineNum_++;
+        }
+        return line;
+    }
+
+    /**
+     * Parses a line into the current job
+     * @param line  a line of the trace
+     * @return <tt>true</tt> if the line is a job that is kept,
+     *         <tt>false</tt> otherwise
+     * @pre line != null
+     * @post $none
+     */
+    private boolean parseLine(CharSequence line)
+    {
+        // only the offsets of the needed columns are kept
+        int count = 0;
+        int begin = 0;
+        int len = line.length();
+        for (int i = 0; i <= len && count < maxField_; i++)
+        {
+            if (i == len || line.charAt(i) == SEPARATOR)
+            {
+                start_[count] = begin;
+                end_[count] = i;
+                count++;
+                begin = i + 1;
+            }
+        }
+        if (count < maxField_) {
+            return false;
+        }
+
+        // job steps (123.batch) and array jobs (123_4) are not jobs
+        if (isNumber(line, jobIdField_) == false) {
+            return false;
+        }
+
+        long submit = submitDate_.parse(line, start_[submitField_], end_[submitField_]);
+        long start = startDate_.parse(line, start_[startField_], end_[startField_]);
+        long end = endDate_.parse(line, start_[endField_], end_[endField_]);
+        if (submit < 0 || start < 0 || end < 0) {
+            return false;   // e.g. Unknown or None
+        }
+
+        long runTime = end - start;
+        if (runTime < minRunTime_ || runTime > Integer.MAX_VALUE) {
+            return false;
+        }
+
+        int numPE = (int) parseNumber(line, numPEField_);
+        if (numPE <= 0)
+        {
+            System.out.println(name_ + ": Warning - job at line "
+                    + lineNum_ + " requires " + numPE
+                    + " CPU. Change to 1 CPU.");
+            numPE = 1;
+        }
+
+        jobNum_ = count_ + 1;   // the same as the Gridlet ID
+        submitTime_ = submit;
+        runTime_ = Math.max((int) runTime, 1);
+        numPE_ = numPE;
+        classType_ = getClassType(line);
+        return true;
+    }
+
+    /**
+     * Gets the class type of the partition of the current line. A job that
+     * can run in several partitions is given the first one.
+     * @param line  a line of the trace
+     * @return the class type
+     * @pre line != null
+     * @post $result >= 0
+     */
+    private int getClassType(CharSequence line)
+    {
+        int from = start_[partitionField_];
+        int to = end_[partitionField_];
+        for (int i = from; i < to; i++)
+        {
+            if (line.charAt(i) == ',')
+            {
+                to = i;
+                break;
+            }
+        }
+
+        // most jobs are in the same partition as the one before
+        if (lastPartition_ == null || regionEquals(line, from, to,
+                lastPartition_) == false)
+        {
+            String partition = line.subSequence(from, to).toString();
+            Integer classType = partitions_.get(partition.trim());
+            if (classType == null)
+            {
+                try {
+                    classType = Integer.parseInt(partition.trim());
+                }
+                catch (NumberFormatException e) {
+                    classType = UNKNOWN_PARTITION;
+                }
+                partitions_.put(partition.trim(), classType);
+            }
+            lastPartition_ = partition;
+            lastClassType_ = classType;
+        }
+
+        if (lastClassType_ == UNKNOWN_PARTITION)
+        {
+            numUnknownPartition_++;
+            return TextTraceSource.DEFAULT_CLASS_TYPE;
+        }
+        return lastClassType_;
+    }
+
+    /**
+     * Checks whether a part of a line is a given string
+     * @param line   a line of the trace
+     * @param from   offset of the first char of the part
+     * @param to     offset after its last char
+     * @param str    the string
+     * @return <tt>true</tt> if they are the same, <tt>false</tt> otherwise
+     * @pre line != null
+     * @pre str != null
+     * @post $none
+     */
+    private static boolean regionEquals(CharSequence line, int from, int to,
+            String str)
+    {
+        if (to - from != str.length()) {
+            return false;
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            if (line.charAt(i) != str.charAt(i - from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a column is a non-negative number
+     * @param line    a line of the trace
+     * @param field   the column index
+     * @return <tt>true</tt> if it is, <tt>false</tt> otherwise
+     * @pre line != null
+     * @post $none
+     */
+    private boolean isNumber(CharSequence line, int field)
+    {
+        int from = start_[field];
+        int to = end_[field];
+        if (from == to || to - from > 18) {
+            return false;
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a column as a non-negative number
+     * @param line    a line of the trace
+     * @param field   the column index
+     * @return the number, or <tt>-1</tt> if it is not one
+     * @pre line != null
+     * @post $none
+     */
+    private long parseNumber(CharSequence line, int field)
+    {
+        if (isNumber(line, field) == false) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = start_[field]; i < end_[field]; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Parses the <tt>YYYY-MM-DDTHH:MM:SS</tt> times of one column, caching
+     * the time of the start of the last hour, since the times of a column
+     * are close to each other.
+     */
+    private static final class DateParser
+    {
+        private static final int LENGTH = 19;   // YYYY-MM-DDTHH:MM:SS
+
+        private final Calendar calendar_;
+        private long lastHour_;     // YYYYMMDDHH of the cached hour
+        private long lastTime_;     // its time, in seconds
+
+        DateParser()
+        {
+            calendar_ = Calendar.getInstance();
+            lastHour_ = -1;
+            lastTime_ = 0;
+        }
+
+        /**
+         * Parses a time
+         * @param line   a line of the trace
+         * @param from   offset of the first char of the time
+         * @param to     offset after its last char
+         * @return the time, in seconds since the epoch, or <tt>-1</tt> if
+         *         it is not a valid time
+         * @pre line != null
+         * @post $none
+         */
+        long parse(CharSequence line, int from, int to)
+        {
+            if (to - from != LENGTH || line.charAt(from + 4) != '-'
+                    || line.charAt(from + 7) != '-'
+                    || line.charAt(from + 10) != 'T'
+                    || line.charAt(from + 13) != ':'
+                    || line.charAt(from + 16) != ':') {
+                return -1;
+            }
+
+            int year = digits(line, from, 4);
+            int month = digits(line, from + 5, 2);
+            int day = digits(line, from + 8, 2);
+            int hour = digits(line, from + 11, 2);
+            int minute = digits(line, from + 14, 2);
+            int second = digits(line, from + 17, 2);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                    || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                    || second < 0 || second > 59) {
+                return -1;
+            }
+
+            long key = ((year * 100L + month) * 100 + day) * 100 + hour;
+            if (key != lastHour_)
+            {
+                // a missing hour of a daylight saving change is moved on,
+                // like mktime() does
+                calendar_.clear();
+                calendar_.set(year, month - 1, day, hour, 0, 0);
+                lastTime_ = calendar_.getTimeInMillis() / 1000;
+                lastHour_ = key;
+            }
+            return lastTime_ + minute * 60 + second;
+        }
+
+        /**
+         * Reads a number of decimal digits
+         * @param line    a line of the trace
+         * @param from    offset of the first digit
+         * @param count   number of digits
+         * @return the number, or <tt>-1</tt> if a char is not a digit
+         * @pre line != null
+         * @post $none
+         */
+        private static int digits(CharSequence line, int from, int count)
+        {
+            int value = 0;
+            for (int i = from; i < from + count; i++)
+            {
+                int digit = line.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return -1;
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,715 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2004, The University of Melbourne, Australia
+ */
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads jobs from a workload trace in a text format, where each line is a
+ * job and the fields are separated by whitespaces. The file can be in one
+ * of the following format: <i>ASCII text, zip, gz.</i> An uncompressed file
+ * is read through a {@link MappedLineReader}. A gz or zip file can be read
+ * with several threads through a {@link ParallelTraceReader}, see
+ * {@link #setThreads(int)}.
+ * <p>
+ * By default, this class follows the standard workload format as specified
+ * in <a href="http://www.cs.huji.ac.il/labs/parallel/workload/">
+ * http://www.cs.huji.ac.il/labs/parallel/workload/</a> <br>
+ * However, you can use other format by calling the below methods before
+ * opening the trace:
+ * <ul>
+ *      <li> {@link #setComment(String)}
+ *      <li> {@link #setField(int, int, int, int, int, int)}
+ * </ul>
+ *
+ * @author   Anthony Sulistio
+ * @see MyWorkload
+ * @invariant $none
+ */
+final class TextTraceSource implements TraceSource
+{
+    private final String name_;     // name used for printing messages
+    private final String fileName_; // file name
+
+    // constant
+    private int JOB_NUM;        // job number
+    private int SUBMIT_TIME;    // submit time of a Gridlet
+    private int RUN_TIME;       // running time of a Gridlet
+    private int NUM_PROC;       // number of processors needed for a Gridlet
+    private int REQ_NUM_PROC;   // required number of processors
+    private int REQ_RUN_TIME;   // required running time
+    private int MAX_FIELD;      // max number of field in the trace file
+    private String COMMENT;     // a string that denotes the start of a comment
+    private static final int IRRELEVANT = -1;  // irrelevant number
+    private int CLASSTYPE;      // class type, -1 if not in the trace
+
+    /** Class type of the jobs of a trace without class type field */
+    static final int DEFAULT_CLASS_TYPE = 1;
+
+    // trace cursor
+    private TraceTokenizer tokenizer_;  // breaks a line into fields
+    private MappedLineReader mapped_;   // reader of an uncompressed file
+    private BufferedReader reader_;     // reader of a compressed file or entry
+    private ZipFile zipFile_;           // the zip file being read, if any
+    private Enumeration<? extends ZipEntry> zipEntries_;  // remaining entries
+    private int lineNum_;               // current line number of the reader
+    private int count_;                 // number of jobs read so far
+    private int numThreads_;            // threads reading a gz or zip file
+    private ParallelTraceReader parallel_;  // reader with those threads
+
+    // the current job
+    private int jobNum_;
+    private long submitTime_;
+    private int runTime_;
+    private int numPE_;
+    private int classType_;
+
+    /**
+     * Creates a new text trace source
+     * @param name      a name used for printing messages
+     * @param fileName  the workload trace filename in one of the following
+     *                  format: <i>ASCII text, zip, gz.</i>
+     * @pre name != null
+     * @pre fileName != null
+     * @post $none
+     */
+    TextTraceSource(String name, String fileName)
+    {
+        name_ = name;
+        fileName_ = fileName;
+
+        // if using Standard Workload Format -- don't forget to substract by 1
+        // since an array starts at 0, but the field in a trace starts at 1
+        JOB_NUM = 1 - 1;
+        SUBMIT_TIME = 2 - 1;
+        RUN_TIME = 4 - 1;
+        NUM_PROC = 5 - 1;
+        REQ_NUM_PROC = 8 - 1;
+        REQ_RUN_TIME = 9 - 1;
+
+        COMMENT = ";";      // semicolon means the start of a comment
+        MAX_FIELD = 18;     // standard workload format has 18 fields
+
+        tokenizer_ = null;
+        mapped_ = null;
+        reader_ = null;
+        zipFile_ = null;
+        zipEntries_ = null;
+        lineNum_ = 0;
+        count_ = 0;
+        numThreads_ = 1;
+        parallel_ = null;
+    }
+
+    /**
+     * Creates a source for a trace in the standard workload format, i.e.
+     * with 18 fields and <tt>;</tt> comments
+     * @param name      a name used for printing messages
+     * @param fileName  the workload trace filename
+     * @return the trace source
+     * @pre name != null
+     * @pre fileName != null
+     * @post $result != null
+     */
+    static TextTraceSource createSwf(String name, String fileName) {
+        return new TextTraceSource(name, fileName);
+    }
+
+    /**
+     * Creates a source for a <tt>.jobs</tt> trace, i.e. with the job
+     * number, submit time, run time, number of PEs and optionally the
+     * class type, separated by tabs, and <tt>#</tt> comments
+     * @param name       a name used for printing messages
+     * @param fileName   the workload trace filename
+     * @param classType  <tt>true</tt> if the trace has the class type
+     *                   field, <tt>false</tt> if every job is of class type
+     *                   {@link #DEFAULT_CLASS_TYPE}
+     * @return the trace source
+     * @pre name != null
+     * @pre fileName != null
+     * @post $result != null
+     */
+    static TextTraceSource createJobs(String name, String fileName,
+                                      boolean classType)
+    {
+        TextTraceSource source = new TextTraceSource(name, fileName);
+        if (classType == true) {
+            source.setField(5, 1, 2, 3, 4, 5);
+        }
+        else {
+            source.setField(4, 1, 2, 3, 4, 0);
+        }
+        source.setComment("#");
+        return source;
+    }
+
+    /**
+     * Identifies the start of a comment line. Hence, a line that starts
+     * with a given comment will be ignored.
+     * @param comment  a character that denotes the start of a comment,
+     *                 e.g. ";" or "#"
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre comment != null
+     * @post $none
+     */
+    boolean setComment(String comment)
+    {
+        boolean success = false;
+        if (comment != null && comment.length() > 0)
+        {
+            COMMENT = comment;
+            success = true;
+        }
+        return success;
+    }
+
+    /**
+     * Tells this class what to look in the trace file.
+     * This method should be called before opening the trace.
+     * <p>
+     * The parameters must be a positive integer number starting from 1.
+     * A special case is where <tt>jobNum == -1</tt>, meaning the job or
+     * gridlet ID starts at 1.
+     *
+     * @param maxField  max. number of field/column in one row
+     * @param jobNum    field/column number for locating the job ID
+     * @param submitTime   field/column number for locating the job submit time
+     * @param runTime   field/column number for locating the job run time
+     * @param numProc   field/column number for locating the number of PEs
+     *                  required to run a job
+     * @param classType field/column number for locating the job class type,
+     *                  or <tt>0</tt> if the trace has none and every job is
+     *                  of class type {@link #DEFAULT_CLASS_TYPE}
+     * @return <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @pre maxField > 0
+     * @pre submitTime > 0
+     * @pre runTime > 0
+     * @pre numProc > 0
+     * @pre classType >= 0
+     * @post $none
+     */
+    boolean setField(int maxField, int jobNum, int submitTime,
+                     int runTime, int numProc, int classType)
+    {
+        // need to substract by 1 since array starts at 0. Need to convert,
+        // position in a field into the index of the array
+        if (jobNum > 0) {
+            JOB_NUM = jobNum - 1;
+        }
+        else if (jobNum == 0)
+        {
+            System.out.println(name_ +
+                    ".setField(): Invalid job number field.");
+            return false;
+        }
+        else {
+            JOB_NUM = -1;
+        }
+
+        // get the max. number of field
+        if (maxField > 0) {
+            MAX_FIELD = maxField;
+        }
+        else
+        {
+            System.out.println(name_ +
+                    ".setField(): Invalid max. number of field.");
+            return false;
+        }
+
+        // get the submit time field
+        if (submitTime > 0) {
+            SUBMIT_TIME = submitTime - 1;
+        }
+        else
+        {
+            System.out.println(name_ +
+                    ".setField(): Invalid submit time field.");
+            return false;
+        }
+
+        // get the run time field
+        if (runTime > 0) {
+            REQ_RUN_TIME = runTime - 1;
+        }
+        else
+        {
+            System.out.println(name_ +
+                    ".setField(): Invalid run time field.");
+            return false;
+        }
+
+        // get the number of processors field
+        if (numProc > 0) {
+            REQ_NUM_PROC = numProc - 1;
+        }
+        else
+        {
+            System.out.println(name_ +
+                    ".setField(): Invalid number of processors field.");
+            return false;
+        }
+
+        // get the class type field     ~RenatoCJN
+        if (classType > 0) {
+            CLASSTYPE = classType - 1;
+        } else if (classType == 0) {
+            CLASSTYPE = -1;     // not in the trace
+        } else {
+           System.out.println(name_ +
+                    ".setField(): Invalid class type field.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Sets the number of threads that parse a gz or zip file, besides the
+     * ones that decompress it. With more than one thread, the entries of
+     * a zip file are read at the same time and their jobs are merged by
+     * submit time, instead of being read one entry after the other.
+     * An uncompressed file is always read by one thread.
+     * This method should be called before opening the trace.
+     * @param numThreads  the number of threads, or <tt>1</tt> to read the
+     *                    file in the calling thread
+     * @return <tt>true</tt> if it is successful, <tt>false</tt> otherwise
+     * @pre numThreads > 0
+     * @post $none
+     */
+    boolean setThreads(int numThreads)
+    {
+        if (numThreads <= 0) {
+            return false;
+        }
+
+        numThreads_ = numThreads;
+        return true;
+    }
+
+    /**
+     * Gets the field mapping of this trace, in the same order and numbering
+     * as the parameters of {@link #setField(int, int, int, int, int, int)}
+     * @return an array of maxField, jobNum, submitTime, runTime, numProc and
+     *         classType
+     * @pre $none
+     * @post $result != null
+     */
+    int[] getField()
+    {
+        int jobNum = (JOB_NUM == IRRELEVANT) ? IRRELEVANT : JOB_NUM + 1;
+        return new int[] { MAX_FIELD, jobNum, SUBMIT_TIME + 1,
+                REQ_RUN_TIME + 1, REQ_NUM_PROC + 1, CLASSTYPE + 1 };
+    }
+
+    /**
+     * Opens the trace file
+     * @throws IOException  if the file can not be opened
+     * @pre $none
+     * @post $none
+     */
+    public void open() throws IOException
+    {
+        // create a tokenizer for the trace lines
+        tokenizer_ = new TraceTokenizer(MAX_FIELD);
+        lineNum_ = 0;
+        count_ = 0;
+
+        try
+        {
+            InputStream in = null;
+            boolean compressed = fileName_.endsWith(".gz")
+                    || fileName_.endsWith(".zip");
+
+            // decompress and parse with several threads
+            if (compressed == true && numThreads_ > 1)
+            {
+                parallel_ = new ParallelTraceReader(fileName_,
+                        new ParallelTraceReader.ChunkParser()
+                {
+                    public TraceBatch parse(byte[] bytes, int from, int to,
+                            int firstLine, int numLines,
+                            ArrayList<String> messages) {
+                        return parseChunk(bytes, from, to, firstLine,
+                                numLines, messages);
+                    }
+                }, numThreads_);
+                parallel_.open();
+            }
+            // read the gz file
+            else if (fileName_.endsWith(".gz")) {
+                in = new GZIPInputStream(new FileInputStream(fileName_));
+            }
+            // read the zip file, iterating through each entry
+            else if (fileName_.endsWith(".zip"))
+            {
+                zipFile_ = new ZipFile(fileName_);
+                zipEntries_ = zipFile_.entries();
+                if (zipEntries_.hasMoreElements()) {
+                    in = zipFile_.getInputStream(zipEntries_.nextElement());
+                }
+            }
+            // read from uncompressed file as well, straight from its bytes
+            else {
+                mapped_ = new MappedLineReader(fileName_);
+            }
+
+            if (in != null) {
+                reader_ = new BufferedReader(new InputStreamReader(in));
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Moves to the next job in the trace. Lines that are comments, that do
+     * not have the expected number of fields or that can not be parsed are
+     * skipped.
+     * @return <tt>true</tt> if there is a job, <tt>false</tt> at the end of
+     *         the trace
+     * @throws IOException  if the trace can not be read
+     * @pre $none
+     * @post $none
+     */
+    public boolean next() throws IOException
+    {
+        if (parallel_ != null) {
+            return nextParsed();
+        }
+
+        CharSequence line = null;
+        while ( (line = nextLine()) != null )
+        {
+            if (parseValue(tokenizer_, line, lineNum_, null, null) == true)
+            {
+                count_++;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves to the next job parsed by the threads of the parallel reader
+     * @return <tt>true</tt> if there is a job, <tt>false</tt> at the end of
+     *         the trace
+     * @throws IOException  if the trace can not be read
+     * @pre $none
+     * @post $none
+     */
+    private boolean nextParsed() throws IOException
+    {
+        if (parallel_.next() == false) {
+            return false;
+        }
+
+        count_++;
+        jobNum_ = parallel_.getJobNum();
+        if (JOB_NUM == IRRELEVANT) {
+            jobNum_ = count_;   // the same as the Gridlet ID
+        }
+        submitTime_ = parallel_.getSubmitTime();
+        runTime_ = parallel_.getRunTime();
+        numPE_ = parallel_.getNumPE();
+        classType_ = parallel_.getClassType();
+        return true;
+    }
+
+    public int next(TraceBatch batch, int maxJobs) throws IOException {
+        return batch.fill(this, maxJobs);
+    }
+
+    public int getJobNum() {
+        return jobNum_;
+    }
+
+    public long getSubmitTime() {
+        return submitTime_;
+    }
+
+    public int getRunTime() {
+        return runTime_;
+    }
+
+    public int getNumPE() {
+        return numPE_;
+    }
+
+    public int getClassType() {
+        return classType_;
+    }
+
+    /**
+     * Closes the trace file
+     * @throws IOException  if the file can not be closed
+     * @pre $none
+     * @post $none
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            if (parallel_ != null) {
+                parallel_.close();  // stop the threads and close the file
+            }
+            if (mapped_ != null) {
+                mapped_.close();    // close the file
+            }
+            if (reader_ != null) {
+                reader_.close();    // close the file
+            }
+            if (zipFile_ != null) {
+                zipFile_.close();   // close the file
+            }
+        }
+        finally
+        {
+            parallel_ = null;
+            mapped_ = null;
+            reader_ = null;
+            zipFile_ = null;
+            zipEntries_ = null;
+        }
+    }
+
+    /**
+     * Reads the next line of the trace. For a zip file, this method moves on
+     * to the next entry once the current one has been read.
+     * @return a line of string, which is only valid until the next call to
+     *         this method, or <tt>null</tt> at the end of the trace
+     * @throws IOException  if an error occurs while reading the file
+     * @pre $none
+     * @post $none
+     */
+    private CharSequence nextLine() throws IOException
+    {
+        // an uncompressed file is mapped, so no String is created per line
+        if (mapped_ != null)
+        {
+            CharSequence line = mapped_.nextLine();
+            if (line != null) {
+                lineNum_++;
+            }
+            return line;
+        }
+
+        while (reader_ != null)
+        {
+            String line = reader_.readLine();
+            if (line != null)
+            {
+                lineNum_++;
+                return line;
+            }
+
+            reader_.close();   // close the file
+            reader_ = null;
+            if (zipEntries_ != null && zipEntries_.hasMoreElements())
+            {
+                ZipEntry zipEntry = zipEntries_.nextElement();
+                reader_ = new BufferedReader(
+                        new InputStreamReader(zipFile_.getInputStream(zipEntry)));
+                lineNum_ = 0;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the lines of a chunk of a gz or zip file. It is called by the
+     * threads of the parallel reader, so it only uses its own tokenizer.
+     * The job numbers are set later if the trace has none.
+     * @param bytes      an array containing the chunk
+     * @param from       offset of the first byte of the chunk
+     * @param to         offset after its last byte
+     * @param firstLine  line number of its first line
+     * @param numLines   number of lines of the chunk
+     * @param messages   where the warnings are added
+     * @return the jobs of the chunk
+     * @pre bytes != null
+     * @pre messages != null
+     * @post $result != null
+     */
+    private TraceBatch parseChunk(byte[] bytes, int from, int to,
+            int firstLine, int numLines, ArrayList<String> messages)
+    {
+        TraceTokenizer tokenizer = new TraceTokenizer(MAX_FIELD);
+        MappedLineReader.Line line = new MappedLineReader.Line();
+        TraceBatch batch = new TraceBatch( Math.max(numLines, 1) );
+
+        int lineNum = firstLine;
+        int start = from;
+        while (start < to)
+        {
+            int end = start;
+            while (end < to && bytes[end] != '\n') {
+                end++;
+            }
+
+            line.set(bytes, start, end);
+            parseValue(tokenizer, line, lineNum, batch, messages);
+            lineNum++;
+            start = end + 1;
+        }
+        return batch;
+    }
+
+    /**
+     * Breaks a line of string into many fields.
+     * @param tokenizer  the tokenizer to use
+     * @param line  a line of string
+     * @param lineNum   a line number
+     * @param batch     where the job is added, or <tt>null</tt> to make it
+     *                  the current job
+     * @param messages  where the warnings are added, or <tt>null</tt> to
+     *                  print them
+     * @return <tt>true</tt> if the line is a job, <tt>false</tt> otherwise
+     * @pre tokenizer != null
+     * @pre line != null
+     * @pre lineNum > 0
+     * @post $none
+     */
+    private boolean parseValue(TraceTokenizer tokenizer, CharSequence line,
+            int lineNum, TraceBatch batch, ArrayList<String> messages)
+    {
+        // skip a comment line
+        if (TraceTokenizer.startsWith(line, COMMENT) == true) {
+            return false;
+        }
+
+        // split the fields based on a space
+        if (tokenizer.tokenize(line) == MAX_FIELD) {
+            return extractField(tokenizer, lineNum, batch, messages);
+        }
+        return false;
+    }
+
+    /**
+     * Extracts relevant information from the fields of the last tokenized
+     * line
+     * @param tokenizer  the tokenizer of the line
+     * @param line   a line number
+     * @param batch     where the job is added, or <tt>null</tt> to make it
+     *                  the current job
+     * @param messages  where the warnings are added, or <tt>null</tt> to
+     *                  print them
+     * @return <tt>true</tt> if successful, <tt>false</tt> otherwise
+     * @pre tokenizer != null
+     * @pre line > 0
+     */
+    private boolean extractField(TraceTokenizer tokenizer, int line,
+            TraceBatch batch, ArrayList<String> messages)
+    {
+        try
+        {
+            // get the job number, unknown yet for a chunk
+            int id = 0;
+            if (JOB_NUM != IRRELEVANT) {
+                id = tokenizer.getInt(JOB_NUM);
+            }
+            else if (batch == null) {
+                id = count_ + 1;    // the same as the Gridlet ID
+            }
+
+            // get the submit time
+            long submitTime = tokenizer.getLong(SUBMIT_TIME);
+
+            // get the run time
+            int runTime = tokenizer.getInt(REQ_RUN_TIME);
+
+            // if the required run time field is ignored, then use
+            // the actual run time
+            if (runTime == IRRELEVANT) {
+                runTime = tokenizer.getInt(RUN_TIME);
+            }
+
+            // according to the SWF manual, runtime of 0 is possible due
+            // to rounding down. E.g. runtime is 0.4 seconds -> runtime = 0
+            if (runTime == 0) {
+                runTime = 1;    // change to 1 second
+            }
+
+            // get the number of allocated processors
+            int numProc = tokenizer.getInt(REQ_NUM_PROC);
+
+            // if the required num of allocated processors field is ignored
+            // or zero, then use the actual field
+            if (numProc == IRRELEVANT || numProc == 0) {
+                numProc = tokenizer.getInt(NUM_PROC);
+            }
+
+            // finally, check if the num of PEs required is valid or not
+            if (numProc <= 0)
+            {
+                String job = (id > 0 || batch == null) ? "job #" + id : "job";
+                print(name_ + ": Warning - " + job + " at line " + line
+                        + " requires " + numProc + " CPU. Change to 1 CPU.",
+                        messages);
+                numProc = 1;
+            }
+            int classType = DEFAULT_CLASS_TYPE;
+            if (CLASSTYPE >= 0) {
+                classType = tokenizer.getInt(CLASSTYPE);
+            }
+
+            if (batch != null)
+            {
+                batch.add(submitTime, id, runTime, numProc, classType);
+                return true;
+            }
+
+            jobNum_ = id;
+            submitTime_ = submitTime;
+            runTime_ = runTime;
+            numPE_ = numProc;
+            classType_ = classType;
+            return true;
+        }
+        catch (Exception e)
+        {
+            if (messages == null) {
+                e.printStackTrace();
+            }
+            print(name_ + ": Exception in reading file at line #" + line +
+                    ", exception: " + e.getMessage(), messages);
+        }
+
+        return false;
+    }
+
+    /**
+     * Prints a message now, or adds it to a list to print later
+     * @param message   the message
+     * @param messages  where it is added, or <tt>null</tt> to print it
+     * @pre message != null
+     * @post $none
+     */
+    private static void print(String message, ArrayList<String> messages)
+    {
+        if (messages == null) {
+            System.out.println(message);
+        }
+        else {
+            messages.add(message);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.IOException;
+
+/**
+ * A block of consecutive jobs of a trace, one primitive array per column,
+ * which is filled by {@link TraceSource#next(TraceBatch, int)}. An object of
+ * this class is meant to be reused for every block of a trace, so reading
+ * a trace does not create any object per job.
+ *
+ * @see TraceSource
+ * @invariant $none
+ */
+final class TraceBatch
+{
+    private final long[] submitTime_;
+    private final int[] jobNum_;
+    private final int[] runTime_;
+    private final int[] numPE_;
+    private final int[] classType_;
+    private int size_;              // number of jobs in this batch
+
+    /**
+     * Creates an empty batch
+     * @param capacity  max. number of jobs
+     * @pre capacity > 0
+     * @post $none
+     */
+    TraceBatch(int capacity)
+    {
+        submitTime_ = new long[capacity];
+        jobNum_ = new int[capacity];
+        runTime_ = new int[capacity];
+        numPE_ = new int[capacity];
+        classType_ = new int[capacity];
+        size_ = 0;
+    }
+
+    /**
+     * Fills this batch by moving a trace job by job, which is how a trace
+     * that is parsed line by line implements
+     * {@link TraceSource#next(TraceBatch, int)}
+     * @param source    a trace
+     * @param maxJobs   max. number of jobs to read
+     * @return the number of jobs read
+     * @throws IOException  if the trace can not be read
+     * @pre source != null
+     * @pre maxJobs > 0
+     * @post $result >= 0
+     */
+    int fill(TraceSource source, int maxJobs) throws IOException
+    {
+        size_ = 0;
+        int max = Math.min(maxJobs, jobNum_.length);
+        while (size_ < max && source.next() == true)
+        {
+            submitTime_[size_] = source.getSubmitTime();
+            jobNum_[size_] = source.getJobNum();
+            runTime_[size_] = source.getRunTime();
+            numPE_[size_] = source.getNumPE();
+            classType_[size_] = source.getClassType();
+            size_++;
+        }
+        return size_;
+    }
+
+    /**
+     * Empties this batch
+     * @pre $none
+     * @post getSize() == 0
+     */
+    void clear() {
+        size_ = 0;
+    }
+
+    /**
+     * Adds a job
+     * @param submitTime  the submit time
+     * @param jobNum      the job number
+     * @param runTime     the run time
+     * @param numPE       the number of PEs
+     * @param classType   the class type
+     * @pre getSize() < getCapacity()
+     * @post $none
+     */
+    void add(long submitTime, int jobNum, int runTime, int numPE,
+             int classType)
+    {
+        submitTime_[size_] = submitTime;
+        jobNum_[size_] = jobNum;
+        runTime_[size_] = runTime;
+        numPE_[size_] = numPE;
+        classType_[size_] = classType;
+        size_++;
+    }
+
+    /**
+     * Adds jobs from columns, e.g. a block of a binary trace
+     * @param submitTime  the submit times
+     * @param jobNum      the job numbers
+     * @param runTime     the run times
+     * @param numPE       the numbers of PEs
+     * @param classType   the class types
+     * @param from        index of the first job to add in the columns
+     * @param count       number of jobs to add
+     * @pre count <= getCapacity() - getSize()
+     * @post $none
+     */
+    void add(long[] submitTime, int[] jobNum, int[] runTime, int[] numPE,
+             int[] classType, int from, int count)
+    {
+        System.arraycopy(submitTime, from, submitTime_, size_, count);
+        System.arraycopy(jobNum, from, jobNum_, size_, count);
+        System.arraycopy(runTime, from, runTime_, size_, count);
+        System.arraycopy(numPE, from, numPE_, size_, count);
+        System.arraycopy(classType, from, classType_, size_, count);
+        size_ += count;
+    }
+
+    /**
+     * Gets the max. number of jobs
+     * @return the capacity
+     * @pre $none
+     * @post $result > 0
+     */
+    int getCapacity() {
+        return jobNum_.length;
+    }
+
+    /**
+     * Gets the number of jobs
+     * @return the number of jobs
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getSize() {
+        return size_;
+    }
+
+    /**
+     * Gets the job number of a job
+     * @param index  the index of the job in this batch
+     * @return the job number
+     * @pre index >= 0 && index < getSize()
+     * @post $none
+     */
+    int getJobNum(int index) {
+        return jobNum_[index];
+    }
+
+    /**
+     * Gets the submit time of a job
+     * @param index  the index of the job in this batch
+     * @return the submit time
+     * @pre index >= 0 && index < getSize()
+     * @post $none
+     */
+    long getSubmitTime(int index) {
+        return submitTime_[index];
+    }
+
+    /**
+     * Gets the run time of a job, in seconds
+     * @param index  the index of the job in this batch
+     * @return the run time
+     * @pre index >= 0 && index < getSize()
+     * @post $result > 0
+     */
+    int getRunTime(int index) {
+        return runTime_[index];
+    }
+
+    /**
+     * Gets the number of PEs required by a job
+     * @param index  the index of the job in this batch
+     * @return the number of PEs
+     * @pre index >= 0 && index < getSize()
+     * @post $result > 0
+     */
+    int getNumPE(int index) {
+        return numPE_[index];
+    }
+
+    /**
+     * Gets the class type of a job
+     * @param index  the index of the job in this batch
+     * @return the class type
+     * @pre index >= 0 && index < getSize()
+     * @post $none
+     */
+    int getClassType(int index) {
+        return classType_[index];
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+/**
+ * Converts a text workload trace into the binary format read by
+ * {@link BinaryTraceSource}, so a trace is parsed once instead of every
+ * time a simulation runs. {@link MyWorkload} recognises a binary trace by
+ * its first bytes, whatever its file name is.
+ * <p>
+ * Usage:
+ * <pre>
+ *  java TraceConverter input output [maxField jobNum submitTime runTime numProc classType] [comment]
+ * </pre>
+ * The fields have the same meaning as in
+ * {@link MyWorkload#setField(int, int, int, int, int, int)}. By default,
+ * the 5 field format of the <tt>.jobs</tt> traces is used, i.e.
+ * <tt>5 1 2 3 4 5 #</tt>.
+ *
+ * @see BinaryTraceSource
+ * @invariant $none
+ */
+public class TraceConverter
+{
+    public static void main(String[] args)
+    {
+        if (args.length != 2 && args.length != 8 && args.length != 9)
+        {
+            System.out.println("Usage: java TraceConverter input output "
+                    + "[maxField jobNum submitTime runTime numProc classType] "
+                    + "[comment]");
+            System.exit(1);
+        }
+
+        try
+        {
+            String input = args[0];
+            String output = args[1];
+
+            // the same format as in ExampleWorkload by default
+            int[] field = { 5, 1, 2, 3, 4, 5 };
+            String comment = "#";
+            if (args.length > 2)
+            {
+                for (int i = 0; i < field.length; i++) {
+                    field[i] = Integer.parseInt(args[i + 2]);
+                }
+            }
+            if (args.length > 8) {
+                comment = args[8];
+            }
+
+            long start = System.currentTimeMillis();
+            TextTraceSource source = new TextTraceSource("TraceConverter", input);
+            if (source.setField(field[0], field[1], field[2], field[3],
+                    field[4], field[5]) == false || source.setComment(comment) == false)
+            {
+                System.exit(1);
+            }
+
+            BinaryTraceWriter writer = new BinaryTraceWriter(source.getField());
+            source.open();
+            try
+            {
+                while (source.next() == true) {
+                    writer.add(source);
+                }
+            }
+            finally {
+                source.close();
+            }
+            writer.write(output);
+
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.println("Converted " + writer.getCount() + " jobs from "
+                    + input + " into " + output + " in " + elapsed + " ms");
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
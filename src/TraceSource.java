@@ -0,0 +1,115 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+import java.io.IOException;
+
+/**
+ * A cursor over the jobs of a workload trace. Each call to {@link #next()}
+ * moves to the next job, whose attributes are then available as primitive
+ * values until the following call. The values are already checked, e.g. a
+ * run time of 0 seconds is changed into 1 second. The jobs can also be
+ * read a block at the time with {@link #next(TraceBatch, int)}.
+ * <p>
+ * The workload entity only reads jobs through this interface, so each
+ * format is read by its own class:
+ * <ul>
+ *      <li> {@link TextTraceSource#createSwf(String, String)} for the
+ *           standard workload format
+ *      <li> {@link TextTraceSource#createJobs(String, String, boolean)} for
+ *           the tab separated <tt>.jobs</tt> traces
+ *      <li> {@link BinaryTraceSource} for traces pre-compiled by
+ *           {@link TraceConverter}
+ *      <li> {@link SlurmTraceSource} for the accounting logs of Slurm
+ * </ul>
+ *
+ * @see MyWorkload#MyWorkload(String, TraceSource, String, int)
+ * @see MyWorkload
+ * @invariant $none
+ */
+interface TraceSource
+{
+    /**
+     * Opens the trace. This method must be called before {@link #next()}.
+     * @throws IOException  if the trace can not be opened
+     * @pre $none
+     * @post $none
+     */
+    void open() throws IOException;
+
+    /**
+     * Moves to the next job in the trace
+     * @return <tt>true</tt> if there is a job, <tt>false</tt> at the end of
+     *         the trace
+     * @throws IOException  if the trace can not be read
+     * @pre $none
+     * @post $none
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Moves over the next jobs in the trace and copies them into a batch,
+     * which is emptied first. The current job is then the last one copied.
+     * @param batch     the batch to fill
+     * @param maxJobs   max. number of jobs to read, up to the capacity of
+     *                  the batch
+     * @return the number of jobs read, which is less than the max. only at
+     *         the end of the trace
+     * @throws IOException  if the trace can not be read
+     * @pre batch != null
+     * @pre maxJobs > 0
+     * @post $result >= 0
+     */
+    int next(TraceBatch batch, int maxJobs) throws IOException;
+
+    /**
+     * Gets the job number of the current job
+     * @return the job number
+     * @pre $none
+     * @post $none
+     */
+    int getJobNum();
+
+    /**
+     * Gets the submit time of the current job
+     * @return the submit time
+     * @pre $none
+     * @post $none
+     */
+    long getSubmitTime();
+
+    /**
+     * Gets the run time of the current job, in seconds
+     * @return the run time
+     * @pre $none
+     * @post $result > 0
+     */
+    int getRunTime();
+
+    /**
+     * Gets the number of PEs required by the current job
+     * @return the number of PEs
+     * @pre $none
+     * @post $result > 0
+     */
+    int getNumPE();
+
+    /**
+     * Gets the class type of the current job
+     * @return the class type
+     * @pre $none
+     * @post $none
+     */
+    int getClassType();
+
+    /**
+     * Closes the trace
+     * @throws IOException  if the trace can not be closed
+     * @pre $none
+     * @post $none
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,287 @@
+/*
+ * Title:        GridSim Toolkit
+ * Description:  GridSim (Grid Simulation) Toolkit for Modeling and Simulation
+ *               of Parallel and Distributed Systems such as Clusters and Grids
+ * License:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ */
+
+/**
+ * Breaks a line of a workload trace into whitespace separated fields.
+ * Unlike <tt>String.split()</tt>, this class scans the line only once and
+ * remembers where each field starts and ends, so numeric fields can be read
+ * as primitive values without creating any <tt>String</tt>, regular
+ * expression or boxed number along the way.
+ * <p>
+ * An object of this class is meant to be reused for every line of a trace.
+ * Only the first <tt>maxField</tt> fields of a line are kept, but all of
+ * them are counted. A line of ASCII bytes, e.g. from a
+ * {@link MappedLineReader}, is scanned straight from its byte array.
+ *
+ * @invariant $none
+ */
+final class TraceTokenizer
+{
+    private final int[] start_;     // offset of the first char of a field
+    private final int[] end_;       // offset after the last char of a field
+    private CharSequence line_;     // the line being tokenized
+    private byte[] bytes_;          // or the bytes of an ASCII line
+    private int count_;             // number of fields in the line
+
+    /**
+     * Creates a new tokenizer
+     * @param maxField  max. number of fields kept from a line
+     * @pre maxField > 0
+     * @post $none
+     */
+    TraceTokenizer(int maxField)
+    {
+        start_ = new int[maxField];
+        end_ = new int[maxField];
+        line_ = null;
+        bytes_ = null;
+        count_ = 0;
+    }
+
+    /**
+     * Checks whether a line starts with a given prefix, e.g. a comment
+     * @param line    a line of a trace
+     * @param prefix  the prefix to look for
+     * @return <tt>true</tt> if the line starts with the prefix,
+     *         <tt>false</tt> otherwise
+     * @pre line != null
+     * @pre prefix != null
+     * @post $none
+     */
+    static boolean startsWith(CharSequence line, String prefix)
+    {
+        int len = prefix.length();
+        if (line.length() < len) {
+            return false;
+        }
+
+        for (int i = 0; i < len; i++)
+        {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Breaks a line into fields separated by one or more whitespaces.
+     * Leading and trailing whitespaces are ignored.
+     * @param line  a line of a trace
+     * @return the number of fields found in the line
+     * @pre line != null
+     * @post $result >= 0
+     */
+    int tokenize(CharSequence line)
+    {
+        if (line instanceof MappedLineReader.Line)
+        {
+            MappedLineReader.Line ascii = (MappedLineReader.Line) line;
+            return tokenize(ascii.array(), ascii.start(), ascii.end());
+        }
+
+        line_ = line;
+        bytes_ = null;
+        count_ = 0;
+
+        int len = line.length();
+        int i = 0;
+        while (i < len)
+        {
+            // skip the whitespaces before a field
+            while (i < len && isSpace(line.charAt(i)) == true) {
+                i++;
+            }
+            if (i == len) {
+                break;
+            }
+
+            // then find the end of this field
+            int begin = i;
+            while (i < len && isSpace(line.charAt(i)) == false) {
+                i++;
+            }
+
+            if (count_ < start_.length)
+            {
+                start_[count_] = begin;
+                end_[count_] = i;
+            }
+            count_++;
+        }
+
+        return count_;
+    }
+
+    /**
+     * Breaks a line of ASCII bytes into fields separated by one or more
+     * whitespaces. The array is kept until the next line is tokenized.
+     * @param bytes  an array containing the line
+     * @param from   offset of the first byte of the line
+     * @param to     offset after the last byte of the line
+     * @return the number of fields found in the line
+     * @pre bytes != null
+     * @pre from >= 0 && from <= to && to <= bytes.length
+     * @post $result >= 0
+     */
+    int tokenize(byte[] bytes, int from, int to)
+    {
+        line_ = null;
+        bytes_ = bytes;
+        count_ = 0;
+
+        int i = from;
+        while (i < to)
+        {
+            // skip the whitespaces before a field
+            while (i < to && isSpace((char) bytes[i]) == true) {
+                i++;
+            }
+            if (i == to) {
+                break;
+            }
+
+            // then find the end of this field
+            int begin = i;
+            while (i < to && isSpace((char) bytes[i]) == false) {
+                i++;
+            }
+
+            if (count_ < start_.length)
+            {
+                start_[count_] = begin;
+                end_[count_] = i;
+            }
+            count_++;
+        }
+
+        return count_;
+    }
+
+    /**
+     * Gets the number of fields found by the last call to
+     * {@link #tokenize(CharSequence)}
+     * @return the number of fields
+     * @pre $none
+     * @post $result >= 0
+     */
+    int getCount() {
+        return count_;
+    }
+
+    /**
+     * Reads a field as an <tt>int</tt>
+     * @param field  the index of a field, starting at 0
+     * @return the value of the field
+     * @throws NumberFormatException  if the field is not a valid integer
+     * @pre field >= 0 && field < getCount()
+     * @post $none
+     */
+    int getInt(int field) throws NumberFormatException
+    {
+        long value = getLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalidField(field);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a field as a <tt>long</tt>
+     * @param field  the index of a field, starting at 0
+     * @return the value of the field
+     * @throws NumberFormatException  if the field is not a valid integer
+     * @pre field >= 0 && field < getCount()
+     * @post $none
+     */
+    long getLong(int field) throws NumberFormatException
+    {
+        if (field < 0 || field >= count_ || field >= start_.length) {
+            throw new NumberFormatException("No such field: " + field);
+        }
+
+        int i = start_[field];
+        int end = end_[field];
+
+        // an optional sign
+        boolean negative = false;
+        char c = charAt(i);
+        if (c == '-' || c == '+')
+        {
+            negative = (c == '-');
+            i++;
+            if (i == end) {
+                throw invalidField(field);
+            }
+        }
+
+        // accumulate negatively so Long.MIN_VALUE is accepted too
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long value = 0;
+        for (; i < end; i++)
+        {
+            int digit = charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value < multmin) {
+                throw invalidField(field);
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                throw invalidField(field);
+            }
+            value -= digit;
+        }
+
+        return negative ? value : -value;
+    }
+
+    /**
+     * Gets a char of the tokenized line
+     * @param index  the offset of the char
+     * @return the char
+     */
+    private char charAt(int index)
+    {
+        if (bytes_ != null) {
+            return (char) (bytes_[index] & 0xFF);
+        }
+        return line_.charAt(index);
+    }
+
+    /**
+     * Creates an exception for a field that is not a number. The field is
+     * only copied into a <tt>String</tt> in this case.
+     * @param field  the index of a field
+     * @return a NumberFormatException object
+     * @pre field >= 0
+     * @post $result != null
+     */
+    private NumberFormatException invalidField(int field)
+    {
+        int len = end_[field] - start_[field];
+        StringBuilder str = new StringBuilder(len);
+        for (int i = start_[field]; i < end_[field]; i++) {
+            str.append( charAt(i) );
+        }
+        return new NumberFormatException("For input string: \"" + str + "\"");
+    }
+
+    /**
+     * Checks whether a char is a whitespace, i.e. the <tt>\s</tt> class of
+     * a regular expression
+     * @param c  a char
+     * @return <tt>true</tt> if it is a whitespace, <tt>false</tt> otherwise
+     * @pre $none
+     * @post $none
+     */
+    private static boolean isSpace(char c)
+    {
+        // i.e. a space, or one of \t \n \u000B \f \r which are consecutive
+        return c <= ' ' && (c == ' ' || (c >= '\t' && c <= '\r'));
+    }
+}